@@ -51,4 +51,12 @@ public @interface BotCommand {
      * @return an array of help text lines
      */
     String[] help() default {"Help not available"};
+
+    /**
+     * How long, in seconds, the command's results can be reused for the same arguments. Defaults to 0 (not cached).
+     * This only applies to commands that fetch their results through the {@link CommandResultCache}.
+     *
+     * @return the cache TTL in seconds
+     */
+    long cacheTtl() default 0;
 }
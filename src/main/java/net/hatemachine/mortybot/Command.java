@@ -31,7 +31,7 @@ import java.util.List;
  *
  * @see BotCommand
  * @see CommandListener
- * @see CommandProxy
+ * @see CommandAuthorizer
  */
 public interface Command {
     /**
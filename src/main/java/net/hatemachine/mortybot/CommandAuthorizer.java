@@ -0,0 +1,85 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot;
+
+import net.hatemachine.mortybot.exception.CommandException;
+import net.hatemachine.mortybot.identity.IdentityManager;
+import net.hatemachine.mortybot.model.BotUser;
+import org.pircbotx.User;
+
+import java.util.Optional;
+
+import static net.hatemachine.mortybot.exception.CommandException.Reason.IGNORED_USER;
+import static net.hatemachine.mortybot.exception.CommandException.Reason.UNAUTHORIZED_USER;
+
+/**
+ * This class is used by the CommandListener to perform some checks on received commands prior to execution.<br/>
+ * <br/>
+ * It is responsible for checking if:<br/>
+ * - the command is restricted and, if so, whether the user is authorized to execute it.<br/>
+ * - the user is being ignored by the bot.<br/>
+ *
+ * @see Command
+ * @see net.hatemachine.mortybot.listeners.CommandListener
+ */
+public class CommandAuthorizer {
+
+    private CommandAuthorizer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Checks whether a user is allowed to execute a command.
+     *
+     * @param command the command the user is trying to execute
+     * @param user the user that triggered the command
+     * @throws CommandException if user is not authorized or being ignored
+     */
+    public static void authorize(CommandWrapper command, User user) throws CommandException {
+        Optional<BotUser> optionalBotUser = IdentityManager.getManager().getBotUser(user);
+
+        if (optionalBotUser.isPresent()) {
+            BotUser botUser = optionalBotUser.get();
+
+            if (!botUser.hasAdminFlag()) {
+                if (botUser.hasIgnoreFlag()) {
+                    throw new CommandException(IGNORED_USER, String.format("%s (bot user: %s)", user.getHostmask(), botUser.getName()));
+                }
+
+                if (command.isRestricted()) {
+                    throw new CommandException(UNAUTHORIZED_USER, String.format("%s (bot user: %s)", user.getHostmask(), botUser.getName()));
+                }
+            }
+        } else if (command.isRestricted()) {
+            throw new CommandException(UNAUTHORIZED_USER, user.getHostmask());
+        }
+    }
+
+    /**
+     * Checks whether a user is a bot admin. Used by commands that are open to everyone but have
+     * subcommands that should only be run by admins.
+     *
+     * @param user the user that triggered the command
+     * @return true if the user is a bot user with the admin flag
+     */
+    public static boolean isAdmin(User user) {
+        return IdentityManager.getManager().getBotUser(user)
+                .map(BotUser::hasAdminFlag)
+                .orElse(false);
+    }
+}
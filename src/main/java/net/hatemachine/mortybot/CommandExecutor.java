@@ -0,0 +1,211 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.listeners.CommandListener.CommandSource;
+import org.pircbotx.hooks.events.MessageEvent;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs bot commands on virtual threads so that slow commands do not hold up the listener thread or each other.<br/>
+ * <br/>
+ * Commands are queued per target (channel, private message or DCC chat) and run one at a time within that target,
+ * so responses come back in the order the commands were given. Commands that run past their deadline are
+ * interrupted, and the target's queue waits (up to commands.cancel.grace milliseconds) for them to actually stop
+ * before the user is told and the next command runs, so a late reply can't overtake the commands behind it.
+ * The number of commands a single user, or a single command name, can have
+ * queued or running at once is capped.
+ *
+ * @see net.hatemachine.mortybot.listeners.CommandListener
+ */
+public class CommandExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandExecutor.class);
+
+    private static CommandExecutor executor;
+
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final Map<String, Integer> userCounts = new ConcurrentHashMap<>();
+    private final Map<String, Integer> commandCounts = new ConcurrentHashMap<>();
+
+    private CommandExecutor() {}
+
+    /**
+     * Retrieves a singleton instance of our CommandExecutor object.
+     *
+     * @return the command executor
+     */
+    public static synchronized CommandExecutor getExecutor() {
+        if (executor == null) {
+            executor = new CommandExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * Submits a command for execution. The command will be queued behind any other commands for the same target.
+     *
+     * @param command the command being executed
+     * @param event the event that triggered the command
+     * @param source the source of the command
+     * @param task the work to run for the command
+     * @return true if the command was accepted, or false if the user or command is already at its limit
+     */
+    public boolean submit(CommandWrapper command, GenericMessageEvent event, CommandSource source, Runnable task) {
+        BotProperties props = BotProperties.getBotProperties();
+        String userKey = event.getUser().getNick().toLowerCase(Locale.ROOT);
+        String commandKey = command.getName();
+
+        if (!acquire(userCounts, userKey, props.getIntProperty("commands.max.per.user", BotDefaults.COMMANDS_MAX_PER_USER))) {
+            log.info("Rejecting {} command from {}: too many commands in progress for user", commandKey, userKey);
+            return false;
+        }
+
+        if (!acquire(commandCounts, commandKey, props.getIntProperty("commands.max.per.command", BotDefaults.COMMANDS_MAX_PER_COMMAND))) {
+            release(userCounts, userKey);
+            log.info("Rejecting {} command from {}: too many {} commands in progress", commandKey, userKey, commandKey);
+            return false;
+        }
+
+        Duration deadline = Duration.ofMillis(props.getIntProperty("commands.timeout." + commandKey.toLowerCase(Locale.ROOT),
+                props.getIntProperty("commands.timeout", BotDefaults.COMMANDS_TIMEOUT)));
+
+        Job job = new Job(command, event, task, deadline, userKey);
+        String laneKey = getLaneKey(event, source);
+
+        synchronized (lanes) {
+            Lane lane = lanes.get(laneKey);
+            if (lane == null) {
+                lane = new Lane(laneKey);
+                lanes.put(laneKey, lane);
+                lane.jobs.add(job);
+                Thread.ofVirtual().name("cmd-lane-" + laneKey).start(lane::run);
+            } else {
+                lane.jobs.add(job);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines which queue a command belongs in. Commands in the same channel, private conversation, or DCC chat
+     * share a queue.
+     */
+    private static String getLaneKey(GenericMessageEvent event, CommandSource source) {
+        return switch (source) {
+            case PUBLIC -> "chan:" + ((MessageEvent) event).getChannel().getName().toLowerCase(Locale.ROOT);
+            case PRIVATE -> "msg:" + event.getUser().getNick().toLowerCase(Locale.ROOT);
+            case DCC -> "dcc:" + event.getUser().getNick().toLowerCase(Locale.ROOT);
+        };
+    }
+
+    /**
+     * Takes a slot for the key if it has fewer than max in use. The check and the increment happen in a single
+     * compute so they can't interleave with a release removing the count.
+     */
+    private static boolean acquire(Map<String, Integer> counts, String key, int max) {
+        boolean[] acquired = new boolean[1];
+        counts.compute(key, (k, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= max) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private static void release(Map<String, Integer> counts, String key) {
+        counts.computeIfPresent(key, (k, count) -> count <= 1 ? null : count - 1);
+    }
+
+    private record Job(CommandWrapper command, GenericMessageEvent event, Runnable task, Duration deadline, String userKey) {}
+
+    /**
+     * Queue of commands for a single target. A lane runs on its own virtual thread while it has work and goes away
+     * once its queue is empty.
+     */
+    private class Lane {
+        private final String key;
+        private final Deque<Job> jobs = new ArrayDeque<>();
+
+        Lane(String key) {
+            this.key = key;
+        }
+
+        void run() {
+            while (true) {
+                Job job;
+                synchronized (lanes) {
+                    job = jobs.poll();
+                    if (job == null) {
+                        lanes.remove(key);
+                        return;
+                    }
+                }
+                runJob(job);
+            }
+        }
+
+        private void runJob(Job job) {
+            String commandName = job.command().getName();
+
+            Thread worker = Thread.ofVirtual().name("cmd-" + commandName).unstarted(() -> {
+                try {
+                    job.task().run();
+                } finally {
+                    release(userCounts, job.userKey());
+                    release(commandCounts, commandName);
+                }
+            });
+
+            worker.start();
+
+            try {
+                if (!worker.join(job.deadline())) {
+                    log.warn("{} command from {} exceeded its deadline of {}ms, interrupting",
+                            commandName, job.userKey(), job.deadline().toMillis());
+                    worker.interrupt();
+
+                    // blocking I/O may not notice the interrupt, so give it a bounded chance to stop before moving on
+                    Duration grace = Duration.ofMillis(BotProperties.getBotProperties()
+                            .getIntProperty("commands.cancel.grace", BotDefaults.COMMANDS_CANCEL_GRACE));
+                    if (!worker.join(grace)) {
+                        log.warn("{} command from {} still running {}ms after being interrupted, moving on",
+                                commandName, job.userKey(), grace.toMillis());
+                    }
+                    job.event().respondWith(commandName + " took too long and was cancelled");
+                }
+            } catch (InterruptedException e) {
+                log.warn("Thread interrupted: {}", Thread.currentThread().getName());
+                worker.interrupt();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
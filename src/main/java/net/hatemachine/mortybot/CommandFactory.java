@@ -0,0 +1,44 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot;
+
+import net.hatemachine.mortybot.listeners.CommandListener;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.util.List;
+
+/**
+ * Creates new instances of a command. Generated command indexes supply a constructor reference for each command
+ * class so that creating a command for each invocation is a plain constructor call rather than a reflective one.
+ *
+ * @see CommandIndex
+ * @see CommandWrapper
+ */
+@FunctionalInterface
+public interface CommandFactory {
+
+    /**
+     * Creates a new command instance.
+     *
+     * @param event the event that triggered the command
+     * @param source the source of the command
+     * @param args any arguments passed to the command
+     * @return a new command instance
+     */
+    Command create(GenericMessageEvent event, CommandListener.CommandSource source, List<String> args);
+}
@@ -0,0 +1,38 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot;
+
+import java.util.List;
+
+/**
+ * A registry of bot commands. Implementations are generated at compile time by the
+ * {@link net.hatemachine.mortybot.processor.BotCommandProcessor} for every package containing classes annotated
+ * with {@link BotCommand}, and are discovered at runtime through {@link java.util.ServiceLoader}. This allows
+ * commands packaged in other jars to be picked up simply by putting them on the classpath.
+ *
+ * @see net.hatemachine.mortybot.listeners.CommandListener
+ */
+public interface CommandIndex {
+
+    /**
+     * Gets the commands in this index. Each {@link BotCommand} annotation on a class results in its own entry.
+     *
+     * @return a list of command wrappers
+     */
+    List<CommandWrapper> getCommands();
+}
@@ -0,0 +1,87 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot;
+
+import net.hatemachine.mortybot.util.StringUtils;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Argument parser for a command, built once from the command's argument spec and reused for every execution.
+ * Commands keep one of these in a static field rather than building a new argparse4j parser each time they run.
+ *
+ * <pre>
+ *     private static final CommandParser PARSER = CommandParser.create("IMDB", parser -> {
+ *         parser.addArgument("-l", "--list").action(Arguments.storeTrue());
+ *         parser.addArgument("query").nargs("*");
+ *     });
+ * </pre>
+ */
+public class CommandParser {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandParser.class);
+
+    private final String commandName;
+    private final ArgumentParser parser;
+
+    private CommandParser(String commandName, ArgumentParser parser) {
+        this.commandName = commandName;
+        this.parser = parser;
+    }
+
+    /**
+     * Builds a parser for a command.
+     *
+     * @param commandName the name of the command
+     * @param spec adds the command's arguments to the parser
+     * @return the compiled parser
+     */
+    public static CommandParser create(String commandName, Consumer<ArgumentParser> spec) {
+        ArgumentParser parser = ArgumentParsers.newFor(commandName).build();
+        spec.accept(parser);
+        return new CommandParser(commandName, parser);
+    }
+
+    /**
+     * Parses the arguments passed to a command. Double-quoted arguments are grouped into single arguments here
+     * rather than by the command listener, so commands that take free text keep their quotes
+     * (e.g. <code>.imdb -l "the thing"</code>).
+     * argparse4j doesn't promise that a parser can be used by more than one thread at a time, so calls are serialized.
+     * Parsing a handful of arguments is quick, so commands running concurrently shouldn't notice.
+     *
+     * @param args the arguments passed to the command
+     * @return the parsed arguments
+     * @throws IllegalArgumentException if the arguments could not be parsed
+     */
+    public synchronized Namespace parse(List<String> args) {
+        List<String> tokens = StringUtils.tokenize(String.join(" ", args));
+        try {
+            return parser.parseArgs(tokens.toArray(new String[0]));
+        } catch (ArgumentParserException e) {
+            log.debug("Problem parsing {} arguments: {}", commandName, args, e);
+            throw new IllegalArgumentException("Problem parsing command: " + e.getMessage());
+        }
+    }
+}
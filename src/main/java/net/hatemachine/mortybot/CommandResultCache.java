@@ -0,0 +1,281 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.listeners.CommandListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches the response lines of idempotent commands, keyed on the command name and its normalized arguments.
+ * Entries live for the TTL declared by the command's {@link BotCommand#cacheTtl()}, or a TTL given by the command
+ * itself. When several users ask for the same thing at once, only the first request does the work and the rest
+ * wait for and share its result.<br/>
+ * <br/>
+ * Empty results are never cached, so commands should return an empty list when something went wrong.
+ */
+public class CommandResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandResultCache.class);
+
+    private static CommandResultCache cache;
+
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentSkipListMap<>();
+
+    private CommandResultCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Retrieves a singleton instance of our CommandResultCache object.
+     *
+     * @return the command result cache
+     */
+    public static synchronized CommandResultCache getCache() {
+        if (cache == null) {
+            int maxSize = BotProperties.getBotProperties().getIntProperty("commands.cache.size", BotDefaults.COMMANDS_CACHE_SIZE);
+            cache = new CommandResultCache(maxSize);
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the result of a command, using the TTL declared on the command.
+     *
+     * @param commandName the name of the command
+     * @param args the arguments passed to the command
+     * @param supplier computes the response lines on a miss
+     * @return the response lines for the command
+     */
+    public List<String> get(String commandName, List<String> args, Supplier<List<String>> supplier) {
+        CommandWrapper command = CommandListener.getCommand(commandName);
+        Duration ttl = command == null ? Duration.ZERO : command.getCacheTtl();
+        return get(commandName, args, ttl, supplier);
+    }
+
+    /**
+     * Gets the result of a command, using the TTL given.
+     *
+     * @param commandName the name of the command
+     * @param args the arguments passed to the command
+     * @param ttl how long the result should be cached for
+     * @param supplier computes the response lines on a miss
+     * @return the response lines for the command
+     */
+    public List<String> get(String commandName, List<String> args, Duration ttl, Supplier<List<String>> supplier) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            return supplier.get();
+        }
+
+        String key = buildKey(commandName, args);
+        Stats commandStats = stats.computeIfAbsent(commandName, k -> new Stats());
+
+        Optional<List<String>> cached = lookup(key);
+        if (cached.isPresent()) {
+            commandStats.hits.increment();
+            return cached.get();
+        }
+
+        CompletableFuture<List<String>> flight = new CompletableFuture<>();
+        CompletableFuture<List<String>> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            commandStats.shared.increment();
+            return await(existing);
+        }
+
+        try {
+            commandStats.misses.increment();
+            List<String> lines = List.copyOf(supplier.get());
+            if (!lines.isEmpty()) {
+                synchronized (entries) {
+                    entries.put(key, new Entry(lines, System.nanoTime() + ttl.toNanos()));
+                }
+            }
+            flight.complete(lines);
+            return lines;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Gets the result of a command asynchronously, using the TTL declared on the command. This is for commands that
+     * fan out several lookups at once and wait for them together.
+     *
+     * @param commandName the name of the command
+     * @param args the arguments passed to the command
+     * @param supplier starts computing the response lines on a miss
+     * @return a future that completes with the response lines for the command
+     */
+    public CompletableFuture<List<String>> getAsync(String commandName, List<String> args,
+                                                    Supplier<CompletableFuture<List<String>>> supplier) {
+        CommandWrapper command = CommandListener.getCommand(commandName);
+        Duration ttl = command == null ? Duration.ZERO : command.getCacheTtl();
+
+        if (ttl.isZero() || ttl.isNegative()) {
+            return supplier.get();
+        }
+
+        String key = buildKey(commandName, args);
+        Stats commandStats = stats.computeIfAbsent(commandName, k -> new Stats());
+
+        Optional<List<String>> cached = lookup(key);
+        if (cached.isPresent()) {
+            commandStats.hits.increment();
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        CompletableFuture<List<String>> flight = new CompletableFuture<>();
+        CompletableFuture<List<String>> existing = inFlight.putIfAbsent(key, flight);
+
+        // callers get a copy so one of them giving up doesn't cancel the result for everyone else
+        if (existing != null) {
+            commandStats.shared.increment();
+            return existing.copy();
+        }
+
+        commandStats.misses.increment();
+
+        CompletableFuture<List<String>> source;
+        try {
+            source = supplier.get();
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            inFlight.remove(key, flight);
+            throw e;
+        }
+
+        source.whenComplete((result, e) -> {
+            try {
+                if (e != null) {
+                    flight.completeExceptionally(e);
+                } else {
+                    List<String> lines = List.copyOf(result);
+                    if (!lines.isEmpty()) {
+                        synchronized (entries) {
+                            entries.put(key, new Entry(lines, System.nanoTime() + ttl.toNanos()));
+                        }
+                    }
+                    flight.complete(lines);
+                }
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        });
+
+        return flight.copy();
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Gets the number of results currently cached.
+     *
+     * @return the number of cached results
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Gets hit and miss counts for each command that has used the cache, keyed by command name.
+     * Shared results are requests that waited on another request for the same thing already in progress.
+     *
+     * @return a map of command names to their counts in the form {hits, misses, shared}
+     */
+    public Map<String, long[]> getStats() {
+        Map<String, long[]> result = new LinkedHashMap<>();
+        stats.forEach((name, s) -> result.put(name, new long[] { s.hits.sum(), s.misses.sum(), s.shared.sum() }));
+        return result;
+    }
+
+    private Optional<List<String>> lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (System.nanoTime() - entry.expires() >= 0) {
+                entries.remove(key);
+                return Optional.empty();
+            }
+            return Optional.of(entry.lines());
+        }
+    }
+
+    private static List<String> await(CompletableFuture<List<String>> flight) {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for result");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String buildKey(String commandName, List<String> args) {
+        StringJoiner key = new StringJoiner(" ", commandName.toUpperCase(Locale.ROOT) + " ", "");
+        for (String arg : args) {
+            String normalized = arg.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.isEmpty()) {
+                key.add(normalized);
+            }
+        }
+        return key.toString();
+    }
+
+    private record Entry(List<String> lines, long expires) {}
+
+    private static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder shared = new LongAdder();
+    }
+}
@@ -17,23 +17,28 @@
  */
 package net.hatemachine.mortybot;
 
+import java.time.Duration;
+
 /**
- * Wraps our command objects so that we can inject the command's class and pull in fields from the BotCommand annotations.
+ * Wraps our command classes so that we can pull in fields from the BotCommand annotations and create new
+ * instances of the command without reflection. Wrappers are immutable and shared between invocations.
  */
 public class CommandWrapper {
 
     private final String name;
     private final Class<?> cmdClass;
+    private final CommandFactory factory;
     private final boolean restricted;
     private final String[] help;
-    private Command instance;
+    private final Duration cacheTtl;
 
-    public CommandWrapper(String name, Class<?> cmdClass, boolean restricted, String[] help) {
+    public CommandWrapper(String name, Class<?> cmdClass, CommandFactory factory, boolean restricted, String[] help, long cacheTtl) {
         this.name = name;
         this.cmdClass = cmdClass;
+        this.factory = factory;
         this.restricted = restricted;
         this.help = help;
-        this.instance = null;
+        this.cacheTtl = Duration.ofSeconds(cacheTtl);
     }
 
     public String getName() {
@@ -52,11 +57,11 @@ public class CommandWrapper {
         return help;
     }
 
-    public Command getInstance() {
-        return instance;
+    public Duration getCacheTtl() {
+        return cacheTtl;
     }
 
-    public void setInstance(Command instance) {
-        this.instance = instance;
+    public CommandFactory getFactory() {
+        return factory;
     }
 }
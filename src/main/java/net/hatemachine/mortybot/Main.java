@@ -23,13 +23,16 @@ import com.google.common.collect.Range;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.listeners.*;
+import net.hatemachine.mortybot.output.ScheduledOutputRaw;
 import net.hatemachine.mortybot.repositories.BotChannelRepository;
 import net.hatemachine.mortybot.repositories.BotUserRepository;
 import org.flywaydb.core.Flyway;
 import org.pircbotx.Configuration;
+import org.pircbotx.PircBotX;
 import org.pircbotx.UtilSSLSocketFactory;
 import org.pircbotx.delay.StaticDelay;
 import org.pircbotx.exception.IrcException;
+import org.pircbotx.output.OutputRaw;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +52,14 @@ public class Main {
     private static final Logger log = LoggerFactory.getLogger(Main.class);
 
     static {
+        // HttpClient reads its idle connection timeout from a system property when its implementation is first
+        // loaded, so it has to be set here before anything makes a request. Passing -Djdk.httpclient.keepalive.timeout
+        // on the command line takes precedence.
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            int keepAlive = BotProperties.getBotProperties().getIntProperty("http.keepalive.timeout", BotDefaults.HTTP_KEEPALIVE_TIMEOUT);
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAlive));
+        }
+
         var dbUrl = BotProperties.getBotProperties().getStringProperty("db.url", BotDefaults.DB_URL);
         var flyway = Flyway.configure().dataSource(dbUrl, null, null).load();
 
@@ -104,10 +115,19 @@ public class Main {
                 .setAutoReconnectDelay(new StaticDelay(props.getIntProperty("auto.reconnect.delay", BotDefaults.AUTO_RECONNECT_DELAY)))
                 .setAutoReconnectAttempts(props.getIntProperty("auto.reconnect.attempts", BotDefaults.AUTO_RECONNECT_ATTEMPTS))
                 .setAutoNickChange(props.getBooleanProperty("auto.nick.change", BotDefaults.AUTO_NICK_CHANGE))
+                .setBotFactory(new Configuration.BotFactory() {
+                    @Override
+                    public OutputRaw createOutputRaw(PircBotX bot) {
+                        return new ScheduledOutputRaw(bot);
+                    }
+                })
                 .addListener(new AutoOpListener())
                 .addListener(new CommandListener(props.getStringProperty("bot.command.prefix", BotDefaults.BOT_COMMAND_PREFIX)))
                 .addListener(new DccListener())
-                .addListener(new LinkListener());
+                .addListener(new IdentityListener())
+                .addListener(new LinkListener())
+                .addListener(new LiveScoresListener())
+                .addListener(new StockWatchListener());
 
         // SSL
         if (props.getBooleanProperty("irc.ssl", BotDefaults.IRC_SSL)) {
@@ -0,0 +1,92 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.commands;
+
+import net.hatemachine.mortybot.BotCommand;
+import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.CommandResultCache;
+import net.hatemachine.mortybot.listeners.CommandListener;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Implements the CACHE command, allowing admins to see how well the command result cache is doing and clear it.
+ */
+@BotCommand(name = "CACHE", restricted = true, help = {
+        "Shows or clears the command result cache",
+        "Usage: CACHE [STATS|CLEAR]",
+        "Stats are shown as hits/misses/shared for each command"
+})
+public class CacheCommand implements Command {
+
+    private final GenericMessageEvent event;
+    private final CommandListener.CommandSource source;
+    private final List<String> args;
+
+    public CacheCommand(GenericMessageEvent event, CommandListener.CommandSource source, List<String> args) {
+        this.event = event;
+        this.source = source;
+        this.args = args;
+    }
+
+    @Override
+    public void execute() {
+        String subCommand = args.isEmpty() ? "STATS" : args.getFirst().toUpperCase(Locale.ROOT);
+        CommandResultCache cache = CommandResultCache.getCache();
+
+        switch (subCommand) {
+            case "STATS" -> {
+                Map<String, long[]> stats = cache.getStats();
+                event.respondWith(String.format("Command cache: %d entries", cache.size()));
+                if (!stats.isEmpty()) {
+                    StringBuilder sb = new StringBuilder();
+                    stats.forEach((name, counts) -> {
+                        if (!sb.isEmpty()) {
+                            sb.append(", ");
+                        }
+                        sb.append(String.format("%s %d/%d/%d", name, counts[0], counts[1], counts[2]));
+                    });
+                    event.respondWith(sb.toString());
+                }
+            }
+            case "CLEAR" -> {
+                cache.clear();
+                event.respondWith("Command cache cleared");
+            }
+            default -> throw new IllegalArgumentException("Invalid subcommand: " + subCommand);
+        }
+    }
+
+    @Override
+    public GenericMessageEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public CommandListener.CommandSource getSource() {
+        return source;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        return args;
+    }
+}
@@ -23,9 +23,9 @@ import net.hatemachine.mortybot.MortyBot;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.dcc.DccManager;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.listeners.CommandListener;
 import net.hatemachine.mortybot.model.BotUser;
-import net.hatemachine.mortybot.repositories.BotUserRepository;
 import org.pircbotx.User;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
@@ -70,8 +70,7 @@ public class ChatCommand implements Command {
             }
 
             if (user != null) {
-                var botUserRepository = new BotUserRepository();
-                Optional<BotUser> optionalBotUser = botUserRepository.findByHostmask(user.getHostmask());
+                Optional<BotUser> optionalBotUser = IdentityManager.getManager().getBotUser(user);
 
                 if (optionalBotUser.isPresent() && optionalBotUser.get().hasDccFlag()) {
                     log.info("Sending DCC CHAT request to {}", user.getHostmask());
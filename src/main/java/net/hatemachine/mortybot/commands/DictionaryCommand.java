@@ -18,17 +18,15 @@
 package net.hatemachine.mortybot.commands;
 
 import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.CommandParser;
 import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.services.dict.Dictionary;
 import net.hatemachine.mortybot.services.dict.DictionaryEntry;
-import net.hatemachine.mortybot.services.dict.MerriamWebsterWeb;
+import net.hatemachine.mortybot.services.dict.DictionaryService;
 import net.hatemachine.mortybot.listeners.CommandListener;
-import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
-import net.sourceforge.argparse4j.inf.ArgumentParser;
-import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
@@ -37,14 +35,23 @@ import org.slf4j.LoggerFactory;
 import java.util.List;
 
 /**
- * Implements the DICT command, allowing users to perform dictionary lookups on the Merriam-Webster website.
+ * Implements the DICT command, allowing users to perform dictionary lookups. Words are looked up in the local
+ * dictionary first, then on Merriam-Webster.
  */
 @BotCommand(name = "DICT", help = {
         "Gets the dictionary definition for a word",
-        "Usage: DICT [-a] <word>"
+        "Usage: DICT [-a] <word>",
+        "Usage: DICT -p <prefix>",
+        "Pass -a to show all definitions, or -p to list words starting with a prefix"
 })
 public class DictionaryCommand implements Command {
 
+    private static final CommandParser PARSER = CommandParser.create("DICT", parser -> {
+        parser.addArgument("-a", "--all").action(Arguments.storeTrue());
+        parser.addArgument("-p", "--prefix").action(Arguments.storeTrue());
+        parser.addArgument("term").nargs("*");
+    });
+
     private static final Logger log = LoggerFactory.getLogger(DictionaryCommand.class);
 
     private final GenericMessageEvent event;
@@ -63,40 +70,43 @@ public class DictionaryCommand implements Command {
             throw new IllegalArgumentException("Not enough arguments");
         }
 
-        ArgumentParser parser = ArgumentParsers.newFor("DICT").build();
-        parser.addArgument("-a", "--all").action(Arguments.storeTrue());
-        parser.addArgument("term").nargs("*");
-        Namespace ns = null;
+        Namespace ns = PARSER.parse(args);
+
+        boolean allDefsFlag = ns.getBoolean("all");
+        String term = String.join(" ", ns.getList("term"));
+        BotProperties props = BotProperties.getBotProperties();
+        int maxDefs = props.getIntProperty("dict.max.defs", BotDefaults.DICT_MAX_DEFS);
+        int maxWords = props.getIntProperty("dict.max.words", BotDefaults.DICT_MAX_WORDS);
+        Dictionary dict = DictionaryService.getService();
+
+        if (term.isBlank()) {
+            throw new IllegalArgumentException("Not enough arguments");
+        }
 
-        try {
-            ns = parser.parseArgs(args.toArray(new String[0]));
-        } catch (ArgumentParserException e) {
-            throw new IllegalArgumentException("Problem parsing command");
+        if (ns.getBoolean("prefix")) {
+            List<String> words = dict.complete(term, maxWords);
+            event.respondWith(words.isEmpty() ? "No results found" : String.join(", ", words));
+            return;
         }
 
-        if (ns != null) {
-            boolean allDefsFlag = ns.getBoolean("all");
-            String term = String.join(" ", ns.getList("term"));
-            int maxDefs = BotProperties.getBotProperties().getIntProperty("dict.max.defs", BotDefaults.DICT_MAX_DEFS);
-            Dictionary dict = new MerriamWebsterWeb();
-            List<DictionaryEntry> entries = dict.lookup(term);
-
-            if (entries.isEmpty()) {
-                event.respondWith("No results found");
-            } else {
-                for (DictionaryEntry entry : entries) {
-                    List<String> defs = entry.definitions();
-
-                    log.debug("Dictionary entry for {} has {} definitions", entry.word(), defs.size());
-                    event.respondWith(entry.toString());
-
-                    for (int i = 0; i < defs.size() && (allDefsFlag || i < maxDefs); i++) {
-                        event.respondWith("#" + (i + 1) + defs.get(i));
-                    }
-
-                    if (!allDefsFlag && defs.size() > maxDefs) {
-                        event.respondWith(String.format("Max definitions reached (%s of %s shown). Pass the -a option to show all.", maxDefs, defs.size()));
-                    }
+        List<DictionaryEntry> entries = dict.lookup(term);
+
+        if (entries.isEmpty()) {
+            List<String> words = dict.complete(term, maxWords);
+            event.respondWith(words.isEmpty() ? "No results found" : "No results found. Words starting with " + term + ": " + String.join(", ", words));
+        } else {
+            for (DictionaryEntry entry : entries) {
+                List<String> defs = entry.definitions();
+
+                log.debug("Dictionary entry for {} has {} definitions", entry.word(), defs.size());
+                event.respondWith(entry.toString());
+
+                for (int i = 0; i < defs.size() && (allDefsFlag || i < maxDefs); i++) {
+                    event.respondWith("#" + (i + 1) + defs.get(i));
+                }
+
+                if (!allDefsFlag && defs.size() > maxDefs) {
+                    event.respondWith(String.format("Max definitions reached (%s of %s shown). Pass the -a option to show all.", maxDefs, defs.size()));
                 }
             }
         }
@@ -17,7 +17,6 @@
  */
 package net.hatemachine.mortybot.commands;
 
-import com.maxmind.geoip2.WebServiceClient;
 import com.maxmind.geoip2.exception.AddressNotFoundException;
 import com.maxmind.geoip2.exception.AuthenticationException;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
@@ -29,8 +28,8 @@ import com.maxmind.geoip2.record.Country;
 import com.maxmind.geoip2.record.Subdivision;
 import net.hatemachine.mortybot.Command;
 import net.hatemachine.mortybot.BotCommand;
-import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.listeners.CommandListener;
+import net.hatemachine.mortybot.services.geoip.GeoIpService;
 import org.pircbotx.Colors;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
@@ -39,10 +38,12 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.List;
+import java.util.Optional;
 
 /**
- * Implements the GEOIP command. This performs a GeoIP2 (GeoLite2) lookup on an IP address.
- * Note that this requires a free GeoLite2 account and license key.
+ * Implements the GEOIP command. This performs a GeoIP2 (GeoLite2) lookup on an IP address using a local GeoLite2
+ * City database, or the GeoLite2 web service if there is no local database. Either one requires a free GeoLite2
+ * account and license key.
  *
  * <a href="https://dev.maxmind.com/geoip/geolite2-free-geolocation-data">https://dev.maxmind.com/geoip/geolite2-free-geolocation-data</a>
  */
@@ -52,8 +53,6 @@ import java.util.List;
 })
 public class GeoIpCommand implements Command {
 
-    private static final String WEB_SERVICE_HOST = "geolite.info";
-
     private static final Logger log = LoggerFactory.getLogger(GeoIpCommand.class);
 
     private final GenericMessageEvent event;
@@ -72,17 +71,19 @@ public class GeoIpCommand implements Command {
             throw new IllegalArgumentException("Not enough arguments");
         }
 
-        var botProperties = BotProperties.getBotProperties();
-        var accountId = botProperties.getIntProperty("maxmind.account.id", Integer.parseInt(System.getenv("MAXMIND_ACCOUNT_ID")));
-        var licenseKey = botProperties.getStringProperty("maxmind.license.key", System.getenv("MAXMIND_LICENSE_KEY"));
         var address = args.get(0);
 
-        try (WebServiceClient client = new WebServiceClient.Builder(accountId, licenseKey)
-                .host(WEB_SERVICE_HOST)
-                .build()) {
-
+        try {
             InetAddress ipAddress = InetAddress.getByName(address);
-            CityResponse response = client.city(ipAddress);
+            Optional<CityResponse> result = GeoIpService.getService().lookup(ipAddress);
+
+            if (result.isEmpty()) {
+                log.info("Address not found: {}", address);
+                event.respondWith("Address not found");
+                return;
+            }
+
+            CityResponse response = result.get();
             Country country = response.getCountry();
             Subdivision subdivision = response.getMostSpecificSubdivision();
             City city = response.getCity();
@@ -100,7 +101,7 @@ public class GeoIpCommand implements Command {
 
         } catch (AuthenticationException e) {
             String errMsg = "Authentication failed";
-            log.error("{}: {}", errMsg, WEB_SERVICE_HOST, e);
+            log.error(errMsg, e);
             event.respondWith(errMsg);
 
         } catch (InvalidRequestException e) {
@@ -113,6 +114,10 @@ public class GeoIpCommand implements Command {
             log.error(errMsg);
             event.respondWith(errMsg);
 
+        } catch (IllegalStateException e) {
+            log.error("GeoIP lookup unavailable: {}", e.getMessage());
+            event.respondWith("GeoIP lookups are not configured");
+
         } catch (GeoIp2Exception | IOException e) {
             log.error("Exception encountered while looking up host", e);
             event.respondWith("Error");
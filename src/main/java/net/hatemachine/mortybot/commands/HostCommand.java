@@ -87,7 +87,8 @@ public class HostCommand implements Command {
 
         try {
             InetAddress addr = InetAddress.getByName(args.getFirst());
-            WebClient webClient = new WebClient();
+            WebClient webClient = new WebClient("shodan");
+            webClient.setCacheable(false); // keep the API key in the url out of the on-disk HTTP cache
             Optional<String> json = webClient.get(API_ENDPOINT + addr.getHostAddress() + "?key=" + apiKey);
 
             if (json.isPresent()) {
@@ -0,0 +1,98 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.commands;
+
+import net.hatemachine.mortybot.BotCommand;
+import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.listeners.CommandListener;
+import net.hatemachine.mortybot.util.HttpCache;
+import net.hatemachine.mortybot.util.HttpClientPool;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Implements the HTTP command, allowing admins to see how the shared HTTP client and cache are being used.
+ */
+@BotCommand(name = "HTTP", restricted = true, help = {
+        "Shows HTTP client statistics or clears the HTTP cache",
+        "Usage: HTTP [STATS|CLEAR]",
+        "Stats are shown as requests/warm/http2/failed for each service"
+})
+public class HttpCommand implements Command {
+
+    private final GenericMessageEvent event;
+    private final CommandListener.CommandSource source;
+    private final List<String> args;
+
+    public HttpCommand(GenericMessageEvent event, CommandListener.CommandSource source, List<String> args) {
+        this.event = event;
+        this.source = source;
+        this.args = args;
+    }
+
+    @Override
+    public void execute() {
+        String subCommand = args.isEmpty() ? "STATS" : args.getFirst().toUpperCase(Locale.ROOT);
+        HttpCache cache = HttpCache.getCache();
+
+        switch (subCommand) {
+            case "STATS" -> {
+                HttpClientPool pool = HttpClientPool.getPool();
+                Map<String, long[]> stats = pool.getStats();
+                long[] cacheStats = cache.getStats();
+
+                event.respondWith(String.format("HTTP client: %d active hosts, cache: %d entries (%d KB), %d hits, %d revalidated, %d misses",
+                        pool.getActiveHosts(), cache.size(), cache.sizeInBytes() / 1024, cacheStats[0], cacheStats[1], cacheStats[2]));
+
+                if (!stats.isEmpty()) {
+                    StringBuilder sb = new StringBuilder();
+                    stats.forEach((service, counts) -> {
+                        if (!sb.isEmpty()) {
+                            sb.append(", ");
+                        }
+                        sb.append(String.format("%s %d/%d/%d/%d", service, counts[0], counts[1], counts[2], counts[3]));
+                    });
+                    event.respondWith(sb.toString());
+                }
+            }
+            case "CLEAR" -> {
+                cache.clear();
+                event.respondWith("HTTP cache cleared");
+            }
+            default -> throw new IllegalArgumentException("Invalid subcommand: " + subCommand);
+        }
+    }
+
+    @Override
+    public GenericMessageEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public CommandListener.CommandSource getSource() {
+        return source;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        return args;
+    }
+}
@@ -21,6 +21,7 @@ import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.Command;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.listeners.CommandListener;
 import net.hatemachine.mortybot.model.BotUser;
 import net.hatemachine.mortybot.repositories.BotUserRepository;
@@ -65,14 +66,15 @@ public class IdentifyCommand implements Command {
 
         Validate.arguments(args, 2);
 
-        BotUserRepository repo = new BotUserRepository();
-        Optional<BotUser> matchingUser = repo.findByHostmask(event.getUser().getHostmask());
+        Optional<BotUser> matchingUser = IdentityManager.getManager().getBotUser(event.getUser());
 
         if (matchingUser.isPresent()) {
             event.respondWith("You are already identified!");
             return;
         }
 
+        BotUserRepository repo = new BotUserRepository();
+
         String username = Validate.botUserName(args.getFirst());
         String password = Validate.password(args.get(1));
         Optional<BotUser> optionalBotUser = repo.findByName(username);
@@ -18,34 +18,46 @@
 package net.hatemachine.mortybot.commands;
 
 import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.CommandParser;
 import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
-import net.hatemachine.mortybot.services.imdb.IMDBHelper;
+import net.hatemachine.mortybot.services.imdb.IMDBService;
 import net.hatemachine.mortybot.services.imdb.SearchResult;
 import net.hatemachine.mortybot.listeners.CommandListener;
-import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
-import net.sourceforge.argparse4j.inf.ArgumentParser;
-import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Implements the IMDB command, allowing users to look up titles or persons on the IMDB website.
  */
 @BotCommand(name = "IMDB", help = {
         "Searches IMDB for movie titles or persons",
-        "Usage: IMDB [-l] <query>",
-        "Displays a list of results if the -l option is present"
+        "Usage: IMDB [-l] [-n <number>] <query>",
+        "Displays a list of results if the -l option is present",
+        "Use -n to show the details of a result other than the first, with 0 being the first"
 })
 public class ImdbCommand implements Command {
 
     private static final String RESPONSE_PREFIX = "[imdb] ";
+    private static final Duration FETCH_DEADLINE = Duration.ofSeconds(20);
+
+    private static final CommandParser PARSER = CommandParser.create("IMDB", parser -> {
+        parser.addArgument("-l", "--list").action(Arguments.storeTrue());
+        parser.addArgument("-n", "--number").type(Integer.class).setDefault(0);
+        parser.addArgument("query").nargs("*");
+    });
 
     private static final Logger log = LoggerFactory.getLogger(ImdbCommand.class);
 
@@ -65,64 +77,61 @@ public class ImdbCommand implements Command {
             throw new IllegalArgumentException("Not enough arguments");
         }
 
-        ArgumentParser parser = ArgumentParsers.newFor("IMDB").build();
-        parser.addArgument("-l", "--list").action(Arguments.storeTrue());
-        parser.addArgument("query").nargs("*");
-        Namespace ns;
+        Namespace ns = PARSER.parse(args);
 
-        try {
-            ns = parser.parseArgs(args.toArray(new String[0]));
-        } catch (ArgumentParserException e) {
-            log.error("Problem parsing command arguments", e);
-            parser.handleError(e);
-            throw new IllegalArgumentException("Problem parsing command");
-        }
+        int maxResults = BotProperties.getBotProperties().getIntProperty("imdb.max.results", BotDefaults.IMDB_MAX_RESULTS);
+        boolean listFlag = ns.getBoolean("list");
+        String query = String.join(" ", ns.getList("query"));
+        int number = ns.getInt("number");
+        IMDBService imdb = IMDBService.getService();
+        List<SearchResult> results = imdb.search(query, !listFlag);
 
-        if (ns != null) {
-            int maxResults = BotProperties.getBotProperties().getIntProperty("imdb.max.results", BotDefaults.IMDB_MAX_RESULTS);
-            boolean listFlag = ns.getBoolean("list");
-            String query = String.join(" ", ns.getList("query"));
-            IMDBHelper helper = new IMDBHelper();
-            List<SearchResult> results = helper.search(query);
-
-            if (results.isEmpty()) {
-                event.respondWith("No results found");
-            } else {
-                if (listFlag) {
-                    for (int i = 0; i < results.size() && i < maxResults; i++) {
-                        event.respondWith(RESPONSE_PREFIX + results.get(i));
-                    }
-                } else {
-                    SearchResult topResult = results.get(0);
-
-                    // Person
-                    if (topResult.getType() == SearchResult.Type.NM) {
-                        var person = helper.fetchPerson(topResult.getUrl());
-                        if (person.isPresent()) {
-                            var p = person.get();
-                            event.respondWith(RESPONSE_PREFIX + p);
-                            if (p.hasBio()) {
-                                event.respondWith(RESPONSE_PREFIX + p.getBio());
-                            }
-                        }
+        if (results.isEmpty()) {
+            event.respondWith("No results found");
+        } else if (listFlag) {
+            for (int i = 0; i < results.size() && i < maxResults; i++) {
+                event.respondWith(RESPONSE_PREFIX + results.get(i));
+            }
+        } else {
+            if (number < 0 || number >= results.size()) {
+                throw new IllegalArgumentException("number must be between 0 and " + (results.size() - 1));
+            }
+
+            SearchResult result = results.get(number);
+
+            // Person
+            if (result.getType() == SearchResult.Type.NM) {
+                await(imdb.getPerson(result)).ifPresent(p -> {
+                    event.respondWith(RESPONSE_PREFIX + p);
+                    if (p.hasBio()) {
+                        event.respondWith(RESPONSE_PREFIX + p.getBio());
                     }
+                });
+            }
 
-                    // Title
-                    else if (topResult.getType() == SearchResult.Type.TT) {
-                        var title = helper.fetchTitle(topResult.getUrl());
-                        if (title.isPresent()) {
-                            var t = title.get();
-                            event.respondWith(RESPONSE_PREFIX + t);
-                            if (t.hasDescription()) {
-                                event.respondWith(RESPONSE_PREFIX + t.getDescription());
-                            }
-                        }
+            // Title
+            else if (result.getType() == SearchResult.Type.TT) {
+                await(imdb.getTitle(result)).ifPresent(t -> {
+                    event.respondWith(RESPONSE_PREFIX + t);
+                    if (t.hasDescription()) {
+                        event.respondWith(RESPONSE_PREFIX + t.getDescription());
                     }
-                }
+                });
             }
         }
     }
 
+    private static <T> Optional<T> await(CompletableFuture<Optional<T>> future) {
+        try {
+            return future.get(FETCH_DEADLINE.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to fetch IMDB details: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
     @Override
     public GenericMessageEvent getEvent() {
         return event;
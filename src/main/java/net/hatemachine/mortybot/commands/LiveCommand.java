@@ -0,0 +1,183 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.commands;
+
+import net.hatemachine.mortybot.BotCommand;
+import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.listeners.CommandListener;
+import net.hatemachine.mortybot.model.ScoreSubscription;
+import net.hatemachine.mortybot.services.espn.CompetitionType;
+import net.hatemachine.mortybot.services.espn.LiveScores;
+import net.hatemachine.mortybot.services.espn.ScoreboardService;
+import net.hatemachine.mortybot.services.espn.ScoreboardSnapshot;
+import net.hatemachine.mortybot.services.espn.SportsLeague;
+import net.hatemachine.mortybot.util.Validate;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Implements the LIVE command, allowing admin users to subscribe channels to live score updates.
+ */
+@BotCommand(name = "LIVE", restricted = true, help = {
+        "Manages live score updates for channels",
+        "Usage: LIVE ADD <channel> <league> [team]",
+        "Usage: LIVE LIST [channel]",
+        "Usage: LIVE RM <channel> <league> [team]",
+        "Without a team, the channel gets updates for every game in the league",
+        "The team can be its abbreviation or name, and must be on the league's current scoreboard"
+})
+public class LiveCommand implements Command {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveCommand.class);
+
+    private final GenericMessageEvent event;
+    private final CommandListener.CommandSource source;
+    private final List<String> args;
+
+    public LiveCommand(GenericMessageEvent event, CommandListener.CommandSource source, List<String> args) {
+        this.event = event;
+        this.source = source;
+        this.args = args;
+    }
+
+    @Override
+    public void execute() {
+        Validate.arguments(args, 1);
+
+        String subCommand = args.get(0).toUpperCase(Locale.ROOT);
+        List<String> newArgs = args.subList(1, args.size());
+
+        log.debug("subCommand: {}, args: {}", subCommand, newArgs);
+
+        switch (subCommand) {
+            case "ADD" -> addCommand(newArgs);
+            case "LIST" -> listCommand(newArgs);
+            case "RM" -> rmCommand(newArgs);
+            default -> throw new IllegalArgumentException("Invalid subcommand: " + subCommand);
+        }
+    }
+
+    private void addCommand(List<String> newArgs) {
+        Validate.arguments(newArgs, 2);
+
+        String channel = Validate.channelName(newArgs.get(0));
+        SportsLeague league = parseLeague(newArgs.get(1));
+        String team = parseTeam(league, newArgs, true);
+
+        if (LiveScores.getLiveScores().subscribe(channel, league, team)) {
+            event.respondWith(String.format("%s will get live updates for %s", channel, describe(league, team)));
+        } else {
+            event.respondWith(String.format("%s already gets live updates for %s", channel, describe(league, team)));
+        }
+    }
+
+    private void listCommand(List<String> newArgs) {
+        String channel = newArgs.isEmpty() ? null : Validate.channelName(newArgs.get(0));
+        List<ScoreSubscription> subscriptions = LiveScores.getLiveScores().getSubscriptions(channel);
+
+        if (subscriptions.isEmpty()) {
+            event.respondWith("No live score subscriptions");
+        } else {
+            event.respondWith("Live scores: " + subscriptions.stream()
+                    .map(ScoreSubscription::toString)
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    private void rmCommand(List<String> newArgs) {
+        Validate.arguments(newArgs, 2);
+
+        String channel = Validate.channelName(newArgs.get(0));
+        SportsLeague league = parseLeague(newArgs.get(1));
+        String team = parseTeam(league, newArgs, false);
+
+        if (LiveScores.getLiveScores().unsubscribe(channel, league, team)) {
+            event.respondWith(String.format("%s will no longer get live updates for %s", channel, describe(league, team)));
+        } else {
+            event.respondWith(String.format("%s doesn't get live updates for %s", channel, describe(league, team)));
+        }
+    }
+
+    private static SportsLeague parseLeague(String name) {
+        try {
+            return SportsLeague.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown league: " + name + " (expected one of "
+                    + Arrays.toString(SportsLeague.values()) + ")");
+        }
+    }
+
+    /**
+     * Resolves the team named in the arguments to its abbreviation using the league's current scoreboard, since
+     * updates are matched against the abbreviations on the scoreboard. When removing, a team that can't be
+     * resolved is taken as an abbreviation so that subscriptions for teams no longer on the scoreboard can still
+     * be removed.
+     */
+    private static String parseTeam(SportsLeague league, List<String> newArgs, boolean mustExist) {
+        if (newArgs.size() < 3) {
+            return null;
+        }
+        if (league.getCompetitionType() != CompetitionType.TEAM) {
+            throw new IllegalArgumentException(league + " doesn't have teams");
+        }
+
+        List<String> name = newArgs.subList(2, newArgs.size());
+        Optional<ScoreboardSnapshot> snapshot = ScoreboardService.getService().getSnapshot(league);
+        Set<String> teams = snapshot.map(s -> s.teams().resolve(String.join(" ", name))).orElse(Set.of());
+
+        if (teams.size() == 1) {
+            return teams.iterator().next();
+        } else if (teams.size() > 1) {
+            throw new IllegalArgumentException("Which team? " + String.join(", ", teams));
+        } else if (!mustExist) {
+            return String.join("", name).toUpperCase(Locale.ROOT);
+        } else if (snapshot.isEmpty()) {
+            throw new IllegalArgumentException("Couldn't check the " + league + " scoreboard, try again later");
+        } else {
+            throw new IllegalArgumentException("Unknown team: " + String.join(" ", name)
+                    + " (not on the current " + league + " scoreboard)");
+        }
+    }
+
+    private static String describe(SportsLeague league, String team) {
+        return team == null ? league.name() : league.name() + " " + team;
+    }
+
+    @Override
+    public GenericMessageEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public CommandListener.CommandSource getSource() {
+        return source;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        return args;
+    }
+}
@@ -17,31 +17,47 @@
  */
 package net.hatemachine.mortybot.commands;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.CommandParser;
 import net.hatemachine.mortybot.listeners.CommandListener;
-import net.hatemachine.mortybot.services.mst.MSTHelper;
+import net.hatemachine.mortybot.services.mst.MSTStore;
+import net.hatemachine.mortybot.services.mst.MSTYear;
 import net.hatemachine.mortybot.services.mst.ShootingEvent;
-import net.sourceforge.argparse4j.ArgumentParsers;
-import net.sourceforge.argparse4j.inf.ArgumentParser;
-import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.pircbotx.hooks.types.GenericMessageEvent;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
 
 @BotCommand(name = "MST", restricted = false, help = {
         "Retrieves data from Mass Shooting Tracker",
-        "Usage: MST [-y <year>] [number]",
-        "If number is given, will display that specific event with 0 being most recent, 1 being next most recent, and so on"
+        "Usage: MST [-y <year>] [-s <state>] [-c <city>] [-f <yyyy-mm-dd>] [-t <yyyy-mm-dd>] [-n state|month] [number]",
+        "If number is given, will display that specific event with 0 being most recent, 1 being next most recent, and so on",
+        "The state, city and date options narrow down the events, -n counts them by state or by month instead"
 })
 public class MstCommand implements Command {
 
-    private static final Logger log = LoggerFactory.getLogger(MstCommand.class);
+    private static final CommandParser PARSER = CommandParser.create("MST", parser -> {
+        parser.addArgument("-y", "--year").type(Integer.class);
+        parser.addArgument("-s", "--state");
+        parser.addArgument("-c", "--city");
+        parser.addArgument("-f", "--from");
+        parser.addArgument("-t", "--to");
+        parser.addArgument("-n", "--count").choices("state", "month");
+        parser.addArgument("num").type(Integer.class).nargs("?").setDefault(0);
+    });
+
+    /** Maximum number of states to list when counting by state */
+    private static final int MAX_STATES = 15;
 
     private final GenericMessageEvent event;
     private final CommandListener.CommandSource source;
@@ -56,37 +72,123 @@ public class MstCommand implements Command {
     @Override
     public void execute() {
         LocalDate now = LocalDate.now();
-        ArgumentParser parser = ArgumentParsers.newFor("MST").build();
-        parser.addArgument("-y", "--year").type(Integer.class).setDefault(now.getYear());
-        parser.addArgument("num").type(Integer.class).nargs("?").setDefault(0);
-        Namespace ns;
-        List<ShootingEvent> shootings;
+        Namespace ns = PARSER.parse(args);
+        MSTStore store = MSTStore.getStore();
 
-        try {
-            ns = parser.parseArgs(args.toArray(new String[0]));
-        } catch (ArgumentParserException e) {
-            log.error("Problem parsing command arguments", e);
-            parser.handleError(e);
-            throw new IllegalArgumentException("Problem parsing command");
-        }
+        // the default year changes, so it can't be set on the parser
+        int year = ns.getInt("year") != null ? ns.getInt("year") : now.getYear();
+        int num = ns.getInt("num");
+        String state = ns.getString("state");
+        String city = ns.getString("city");
+        LocalDate from = parseDate(ns.getString("from"));
+        LocalDate to = parseDate(ns.getString("to"));
 
-        if (ns != null) {
-            int year = ns.getInt("year");
-            int num = ns.getInt("num");
+        List<ShootingEvent> events;
+        MSTYear data = null;
+        String scope;
 
-            MSTHelper helper = new MSTHelper();
-            try {
-                shootings = helper.shootingsByYear(year);
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException(e);
+        if (from != null || to != null) {
+            if (ns.getInt("year") != null) {
+                throw new IllegalArgumentException("-y can't be used with -f or -t");
             }
-
-            if (shootings == null || shootings.isEmpty()) {
-                event.respondWith("No results found");
+            if (from == null) {
+                from = LocalDate.of(to.getYear(), 1, 1);
+            }
+            if (to == null) {
+                to = now;
+            }
+            if (from.isAfter(to)) {
+                throw new IllegalArgumentException("from date must be before to date");
+            }
+            events = store.getBetween(from, to);
+            scope = from + " to " + to;
+        } else {
+            data = store.getYear(year);
+            if (state != null) {
+                events = data.getByState(state);
+            } else if (city != null) {
+                events = data.getByCity(city);
             } else {
-                ShootingEvent shootingEvent = shootings.get(num);
-                event.respondWith(shootingEvent.toString());
+                events = data.getEvents();
+            }
+            scope = String.valueOf(year);
+        }
+
+        boolean filtered = state != null || city != null || from != null;
+        if (filtered) {
+            events = events.stream()
+                    .filter(e -> state == null || MSTYear.inState(e, state))
+                    .filter(e -> city == null || MSTYear.inCity(e, city))
+                    .toList();
+            if (city != null) {
+                scope = city + ", " + scope;
+            }
+            if (state != null) {
+                scope = state.toUpperCase(Locale.ROOT) + ", " + scope;
+            }
+        }
+
+        if (events.isEmpty()) {
+            event.respondWith("No results found");
+        } else if ("state".equals(ns.getString("count"))) {
+            // a whole year has its counts worked out when it's loaded
+            var counts = filtered ? MSTYear.countByState(events) : data.getStateCounts();
+            event.respondWith(formatStateCounts(counts, scope));
+        } else if ("month".equals(ns.getString("count"))) {
+            var counts = filtered ? MSTYear.countByMonth(events) : data.getMonthCounts();
+            event.respondWith(formatMonthCounts(counts, scope));
+        } else {
+            if (num < 0 || num >= events.size()) {
+                throw new IllegalArgumentException("number must be between 0 and " + (events.size() - 1));
             }
+            if (filtered) {
+                event.respondWith(formatSummary(events, scope));
+            }
+            event.respondWith(events.get(num).toString());
+        }
+    }
+
+    private static LocalDate parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("dates must be in the form yyyy-mm-dd");
+        }
+    }
+
+    private static String formatSummary(List<ShootingEvent> events, String scope) {
+        int killed = events.stream().mapToInt(e -> toInt(e.getKilled())).sum();
+        int wounded = events.stream().mapToInt(e -> toInt(e.getWounded())).sum();
+        return String.format("%d shootings (%s) - Killed: %d, Wounded: %d", events.size(), scope, killed, wounded);
+    }
+
+    private static String formatStateCounts(Map<String, Integer> counts, String scope) {
+        String states = counts.entrySet().stream()
+                .limit(MAX_STATES)
+                .map(e -> e.getKey() + " " + e.getValue())
+                .collect(Collectors.joining(", "));
+        return "Shootings by state (" + scope + "): " + states;
+    }
+
+    private static String formatMonthCounts(SortedMap<YearMonth, Integer> counts, String scope) {
+        // only label months with their year when the counts cover more than one
+        boolean multipleYears = !counts.isEmpty() && counts.firstKey().getYear() != counts.lastKey().getYear();
+        StringJoiner months = new StringJoiner(", ");
+        counts.forEach((month, count) -> {
+            String name = month.getMonth().getDisplayName(TextStyle.SHORT, Locale.US);
+            months.add((multipleYears ? name + " " + month.getYear() : name) + " " + count);
+        });
+        return "Shootings by month (" + scope + "): " + months;
+    }
+
+    private static int toInt(String str) {
+        try {
+            return str == null ? 0 : Integer.parseInt(str.trim());
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
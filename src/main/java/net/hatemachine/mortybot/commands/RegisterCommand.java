@@ -21,6 +21,7 @@ import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.Command;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.listeners.CommandListener;
 import net.hatemachine.mortybot.model.BotUser;
 import net.hatemachine.mortybot.repositories.BotUserRepository;
@@ -69,7 +70,7 @@ public class RegisterCommand implements Command {
         Validate.botUserName(desiredName);
         String maskedAddress = IrcUtils.maskAddress(user.getHostmask(), maskType);
 
-        Optional<BotUser> optionalBotUser = botUserRepository.findByHostmask(user.getHostmask());
+        Optional<BotUser> optionalBotUser = IdentityManager.getManager().getBotUser(user);
 
         if (optionalBotUser.isPresent()) {
             log.info("Hostmask {} matches existing bot user(s): {}", user.getHostmask(), optionalBotUser.get().getName());
@@ -18,6 +18,7 @@
 package net.hatemachine.mortybot.commands;
 
 import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.CommandParser;
 import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
@@ -25,10 +26,7 @@ import net.hatemachine.mortybot.listeners.CommandListener;
 import net.hatemachine.mortybot.services.rt.Movie;
 import net.hatemachine.mortybot.services.rt.RTHelper;
 import net.hatemachine.mortybot.util.Validate;
-import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
-import net.sourceforge.argparse4j.inf.ArgumentParser;
-import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.pircbotx.Colors;
 import org.pircbotx.hooks.types.GenericMessageEvent;
@@ -53,6 +51,11 @@ public class RottenTomatoesCommand implements Command {
     private static final String FRESH = TOMATO + "fresh" + TOMATO;
     private static final String ROTTEN = SPLAT + "rotten" + SPLAT;
 
+    private static final CommandParser PARSER = CommandParser.create("RT", parser -> {
+        parser.addArgument("-l", "--list").action(Arguments.storeTrue());
+        parser.addArgument("query").nargs("*");
+    });
+
     private static final Logger log = LoggerFactory.getLogger(RottenTomatoesCommand.class);
 
     private final GenericMessageEvent event;
@@ -71,39 +74,26 @@ public class RottenTomatoesCommand implements Command {
             throw new IllegalArgumentException("Not enough arguments");
         }
 
-        ArgumentParser parser = ArgumentParsers.newFor("RT").build();
-        parser.addArgument("-l", "--list").action(Arguments.storeTrue());
-        parser.addArgument("query").nargs("*");
-        Namespace ns;
-
-        try {
-            ns = parser.parseArgs(args.toArray(new String[0]));
-        } catch (ArgumentParserException e) {
-            log.error("Problem parsing command arguments", e);
-            parser.handleError(e);
-            throw new IllegalArgumentException("Problem parsing command");
-        }
+        Namespace ns = PARSER.parse(args);
 
-        if (ns != null) {
-            int maxResults = BotProperties.getBotProperties().getIntProperty("rt.max.results", BotDefaults.RT_MAX_RESULTS);
-            boolean listFlag = ns.getBoolean("list");
-            String query = String.join(" ", ns.getList("query"));
+        int maxResults = BotProperties.getBotProperties().getIntProperty("rt.max.results", BotDefaults.RT_MAX_RESULTS);
+        boolean listFlag = ns.getBoolean("list");
+        String query = String.join(" ", ns.getList("query"));
 
-            List<Movie> results = RTHelper.search(query);
+        List<Movie> results = RTHelper.search(query);
 
-            if (results.isEmpty()) {
-                event.respondWith("No results found");
-            } else {
-                if (listFlag) {
-                    // -l flag present, list results
-                    event.respondWith(String.format(RESPONSE_PREFIX + "Showing top %d results:", Math.min(results.size(), maxResults)));
-                    for (int i = 0; i < results.size() && i < maxResults; i++) {
-                        event.respondWith(formatResponse(results.get(i)));
-                    }
-                } else {
-                    // display details for top result
-                    event.respondWith(formatResponse(results.get(0)));
+        if (results.isEmpty()) {
+            event.respondWith("No results found");
+        } else {
+            if (listFlag) {
+                // -l flag present, list results
+                event.respondWith(String.format(RESPONSE_PREFIX + "Showing top %d results:", Math.min(results.size(), maxResults)));
+                for (int i = 0; i < results.size() && i < maxResults; i++) {
+                    event.respondWith(formatResponse(results.get(i)));
                 }
+            } else {
+                // display details for top result
+                event.respondWith(formatResponse(results.get(0)));
             }
         }
     }
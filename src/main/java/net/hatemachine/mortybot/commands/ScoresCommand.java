@@ -0,0 +1,105 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.commands;
+
+import net.hatemachine.mortybot.BotCommand;
+import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.listeners.CommandListener;
+import net.hatemachine.mortybot.services.espn.CompetitionType;
+import net.hatemachine.mortybot.services.espn.ScoreboardService;
+import net.hatemachine.mortybot.services.espn.ScoreboardSnapshot;
+import net.hatemachine.mortybot.services.espn.SportsLeague;
+import net.hatemachine.mortybot.services.espn.model.Event;
+import net.hatemachine.mortybot.util.Validate;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Implements the SCORES command, finding a team's games without needing to know which league it plays in.
+ */
+@BotCommand(name = "SCORES", help = {
+        "Shows scores for a team in any league",
+        "Usage: SCORES <team> ...",
+        "Teams can be given by name, nickname, city or abbreviation (e.g. yankees, new york, NYY)"
+})
+public class ScoresCommand implements Command {
+
+    private static final Duration FETCH_DEADLINE = Duration.ofSeconds(15);
+
+    private static final List<SportsLeague> TEAM_LEAGUES = Arrays.stream(SportsLeague.values())
+            .filter(league -> league.getCompetitionType() == CompetitionType.TEAM)
+            .toList();
+
+    private final GenericMessageEvent event;
+    private final CommandListener.CommandSource source;
+    private final List<String> args;
+
+    public ScoresCommand(GenericMessageEvent event, CommandListener.CommandSource source, List<String> args) {
+        this.event = event;
+        this.source = source;
+        this.args = args;
+    }
+
+    @Override
+    public void execute() {
+        Validate.arguments(args, 1);
+
+        int maxResults = BotProperties.getBotProperties().getIntProperty("scores.max.results", BotDefaults.SCORES_MAX_RESULTS);
+        List<Optional<ScoreboardSnapshot>> scoreboards = ScoreboardService.getService().getSnapshots(TEAM_LEAGUES, FETCH_DEADLINE);
+        List<String> lines = new ArrayList<>();
+
+        for (Optional<ScoreboardSnapshot> scoreboard : scoreboards) {
+            if (scoreboard.isEmpty()) {
+                continue;
+            }
+            for (Event sportingEvent : scoreboard.get().findEvents(args)) {
+                if (lines.size() < maxResults) {
+                    lines.add(String.format("%-3s %s", scoreboard.get().league(), SportsCommands.formatTeamEvent(sportingEvent)));
+                }
+            }
+        }
+
+        if (lines.isEmpty()) {
+            event.respondWith("No games found for " + String.join(" ", args));
+        } else {
+            lines.forEach(event::respondWith);
+        }
+    }
+
+    @Override
+    public GenericMessageEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public CommandListener.CommandSource getSource() {
+        return source;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        return args;
+    }
+}
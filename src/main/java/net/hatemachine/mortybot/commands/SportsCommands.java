@@ -22,12 +22,12 @@ import net.hatemachine.mortybot.Command;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.listeners.CommandListener;
-import net.hatemachine.mortybot.services.espn.EspnClient;
+import net.hatemachine.mortybot.services.espn.ScoreboardService;
+import net.hatemachine.mortybot.services.espn.ScoreboardSnapshot;
 import net.hatemachine.mortybot.services.espn.SportsLeague;
 import net.hatemachine.mortybot.services.espn.model.Competition;
 import net.hatemachine.mortybot.services.espn.model.Competitor;
 import net.hatemachine.mortybot.services.espn.model.Event;
-import net.hatemachine.mortybot.services.espn.model.Scoreboard;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -95,22 +95,31 @@ public class SportsCommands implements Command {
 
         // Determine the league and request the scoreboard
         SportsLeague league = Enum.valueOf(SportsLeague.class, cmdStr.toUpperCase());
-        EspnClient espnClient = new EspnClient();
-        Optional<Scoreboard> scoreboard = espnClient.scoreboard(league);
+        List<String> lines = showScoreboard(league);
+
+        if (lines.isEmpty()) {
+            event.respondWith("Failed to get scoreboard!");
+        } else {
+            lines.forEach(event::respondWith);
+        }
+    }
+
+    private List<String> showScoreboard(SportsLeague league) {
+        Optional<ScoreboardSnapshot> scoreboard = ScoreboardService.getService().getSnapshot(league);
 
         if (scoreboard.isPresent()) {
             if (league == SportsLeague.UFC) {
-                showIndividualEventScoreboard(scoreboard.get());
+                return showIndividualEventScoreboard(scoreboard.get());
             } else {
-                showTeamEventScoreboard(scoreboard.get());
+                return showTeamEventScoreboard(scoreboard.get());
             }
         } else {
             log.warn("Did not get a scoreboard result! league: {}", league);
-            event.respondWith("Failed to get scoreboard!");
+            return List.of();
         }
     }
 
-    private void showTeamEventScoreboard(Scoreboard scoreboard) {
+    private List<String> showTeamEventScoreboard(ScoreboardSnapshot scoreboard) {
         List<Event> sportingEvents = scoreboard.events();
         boolean recentFlag = true; // this limits us to active scoreboard events
         List<String> newArgs = args;
@@ -123,71 +132,48 @@ public class SportsCommands implements Command {
 
         // Apply any filters we have
         if (!newArgs.isEmpty()) {
-            final List<String> myArgs = newArgs;
-            sportingEvents = sportingEvents.stream()
-                    .filter(evt -> {
-                        for (String newArg : myArgs) {
-                            if (evt.shortName().contains(newArg.toUpperCase())) {
-                                return true;
-                            }
-                        }
-                        return false;
-                    })
-                    .toList();
+            sportingEvents = scoreboard.findEvents(newArgs);
         } else if (recentFlag) {
-            sportingEvents = sportingEvents.stream()
-                    .filter(evt -> evt.competitions().getFirst().recent())
-                    .toList();
+            sportingEvents = scoreboard.recentEvents();
         }
 
-        // Respond to the user
+        // Build our response
+        List<String> lines = new ArrayList<>();
         if (!sportingEvents.isEmpty()) {
             for (Event sportingEvent : sportingEvents) {
-                event.respondWith(formatTeamEvent(sportingEvent));
+                lines.add(formatTeamEvent(sportingEvent));
             }
         } else {
             if (recentFlag || !newArgs.isEmpty()) {
-                event.respondWith("No events found. Try passing the -a flag to see all scoreboard events.");
+                lines.add("No events found. Try passing the -a flag to see all scoreboard events.");
             } else {
-                event.respondWith("No events found");
+                lines.add("No events found");
             }
         }
+        return lines;
     }
 
-    private void showIndividualEventScoreboard(Scoreboard scoreboard) {
+    private List<String> showIndividualEventScoreboard(ScoreboardSnapshot scoreboard) {
         List<Event> sportingEvents = scoreboard.events();
+        List<String> lines = new ArrayList<>();
 
         if (!sportingEvents.isEmpty()) {
             for (Event sEvent : sportingEvents) {
-                event.respondWith(formatIndividualEvent(sEvent));
+                lines.add(formatIndividualEvent(sEvent));
             }
         } else {
-            event.respondWith("No recent events found");
-        }
-    }
-
-    private List<Event> findEventsByTeamAbbreviation(List<Event> sportingEvents, List<String> abbrList) {
-        List<Event> foundEvents = new ArrayList<>();
-
-        for (Event sEvent : sportingEvents) {
-            boolean addFlag = false;
-            List<Competitor> competitors = sEvent.competitions().getFirst().competitors();
-
-            for (Competitor c : competitors) {
-                if (abbrList.contains(c.team().abbreviation())) {
-                    addFlag = true;
-                }
-            }
-
-            if (addFlag) {
-                foundEvents.add(sEvent);
-            }
+            lines.add("No recent events found");
         }
-
-        return foundEvents;
+        return lines;
     }
 
-    private String formatTeamEvent(Event sportingEvent) {
+    /**
+     * Formats an event between two teams as a single line of scores.
+     *
+     * @param sportingEvent the event to format
+     * @return the formatted event
+     */
+    static String formatTeamEvent(Event sportingEvent) {
         Competition competition = sportingEvent.competitions().getFirst();
         List<Competitor> competitors = competition.competitors();
 
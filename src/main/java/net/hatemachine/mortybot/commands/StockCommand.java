@@ -17,44 +17,47 @@
  */
 package net.hatemachine.mortybot.commands;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.Option;
-import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
-import com.jayway.jsonpath.spi.json.JsonProvider;
-import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
-import com.jayway.jsonpath.spi.mapper.MappingProvider;
 import net.hatemachine.mortybot.Command;
 import net.hatemachine.mortybot.BotCommand;
+import net.hatemachine.mortybot.CommandAuthorizer;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.listeners.CommandListener;
+import net.hatemachine.mortybot.model.StockWatch;
+import net.hatemachine.mortybot.services.stocks.Quote;
+import net.hatemachine.mortybot.services.stocks.QuoteService;
+import net.hatemachine.mortybot.services.stocks.StockWatcher;
 import net.hatemachine.mortybot.util.Validate;
-import net.hatemachine.mortybot.util.WebClient;
+import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.EnumSet;
+import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 /**
- * Implements the STOCK command, allowing users to look up stock quotes.
+ * Implements the STOCK command, allowing users to look up stock quotes and have a channel told about large moves
+ * in the stocks it's watching.
  */
 @BotCommand(name = "STOCK", help = {
         "Looks up the current price of stock symbols",
-        "Usage: STOCK <symbol1> [symbol2] ..."
+        "Usage: STOCK <symbol1> [symbol2] ...",
+        "Usage: STOCK WATCH <symbol> [percent]",
+        "Usage: STOCK UNWATCH <symbol>",
+        "Usage: STOCK WATCHING",
+        "A watched symbol is announced in the channel when its price moves by more than the given percent",
+        "WATCH and UNWATCH are restricted to admins"
 })
 public class StockCommand implements Command {
 
-    private static final String BASE_URL = "https://query1.finance.yahoo.com/v7/finance/chart/";
+    private static final Duration FETCH_DEADLINE = Duration.ofSeconds(15);
 
     private static final Logger log = LoggerFactory.getLogger(StockCommand.class);
 
@@ -62,29 +65,6 @@ public class StockCommand implements Command {
     private final CommandListener.CommandSource source;
     private final List<String> args;
 
-    static {
-        // This is needed to use JsonPath with Jackson
-        Configuration.setDefaults(new Configuration.Defaults() {
-            private final JsonProvider jsonProvider = new JacksonJsonProvider();
-            private final MappingProvider mappingProvider = new JacksonMappingProvider();
-
-            @Override
-            public JsonProvider jsonProvider() {
-                return jsonProvider;
-            }
-
-            @Override
-            public MappingProvider mappingProvider() {
-                return mappingProvider;
-            }
-
-            @Override
-            public Set<Option> options() {
-                return EnumSet.noneOf(Option.class);
-            }
-        });
-    }
-
     public StockCommand(GenericMessageEvent event, CommandListener.CommandSource source, List<String> args) {
         this.event = event;
         this.source = source;
@@ -97,38 +77,103 @@ public class StockCommand implements Command {
             throw new IllegalArgumentException("Not enough arguments");
         }
 
+        String subCommand = args.get(0).toUpperCase(Locale.ROOT);
+
+        // watches make the bot post on its own, so only admins get to manage them
+        if ((subCommand.equals("WATCH") || subCommand.equals("UNWATCH")) && !CommandAuthorizer.isAdmin(event.getUser())) {
+            event.respondWith("You are not authorized");
+            return;
+        }
+
+        switch (subCommand) {
+            case "WATCH" -> watchCommand(args.subList(1, args.size()));
+            case "UNWATCH" -> unwatchCommand(args.subList(1, args.size()));
+            case "WATCHING" -> watchingCommand();
+            default -> quoteCommand();
+        }
+    }
+
+    private void quoteCommand() {
         BotProperties props = BotProperties.getBotProperties();
         int maxSymbols = props.getIntProperty("stock.max.symbols", BotDefaults.STOCK_MAX_SYMBOLS);
+        List<String> symbols = args.subList(0, Math.min(args.size(), maxSymbols));
+
+        // all the symbols are fetched in a single request and come back in the order they were asked for
+        Map<String, Quote> quotes;
+        try {
+            quotes = QuoteService.getService().getQuotes(symbols).get(FETCH_DEADLINE.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to fetch stock quotes for {}: {}", symbols, e.getMessage());
+            quotes = Map.of();
+        }
 
-        for (int cnt = 0; cnt < args.size() && cnt < maxSymbols; cnt++) {
-            String symbol = args.get(cnt);
+        if (quotes.isEmpty()) {
+            event.respondWith("No quotes found");
+        } else {
+            quotes.values().forEach(quote -> event.respondWith(quote.format()));
+        }
+    }
 
-            log.info("Fetching stock quote for {}", symbol);
+    private void watchCommand(List<String> newArgs) {
+        Validate.arguments(newArgs, 1);
 
-            var webClient = new WebClient();
-            Optional<String> json = webClient.get(BASE_URL + symbol);
+        String channel = getChannel();
+        String symbol = QuoteService.normalizeSymbol(newArgs.get(0));
+        Double threshold = newArgs.size() > 1 ? parseThreshold(newArgs.get(1)) : null;
+        String describe = threshold == null ? symbol : String.format("%s (%s%%)", symbol, newArgs.get(1));
 
-            if (json.isPresent()) {
-                String quote = parseQuote(json.get());
-                event.respondWith(quote);
-            }
+        if (StockWatcher.getStockWatcher().watch(channel, symbol, threshold)) {
+            event.respondWith(String.format("%s is now watching %s", channel, describe));
+        } else {
+            event.respondWith(String.format("%s was already watching %s, updated", channel, describe));
         }
     }
 
-    private static String parseQuote(String json) {
-        Validate.notNullOrBlank(json);
+    private void unwatchCommand(List<String> newArgs) {
+        Validate.arguments(newArgs, 1);
+
+        String channel = getChannel();
+        String symbol = QuoteService.normalizeSymbol(newArgs.get(0));
 
-        var conf = Configuration.defaultConfiguration();
-        var metaNode = JsonPath.using(conf).parse(json).read("$.chart.result[0].meta", JsonNode.class);
-        var symbol = metaNode.get("symbol").asText();
-        var marketTime = metaNode.get("regularMarketTime").asInt();
-        var zId = ZoneId.systemDefault();
-        var dt = ZonedDateTime.ofInstant(Instant.ofEpochSecond(marketTime), zId);
-        var df = DateTimeFormatter.ofPattern("h:mma");
-        var timezone = metaNode.get("timezone").asText();
-        var marketPrice = metaNode.get("regularMarketPrice").asDouble();
+        if (StockWatcher.getStockWatcher().unwatch(channel, symbol)) {
+            event.respondWith(String.format("%s is no longer watching %s", channel, symbol));
+        } else {
+            event.respondWith(String.format("%s isn't watching %s", channel, symbol));
+        }
+    }
 
-        return String.format("%s %.2f [%s %s]", symbol, marketPrice, dt.format(df), timezone);
+    private void watchingCommand() {
+        List<StockWatch> watches = StockWatcher.getStockWatcher().getWatches(getChannel());
+
+        if (watches.isEmpty()) {
+            event.respondWith("No stocks being watched");
+        } else {
+            event.respondWith("Watching: " + watches.stream()
+                    .map(w -> w.getThreshold() == null ? w.getSymbol() : String.format("%s (%s%%)", w.getSymbol(), w.getThreshold()))
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    private String getChannel() {
+        if (source != CommandListener.CommandSource.PUBLIC) {
+            throw new IllegalArgumentException("Stock watches can only be managed from a channel");
+        }
+        return ((MessageEvent) event).getChannel().getName();
+    }
+
+    private static Double parseThreshold(String str) {
+        try {
+            double threshold = Double.parseDouble(str.endsWith("%") ? str.substring(0, str.length() - 1) : str);
+            if (!Double.isFinite(threshold) || threshold <= 0 || threshold > 100) {
+                throw new IllegalArgumentException("percent must be between 0 and 100");
+            }
+            return threshold;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid percent: " + str);
+        }
     }
 
     @Override
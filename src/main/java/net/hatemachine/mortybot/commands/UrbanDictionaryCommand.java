@@ -23,6 +23,7 @@ import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.listeners.CommandListener;
 import net.hatemachine.mortybot.services.urban.Definition;
+import net.hatemachine.mortybot.services.urban.RandomDefinitionPool;
 import net.hatemachine.mortybot.services.urban.UrbanDictionary;
 import org.pircbotx.Colors;
 import org.pircbotx.hooks.types.GenericMessageEvent;
@@ -72,7 +73,12 @@ public class UrbanDictionaryCommand implements Command {
             }
         }
 
-        if (term.isBlank()) {
+        if (args.isEmpty()) {
+            // serve random definitions from the pool, only fetching a page ourselves if it has run dry
+            results = RandomDefinitionPool.getPool().next()
+                    .map(List::of)
+                    .orElseGet(UrbanDictionary::random);
+        } else if (term.isBlank()) {
             results = UrbanDictionary.lookup();
         } else {
             results = UrbanDictionary.lookup(term);
@@ -17,24 +17,25 @@
  */
 package net.hatemachine.mortybot.commands;
 
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.JsonPath;
 import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.CommandParser;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.listeners.CommandListener;
 import net.hatemachine.mortybot.repositories.BotUserRepository;
-import net.hatemachine.mortybot.util.WebClient;
-import net.sourceforge.argparse4j.ArgumentParsers;
+import net.hatemachine.mortybot.services.weather.Weather;
+import net.hatemachine.mortybot.services.weather.WeatherService;
 import net.sourceforge.argparse4j.impl.Arguments;
-import net.sourceforge.argparse4j.inf.ArgumentParser;
-import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Implements the WEATHER command, allowing users to look up the current weather for a location.
@@ -51,8 +52,12 @@ import java.util.Optional;
 })
 public class WeatherCommand implements Command {
 
-    private static final String BASE_URL = "https://wttr.in/";
-    private static final String PARAMETERS = "?format=j1";
+    private static final Duration FETCH_DEADLINE = Duration.ofSeconds(20);
+
+    private static final CommandParser PARSER = CommandParser.create("WEATHER", parser -> {
+        parser.addArgument("-d", "--default").action(Arguments.storeTrue());
+        parser.addArgument("location").nargs("*");
+    });
 
     private static final Logger log = LoggerFactory.getLogger(WeatherCommand.class);
 
@@ -68,71 +73,54 @@ public class WeatherCommand implements Command {
 
     @Override
     public void execute() {
-        ArgumentParser parser = ArgumentParsers.newFor("WEATHER").build();
-        parser.addArgument("-d", "--default").action(Arguments.storeTrue());
-        parser.addArgument("location").nargs("*");
+        var ns = PARSER.parse(args);
+        var defaultFlag = ns.getBoolean("default");
+        var location = String.join(" ", ns.getList("location"));
 
-        try {
-            var ns = parser.parseArgs(args.toArray(new String[0]));
-            var defaultFlag = ns.getBoolean("default");
-            var location = String.join(" ", ns.getList("location"));
-
-            var botUserRepository = new BotUserRepository();
-            var optionalBotUser = botUserRepository.findByHostmask(event.getUser().getHostmask()).stream().findFirst();
-
-            // If user passes the -d option, attempt to set their default location
-            if (defaultFlag.equals(Boolean.TRUE)) {
-                if (location.isBlank()) {
-                    throw new IllegalArgumentException("location not provided");
-                } else if (optionalBotUser.isEmpty()) {
-                    event.respondWith("You must register first");
-                } else {
-                    var botUser = optionalBotUser.get();
-                    botUser.setLocation(location);
-                    botUserRepository.save(botUser);
-                    event.respondWith("Set default location to: " + location);
-                }
-            }
-
-            // If still no location provided, and we know the user, try to pull it from their default
-            if (location.isBlank() && optionalBotUser.isPresent()) {
-                location = optionalBotUser.get().getLocation();
-            }
+        var botUserRepository = new BotUserRepository();
+        var optionalBotUser = IdentityManager.getManager().getBotUser(event.getUser());
 
-            // One last check
-            if (location == null || location.isBlank()) {
+        // If user passes the -d option, attempt to set their default location
+        if (defaultFlag.equals(Boolean.TRUE)) {
+            if (location.isBlank()) {
                 throw new IllegalArgumentException("location not provided");
+            } else if (optionalBotUser.isEmpty()) {
+                event.respondWith("You must register first");
+            } else {
+                var botUser = optionalBotUser.get();
+                botUser.setLocation(location);
+                botUserRepository.save(botUser);
+                event.respondWith("Set default location to: " + location);
             }
+        }
 
-            // Fetch and parse the data, then respond to the user
-            var webClient = new WebClient();
-            Optional<String> json = webClient.get(BASE_URL + location.replace(" ", "+") + PARAMETERS);
+        // If still no location provided, and we know the user, try to pull it from their default
+        if (location.isBlank() && optionalBotUser.isPresent()) {
+            location = optionalBotUser.get().getLocation();
+        }
 
-            if (json.isPresent()) {
-                event.respondWith(parseWeatherJson(json.get()));
-            } else {
-                event.respondWith("No data received");
-            }
+        // One last check
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("location not provided");
+        }
 
-        } catch (ArgumentParserException e) {
-            log.error("Failed to parse args: {}", args, e);
-            event.respondWith("Something went wrong");
+        // Fetch the weather, or reuse it if the area has been looked up recently, then respond to the user
+        Optional<Weather> weather;
+        try {
+            weather = WeatherService.getService().getWeather(location).get(FETCH_DEADLINE.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to fetch weather for {}: {}", location, e.getMessage());
+            weather = Optional.empty();
         }
-    }
 
-    private String parseWeatherJson(String json) {
-        Configuration conf = Configuration.defaultConfiguration();
-        DocumentContext parsedJson = JsonPath.using(conf).parse(json);
-        Integer humidity = Integer.parseInt(parsedJson.read("$.current_condition[0].humidity"));
-        Integer tempC = Integer.parseInt(parsedJson.read("$.current_condition[0].temp_C"));
-        Integer tempF = Integer.parseInt(parsedJson.read("$.current_condition[0].temp_F"));
-        String weatherDesc = parsedJson.read("$.current_condition[0].weatherDesc[0].value");
-        String areaName = parsedJson.read("$.nearest_area[0].areaName[0].value");
-        String region = parsedJson.read("$.nearest_area[0].region[0].value");
-        String windDir16Point = parsedJson.read("$.current_condition[0].winddir16Point");
-        Integer windspeedMiles = Integer.parseInt(parsedJson.read("$.current_condition[0].windspeedMiles"));
-
-        return String.format("[wtr] %s, %s (%d°F/%d°C/%s) [H:%d%% W:%dmph/%s]", areaName, region, tempF, tempC, weatherDesc, humidity, windspeedMiles, windDir16Point);
+        if (weather.isPresent()) {
+            event.respondWith(weather.get().format());
+        } else {
+            event.respondWith("No data received");
+        }
     }
 
     @Override
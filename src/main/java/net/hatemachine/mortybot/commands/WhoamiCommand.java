@@ -19,9 +19,9 @@ package net.hatemachine.mortybot.commands;
 
 import net.hatemachine.mortybot.BotCommand;
 import net.hatemachine.mortybot.Command;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.listeners.CommandListener;
 import net.hatemachine.mortybot.model.BotUser;
-import net.hatemachine.mortybot.repositories.BotUserRepository;
 import org.pircbotx.User;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
@@ -49,9 +49,8 @@ public class WhoamiCommand implements Command {
 
     @Override
     public void execute() {
-        BotUserRepository repo = new BotUserRepository();
         User user = event.getUser();
-        Optional<BotUser> optionalBotUser = repo.findByHostmask(user.getHostmask());
+        Optional<BotUser> optionalBotUser = IdentityManager.getManager().getBotUser(user);
 
         if (optionalBotUser.isPresent()) {
             BotUser botUser = optionalBotUser.get();
@@ -19,11 +19,15 @@ package net.hatemachine.mortybot.commands;
 
 import net.hatemachine.mortybot.Command;
 import net.hatemachine.mortybot.BotCommand;
+import net.hatemachine.mortybot.CommandResultCache;
 import net.hatemachine.mortybot.services.dict.DictionaryEntry;
 import net.hatemachine.mortybot.services.dict.MerriamWebsterWeb;
 import net.hatemachine.mortybot.listeners.CommandListener;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -36,6 +40,9 @@ import java.util.Optional;
 })
 public class WotdCommand implements Command {
 
+    /** Merriam-Webster puts up a new word at midnight in New York */
+    private static final ZoneId PUBLISH_ZONE = ZoneId.of("America/New_York");
+
     private final GenericMessageEvent event;
     private final CommandListener.CommandSource source;
     private final List<String> args;
@@ -48,6 +55,20 @@ public class WotdCommand implements Command {
 
     @Override
     public void execute() {
+        List<String> lines = CommandResultCache.getCache().get("WOTD", args, untilNextWord(), WotdCommand::fetchWotd);
+        lines.forEach(event::respondWith);
+    }
+
+    /**
+     * Works out how long the current word is good for, so a cached word expires when the next one is published
+     * rather than a fixed time after it was fetched.
+     */
+    private static Duration untilNextWord() {
+        ZonedDateTime now = ZonedDateTime.now(PUBLISH_ZONE);
+        return Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay(PUBLISH_ZONE));
+    }
+
+    private static List<String> fetchWotd() {
         MerriamWebsterWeb mw = new MerriamWebsterWeb();
         Optional<DictionaryEntry> optEntry = mw.wotd();
 
@@ -62,8 +83,10 @@ public class WotdCommand implements Command {
                 sb.append(defs.get(0));
             }
 
-            event.respondWith(sb.toString());
+            return List.of(sb.toString());
         }
+
+        return List.of();
     }
 
     @Override
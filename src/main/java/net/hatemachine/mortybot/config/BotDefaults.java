@@ -37,12 +37,66 @@ public class BotDefaults {
     public static final int     AUTO_RECONNECT_ATTEMPTS = 3;
     public static final boolean AUTO_NICK_CHANGE = true;
 
+    // CommandResultCache
+    public static final int     COMMANDS_CACHE_SIZE = 500;
+
+    // CommandExecutor
+    public static final int     COMMANDS_MAX_PER_USER = 3;
+    public static final int     COMMANDS_MAX_PER_COMMAND = 10;
+    public static final int     COMMANDS_TIMEOUT = 30000;
+    public static final int     COMMANDS_CANCEL_GRACE = 5000;
+
     // HibernateUtil
     public static final String  DB_URL = "jdbc:sqlite:mortybot.db";
 
+    // IdentityManager
+    public static final int     IDENTITY_CACHE_SIZE = 1000;
+
     // PasswordEncoderFactory
     public static final String  PASSWORD_ENCODER = "BCRYPT";
 
+    // HttpClientPool
+    public static final int     HTTP_CONNECT_TIMEOUT = 10000;
+    public static final int     HTTP_KEEPALIVE_TIMEOUT = 120;
+    public static final int     HTTP_MAX_BYTES = 8 * 1024 * 1024;
+
+    // HttpCache
+    public static final boolean HTTP_CACHE_ENABLED = true;
+    public static final String  HTTP_CACHE_DIR = "cache/http";
+    public static final int     HTTP_CACHE_SIZE = 64;
+
+    // ScoreboardService
+    public static final int     ESPN_POLL_LIVE = 30;
+    public static final int     ESPN_POLL_IDLE = 600;
+    public static final int     ESPN_POLL_OFFSEASON = 21600;
+    public static final int     ESPN_POLL_EXPIRY = 86400;
+
+    // LiveScores
+    public static final int     LIVE_SCORES_INTERVAL = 60;
+    public static final int     LIVE_SCORES_MAX_LINES = 4;
+
+    // GeoIpService
+    public static final String  GEOIP_DATABASE = "GeoLite2-City.mmdb";
+    public static final int     GEOIP_CACHE_SIZE = 1024;
+    public static final int     GEOIP_RELOAD_INTERVAL = 3600;
+    public static final boolean GEOIP_WEBSERVICE_FALLBACK = true;
+
+    // WeatherService
+    public static final int     WEATHER_TTL = 600;
+    public static final int     WEATHER_CACHE_SIZE = 1024;
+    public static final int     WEATHER_PREFETCH_INTERVAL = 900;
+    public static final int     WEATHER_PREFETCH_MAX = 20;
+
+    // MSTStore
+    public static final String  MST_DATA_DIR = "data/mst";
+    public static final int     MST_REFRESH = 3600;
+
+    // ScheduledOutputRaw
+    public static final int     OUTPUT_BURST = 5;
+    public static final int     OUTPUT_INTERVAL = 2000;
+    public static final int     OUTPUT_LAG_INTERVAL = 30000;
+    public static final boolean OUTPUT_PACK_LINES = true;
+
     // AutoOpListener
     public static final boolean AUTO_OP = true;
     public static final int     AUTO_OP_DELAY = 10000;
@@ -57,6 +111,13 @@ public class BotDefaults {
     public static final int     LINKS_MAX = 2;
     public static final int     LINKS_MIN_LENGTH = 36;
     public static final int     LINKS_MAX_TITLE_LENGTH = 200;
+    public static final int     LINKS_TIMEOUT = 15000;
+    public static final int     LINKS_TITLE_MAX_BYTES = 131072;
+    public static final int     LINKS_TITLE_TIMEOUT = 5000;
+    public static final int     LINKS_CACHE_SIZE = 1000;
+    public static final int     LINKS_CACHE_TTL = 86400;
+    public static final int     LINKS_CACHE_SHORT_TTL = 2592000;
+    public static final int     LINKS_CACHE_FAILURE_TTL = 600;
 
     // BanKickCommand
     public static final int     BAN_MASK_TYPE = 3;
@@ -64,10 +125,22 @@ public class BotDefaults {
 
     // DictionaryCommand
     public static final int     DICT_MAX_DEFS = 4;
+    public static final int     DICT_MAX_WORDS = 10;
+
+    // DictionaryService
+    public static final String  DICT_LOCAL_SOURCE = "dictionary.tsv";
+    public static final String  DICT_LOCAL_INDEX = "data/dict/dictionary.idx";
+    public static final int     DICT_CACHE_SIZE = 512;
+    public static final int     DICT_CACHE_TTL = 86400;
 
     // ImdbCommand
     public static final int     IMDB_MAX_RESULTS = 4;
 
+    // IMDBService
+    public static final int     IMDB_CACHE_SIZE = 256;
+    public static final int     IMDB_CACHE_TTL = 21600;
+    public static final int     IMDB_PREFETCH = 3;
+
     // IdentifyCommand
     public static final int     IDENTIFY_MASK_TYPE = 3;
 
@@ -77,9 +150,25 @@ public class BotDefaults {
     // RottenTomatoesCommand
     public static final int     RT_MAX_RESULTS = 4;
 
+    // ScoresCommand
+    public static final int     SCORES_MAX_RESULTS = 6;
+
     // StockCommand
     public static final int     STOCK_MAX_SYMBOLS = 4;
 
+    // QuoteService
+    public static final int     STOCK_QUOTE_TTL = 30;
+
+    // StockWatcher
+    public static final int     STOCK_WATCH_INTERVAL = 60;
+    public static final int     STOCK_WATCH_MAX = 10;
+    public static final float   STOCK_WATCH_THRESHOLD = 2.0f;
+
     // UrbanDictionaryCommand
     public static final int     URB_MAX_RESPONSE_LENGTH = 430;
+
+    // RandomDefinitionPool
+    public static final int     URB_POOL_SIZE = 20;
+    public static final int     URB_POOL_HISTORY = 200;
+    public static final int     URB_POOL_REFILL_INTERVAL = 300;
 }
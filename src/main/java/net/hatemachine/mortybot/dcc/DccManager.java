@@ -19,8 +19,8 @@ package net.hatemachine.mortybot.dcc;
 
 import net.hatemachine.mortybot.MortyBot;
 import net.hatemachine.mortybot.events.DccChatMessageEvent;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.model.BotUser;
-import net.hatemachine.mortybot.repositories.BotUserRepository;
 import org.pircbotx.User;
 import org.pircbotx.Utils;
 import org.pircbotx.dcc.Chat;
@@ -171,8 +171,7 @@ public class DccManager {
             // if adminOnly flag is set, skip over users that do not have the ADMIN flag
             if (adminOnly) {
                 var adminFlag = false;
-                var botUserRepository = new BotUserRepository();
-                Optional<BotUser> optionalBotUser = botUserRepository.findByHostmask(user.getHostmask());
+                Optional<BotUser> optionalBotUser = IdentityManager.getManager().getBotUser(user);
 
                 if (optionalBotUser.isPresent()) {
                     adminFlag = optionalBotUser.get().hasAdminFlag();
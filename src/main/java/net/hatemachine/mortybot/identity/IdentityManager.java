@@ -0,0 +1,133 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.identity;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.model.BotUser;
+import net.hatemachine.mortybot.repositories.BotUserRepository;
+import net.hatemachine.mortybot.repositories.HostmaskIndex;
+import org.pircbotx.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Keeps track of which bot user, if any, each IRC user on the network resolves to. A user is only looked up
+ * in the repository the first time they are seen. After that the result is reused until their hostmask changes,
+ * they leave, or a bot user is written to the repository.
+ *
+ * @see net.hatemachine.mortybot.listeners.IdentityListener
+ */
+public class IdentityManager {
+
+    private static final Logger log = LoggerFactory.getLogger(IdentityManager.class);
+
+    private static IdentityManager manager;
+
+    private final Map<UUID, Identity> identities;
+
+    private IdentityManager(int maxSize) {
+        this.identities = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Identity> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Retrieves a singleton instance of our IdentityManager object.
+     *
+     * @return an identity manager object
+     */
+    public static synchronized IdentityManager getManager() {
+        if (manager == null) {
+            int maxSize = BotProperties.getBotProperties().getIntProperty("identity.cache.size", BotDefaults.IDENTITY_CACHE_SIZE);
+            manager = new IdentityManager(maxSize);
+        }
+        return manager;
+    }
+
+    /**
+     * Resolves an IRC user to the bot user matching their hostmask.
+     *
+     * @param user the user to resolve
+     * @return an optional containing the matching bot user
+     */
+    public Optional<BotUser> getBotUser(User user) {
+        UUID key = user.getUserId();
+        String hostmask = user.getHostmask();
+        long generation = HostmaskIndex.getIndex().getGeneration();
+
+        synchronized (identities) {
+            Identity identity = identities.get(key);
+            if (identity != null && identity.generation == generation && identity.hostmask.equals(hostmask)) {
+                return identity.botUser;
+            }
+        }
+
+        var botUserRepository = new BotUserRepository();
+        Optional<BotUser> botUser = botUserRepository.findByHostmask(hostmask);
+        log.debug("Resolved {} to bot user {}", hostmask, botUser.map(BotUser::getName).orElse("(none)"));
+
+        synchronized (identities) {
+            identities.put(key, new Identity(hostmask, botUser, generation));
+        }
+
+        return botUser;
+    }
+
+    /**
+     * Gets the bot users for the IRC users that have been resolved recently and are still on the network.
+     *
+     * @return a list of distinct bot users
+     */
+    public List<BotUser> getActiveBotUsers() {
+        synchronized (identities) {
+            return identities.values().stream()
+                    .map(Identity::botUser)
+                    .flatMap(Optional::stream)
+                    .distinct()
+                    .toList();
+        }
+    }
+
+    /**
+     * Forgets what a user resolved to. The next lookup for this user will go back to the repository.
+     *
+     * @param user the user to forget
+     */
+    public void evict(User user) {
+        synchronized (identities) {
+            identities.remove(user.getUserId());
+        }
+    }
+
+    /**
+     * Forgets every resolved user.
+     */
+    public void clear() {
+        synchronized (identities) {
+            identities.clear();
+        }
+    }
+
+    private record Identity(String hostmask, Optional<BotUser> botUser, long generation) {}
+}
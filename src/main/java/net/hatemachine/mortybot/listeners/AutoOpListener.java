@@ -20,8 +20,8 @@ package net.hatemachine.mortybot.listeners;
 import net.hatemachine.mortybot.MortyBot;
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.model.BotUser;
-import net.hatemachine.mortybot.repositories.BotUserRepository;
 import net.hatemachine.mortybot.util.Validate;
 import org.pircbotx.Channel;
 import org.pircbotx.User;
@@ -79,8 +79,7 @@ public class AutoOpListener extends ListenerAdapter {
         String channelName = channel.getName().toLowerCase();
         User user = (User) Validate.notNull(event.getUser());
 
-        var botUserRepository = new BotUserRepository();
-        Optional<BotUser> matchingBotUser = botUserRepository.findByHostmask(user.getHostmask());
+        Optional<BotUser> matchingBotUser = IdentityManager.getManager().getBotUser(user);
 
         if (matchingBotUser.isPresent() && !user.getNick().equals(bot.getNick())) {
             var botUser = matchingBotUser.get();
@@ -22,19 +22,17 @@ import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.dcc.DccManager;
 import net.hatemachine.mortybot.events.DccChatMessageEvent;
 import net.hatemachine.mortybot.exception.CommandException;
+import net.hatemachine.mortybot.util.StringUtils;
 import org.pircbotx.User;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.events.PrivateMessageEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
-import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 
 import static net.hatemachine.mortybot.listeners.CommandListener.CommandSource.*;
-import static org.reflections.scanners.Scanners.SubTypes;
 
 /**
  * Listens for commands from users.
@@ -42,6 +40,9 @@ import static org.reflections.scanners.Scanners.SubTypes;
  */
 public class CommandListener extends ExtendedListenerAdapter {
 
+    /** Number of broken command indexes to skip before giving up on the rest */
+    private static final int MAX_INDEX_ERRORS = 10;
+
     private static final Logger log = LoggerFactory.getLogger(CommandListener.class);
     private static final Map<String, CommandWrapper> commandMap = new TreeMap<>();
 
@@ -60,19 +61,34 @@ public class CommandListener extends ExtendedListenerAdapter {
     public CommandListener(String commandPrefix) {
         this.commandPrefix = commandPrefix;
 
-        // Scan for command classes
-        Reflections reflections = new Reflections("net.hatemachine.mortybot.commands");
-        Set<Class<?>> cmdClasses = reflections.get(SubTypes.of(Command.class).asClass());
-
         // Check for disabled commands
         BotProperties props = BotProperties.getBotProperties();
         List<String> disabled = Arrays.asList(props.getStringProperty("commands.disabled", "").split(","));
 
-        // Build our command map from the annotations
-        for (Class<?> clazz : cmdClasses) {
-            for (BotCommand annotation : getBotCommandAnnotations(clazz)) {
-                if (!disabled.contains(annotation.name())) {
-                    CommandWrapper cmdWrapper = new CommandWrapper(annotation.name(), clazz, annotation.restricted(), annotation.help());
+        // Build our command map from the command indexes generated at compile time
+        Iterator<CommandIndex> indexes = ServiceLoader.load(CommandIndex.class).iterator();
+        int errors = 0;
+        while (true) {
+            CommandIndex index;
+            try {
+                if (!indexes.hasNext()) {
+                    break;
+                }
+                index = indexes.next();
+            } catch (ServiceConfigurationError e) {
+                log.error("Unable to load command index: {}", e.getMessage());
+                // ServiceLoader only makes a best effort to carry on after an error, so don't keep trying forever
+                if (++errors >= MAX_INDEX_ERRORS) {
+                    log.error("Giving up loading command indexes after {} errors", errors);
+                    break;
+                }
+                continue;
+            }
+
+            log.debug("Loading commands from {}", index.getClass().getName());
+
+            for (CommandWrapper cmdWrapper : index.getCommands()) {
+                if (!disabled.contains(cmdWrapper.getName())) {
                     commandMap.put(cmdWrapper.getName(), cmdWrapper);
                 }
             }
@@ -139,7 +155,11 @@ public class CommandListener extends ExtendedListenerAdapter {
      * @param source the source of the command, public or private message
      */
     private void handleCommand(final GenericMessageEvent event, CommandSource source) {
-        List<String> tokens = Arrays.asList(event.getMessage().split(" "));
+        // quotes are left alone here since free text commands pass them on, CommandParser groups them for the rest
+        List<String> tokens = StringUtils.tokenize(event.getMessage(), false);
+        if (tokens.isEmpty()) {
+            return;
+        }
         String commandName = tokens.get(0).substring(getCommandPrefix().length()).toUpperCase(Locale.ROOT);
         List<String> args = tokens.subList(1, tokens.size());
         User user = event.getUser();
@@ -156,55 +176,34 @@ public class CommandListener extends ExtendedListenerAdapter {
 
             CommandWrapper cmdWrapper = commandMap.get(commandName);
 
-            // Attempt to create a command instance and add it to our wrapper object
-            try {
-                Command command = (Command) cmdWrapper.getCmdClass()
-                        .getDeclaredConstructor(GenericMessageEvent.class, CommandSource.class, List.class)
-                        .newInstance(event, source, args);
-                cmdWrapper.setInstance(command);
-            } catch (InvocationTargetException | InstantiationException | IllegalAccessException | NoSuchMethodException e) {
-                log.error("Exception encountered trying to create instance of command: {}", e.getMessage(), e);
-            }
-
-            // Invoke the command proxy to execute the command if it passes all checks
+            // Check the user is allowed to run the command
             try {
-                CommandProxy.newInstance(cmdWrapper).execute();
+                CommandAuthorizer.authorize(cmdWrapper, user);
             } catch (CommandException e) {
                 if (e.getReason() == CommandException.Reason.IGNORED_USER) {
                     log.info("Ignoring command from {}", user.getNick());
                 } else if (e.getReason() == CommandException.Reason.UNAUTHORIZED_USER) {
                     event.respondWith("You are not authorized");
                 }
-            } catch (IllegalArgumentException e) {
-                event.respondWith(e.getMessage());
-            } catch (Exception e) {
-                log.error("Exception encountered trying to execute command: {}", commandName, e);
+                return;
             }
-        } else {
-            log.info("Invalid command {} from {}", commandName, user.getNick());
-        }
-    }
-
-    /**
-     * Gets a list of {@link BotCommand} annotations for a particular class.
-     *
-     * @param clazz the class to retrieve annotations for
-     * @return a list of BotCommand annotations for the provided class
-     */
-    private List<BotCommand> getBotCommandAnnotations(Class<?> clazz) {
-        List<BotCommand> annotations = new ArrayList<>();
-        var repeatedAnnotations = clazz.getAnnotation(BotCommands.class);
 
-        if (repeatedAnnotations != null) {
-            annotations.addAll(Arrays.asList(repeatedAnnotations.value()));
-        } else {
-            var annotation = clazz.getAnnotation(BotCommand.class);
+            // Hand the command off to the executor to create an instance of it and execute
+            boolean accepted = CommandExecutor.getExecutor().submit(cmdWrapper, event, source, () -> {
+                try {
+                    cmdWrapper.getFactory().create(event, source, args).execute();
+                } catch (IllegalArgumentException e) {
+                    event.respondWith(e.getMessage());
+                } catch (Exception e) {
+                    log.error("Exception encountered trying to execute command: {}", commandName, e);
+                }
+            });
 
-            if (annotation != null) {
-                annotations.add(annotation);
+            if (!accepted) {
+                event.respondWith("Aww jeez, slow down! Too many commands in progress.");
             }
+        } else {
+            log.info("Invalid command {} from {}", commandName, user.getNick());
         }
-
-        return annotations;
     }
 }
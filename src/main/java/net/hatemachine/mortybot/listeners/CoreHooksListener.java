@@ -18,7 +18,11 @@
 package net.hatemachine.mortybot.listeners;
 
 import net.hatemachine.mortybot.MortyBot;
+import net.hatemachine.mortybot.output.ScheduledOutputRaw;
 import org.pircbotx.hooks.CoreHooks;
+import org.pircbotx.hooks.events.ConnectEvent;
+import org.pircbotx.hooks.events.DisconnectEvent;
+import org.pircbotx.hooks.events.UnknownEvent;
 import org.pircbotx.hooks.events.VersionEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +30,7 @@ import org.slf4j.LoggerFactory;
 /**
  * Replacement class for PircBotX's CoreHooks listener.
  * This allows us to override the default PircBotX behavior for certain events (e.g. CTCP VERSION).
+ * It also feeds server replies to our lag probes back to the {@link ScheduledOutputRaw}.
  */
 public class CoreHooksListener extends CoreHooks {
 
@@ -36,4 +41,38 @@ public class CoreHooksListener extends CoreHooks {
         log.debug("VersionEvent: {}", event);
         event.respond("VERSION MortyBot " + MortyBot.VERSION);
     }
+
+    @Override
+    public void onUnknown(final UnknownEvent event) throws Exception {
+        super.onUnknown(event);
+
+        // PircBotX doesn't have an event for PONG so we pick them out of the unknown lines
+        String line = event.getLine();
+        int pong = line.indexOf(" PONG ");
+        if (pong == -1 || !(event.getBot().sendRaw() instanceof ScheduledOutputRaw output)) {
+            return;
+        }
+        int sep = line.indexOf(" :", pong);
+        String token = sep == -1 ? line.substring(line.lastIndexOf(' ') + 1) : line.substring(sep + 2);
+        if (ScheduledOutputRaw.isLagProbe(token)) {
+            output.pongReceived(token);
+        }
+    }
+
+    @Override
+    public void onConnect(final ConnectEvent event) throws Exception {
+        super.onConnect(event);
+        if (event.getBot().sendRaw() instanceof ScheduledOutputRaw output) {
+            output.connected();
+        }
+    }
+
+    @Override
+    public void onDisconnect(final DisconnectEvent event) throws Exception {
+        super.onDisconnect(event);
+        if (event.getBot().sendRaw() instanceof ScheduledOutputRaw output) {
+            output.clearQueue();
+            output.stop();
+        }
+    }
 }
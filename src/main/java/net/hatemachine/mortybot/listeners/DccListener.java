@@ -23,8 +23,8 @@ import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.dcc.DccManager;
 import net.hatemachine.mortybot.events.DccChatMessageEvent;
+import net.hatemachine.mortybot.identity.IdentityManager;
 import net.hatemachine.mortybot.model.BotUser;
-import net.hatemachine.mortybot.repositories.BotUserRepository;
 import org.pircbotx.User;
 import org.pircbotx.hooks.Listener;
 import org.pircbotx.hooks.events.*;
@@ -54,8 +54,7 @@ public class DccListener extends ExtendedListenerAdapter {
         boolean dccEnabled = botProperties.getBooleanProperty("dcc.chat.enabled", BotDefaults.DCC_CHAT_ENABLED);
 
         User user = event.getUser();
-        BotUserRepository botUserRepository = new BotUserRepository();
-        Optional<BotUser> optionalBotUser = botUserRepository.findByHostmask(user.getHostmask());
+        Optional<BotUser> optionalBotUser = IdentityManager.getManager().getBotUser(user);
 
         if (dccEnabled && optionalBotUser.isPresent() && optionalBotUser.get().hasDccFlag()) {
             try {
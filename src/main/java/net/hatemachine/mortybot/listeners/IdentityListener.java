@@ -0,0 +1,73 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.listeners;
+
+import net.hatemachine.mortybot.identity.IdentityManager;
+import org.pircbotx.User;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.events.*;
+
+/**
+ * Listens for events that change who a user is (or whether they are still around) and drops them
+ * from the {@link IdentityManager} so they get resolved again the next time they are seen.
+ */
+public class IdentityListener extends ListenerAdapter {
+
+    private final IdentityManager identityManager = IdentityManager.getManager();
+
+    @Override
+    public void onNickChange(final NickChangeEvent event) {
+        evict(event.getUser());
+    }
+
+    @Override
+    public void onChangeHostname(final ChangeHostnameEvent event) {
+        evict(event.getUser());
+    }
+
+    @Override
+    public void onChangeIdent(final ChangeIdentEvent event) {
+        evict(event.getUser());
+    }
+
+    @Override
+    public void onQuit(final QuitEvent event) {
+        evict(event.getUser());
+    }
+
+    @Override
+    public void onPart(final PartEvent event) {
+        evict(event.getUser());
+    }
+
+    @Override
+    public void onKick(final KickEvent event) {
+        evict(event.getRecipient());
+    }
+
+    @Override
+    public void onDisconnect(final DisconnectEvent event) {
+        identityManager.clear();
+    }
+
+    private void evict(User user) {
+        if (user != null) {
+            identityManager.evict(user);
+        }
+    }
+}
@@ -19,11 +19,11 @@ package net.hatemachine.mortybot.listeners;
 
 import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.identity.IdentityManager;
+import net.hatemachine.mortybot.model.LinkPreview;
 import net.hatemachine.mortybot.repositories.BotChannelRepository;
-import net.hatemachine.mortybot.repositories.BotUserRepository;
-import net.hatemachine.mortybot.services.bitly.Bitly;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import net.hatemachine.mortybot.services.links.LinkPreviewCache;
+import net.hatemachine.mortybot.util.Futures;
 import org.pircbotx.Colors;
 import org.pircbotx.hooks.ListenerAdapter;
 import org.pircbotx.hooks.events.MessageEvent;
@@ -32,10 +32,11 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -95,8 +96,7 @@ public class LinkListener extends ListenerAdapter {
         }
 
         // ignore anything from bot users that have the ignore flag
-        var botUserRepository = new BotUserRepository();
-        var botUser = botUserRepository.findByHostmask(event.getUser().getHostmask());
+        var botUser = IdentityManager.getManager().getBotUser(event.getUser());
         if (botUser.isPresent() && botUser.get().hasIgnoreFlag()) {
             return;
         }
@@ -109,42 +109,65 @@ public class LinkListener extends ListenerAdapter {
         // parse the message looking for links
         List<String> links = parseLine(event.getMessage());
 
-        // process any links
+        // process the links concurrently and respond in the order they appeared in the message, without holding up
+        // the listener thread while we wait
+        boolean shorten = shortenLinksFlag;
+        boolean showTitles = showTitlesFlag;
+        List<CompletableFuture<Optional<String>>> responses = new ArrayList<>();
+
         for (int i = 0; i < links.size() && i < maxLinks; i++) {
             String link = links.get(i);
-            Optional<String> shortLink = Optional.empty();
-            Optional<String> title = Optional.empty();
-
-            if (shortenLinksFlag) {
-                if (link.length() < minLenToShorten) {
-                    shortLink = Optional.of(link);
-                } else {
-                    shortLink = Bitly.shorten(link);
-                }
-            }
+            responses.add(Futures.supplyAsync(() -> processLink(link, shorten, showTitles, minLenToShorten, maxTitleLength)));
+        }
 
-            if (showTitlesFlag) {
-                title = fetchTitle(link);
-            }
+        Duration deadline = Duration.ofMillis(props.getIntProperty("links.timeout", BotDefaults.LINKS_TIMEOUT));
+        Futures.forEachInOrder(responses, deadline, response -> response.ifPresent(event::respondWith));
+    }
 
-            // shortened link only
-            if ((shortLink.isPresent() && !shortLink.get().equals(link)) && !shortLink.get().isBlank() && title.isEmpty()) {
-                event.respondWith(Colors.BOLD + shortLink.get() + Colors.BOLD);
+    /**
+     * Shortens a link and/or fetches its title, and builds the response to send for it.
+     *
+     * @param link the link to process
+     * @param shortenLinksFlag true if the link should be shortened
+     * @param showTitlesFlag true if the title should be shown
+     * @param minLenToShorten links shorter than this are not shortened
+     * @param maxTitleLength maximum length of the title to show
+     * @return an optional containing the response for the link
+     */
+    private Optional<String> processLink(String link, boolean shortenLinksFlag, boolean showTitlesFlag,
+                                         int minLenToShorten, int maxTitleLength) {
+        Optional<String> shortLink = Optional.empty();
+        Optional<String> title = Optional.empty();
 
-            // title only
-            } else if (title.isPresent() && shortLink.isEmpty()) {
-                event.respondWith(trimTitle(title.get(), maxTitleLength, "..."));
+        boolean shorten = shortenLinksFlag && link.length() >= minLenToShorten;
+        LinkPreview preview = LinkPreviewCache.getCache().get(link, shorten, showTitlesFlag);
 
-            // short link and title
-            } else if (shortLink.isPresent() && title.isPresent()) {
-                event.respondWith(String.format("%s :: %s",
-                        Colors.BOLD + shortLink.get() + Colors.BOLD,
-                        trimTitle(title.get(), maxTitleLength, "...")));
+        if (shortenLinksFlag) {
+            shortLink = shorten ? Optional.ofNullable(preview.getShortLink()) : Optional.of(link);
+        }
 
-            // nothing to do
-            } else {
-                log.debug("No title or shortened link, this is a no-op. Original link: {}", link);
-            }
+        if (showTitlesFlag) {
+            title = Optional.ofNullable(preview.getTitle());
+        }
+
+        // shortened link only
+        if ((shortLink.isPresent() && !shortLink.get().equals(link)) && !shortLink.get().isBlank() && title.isEmpty()) {
+            return Optional.of(Colors.BOLD + shortLink.get() + Colors.BOLD);
+
+        // title only
+        } else if (title.isPresent() && shortLink.isEmpty()) {
+            return Optional.of(trimTitle(title.get(), maxTitleLength, "..."));
+
+        // short link and title
+        } else if (shortLink.isPresent() && title.isPresent()) {
+            return Optional.of(String.format("%s :: %s",
+                    Colors.BOLD + shortLink.get() + Colors.BOLD,
+                    trimTitle(title.get(), maxTitleLength, "...")));
+
+        // nothing to do
+        } else {
+            log.debug("No title or shortened link, this is a no-op. Original link: {}", link);
+            return Optional.empty();
         }
     }
 
@@ -170,37 +193,6 @@ public class LinkListener extends ListenerAdapter {
         return links;
     }
 
-    /**
-     * Fetch the title of a web link.
-     *
-     * @param link the link that you want to fetch
-     * @return an optional containing the link's title
-     */
-    private Optional<String> fetchTitle(final String link) {
-        log.debug("Fetching title for link: {}", link);
-        Document doc = null;
-        String title = "";
-
-        try {
-            doc = Jsoup.connect(link)
-                    .ignoreContentType(true)
-                    .get();
-        } catch (IOException e) {
-            log.error("Failed to fetch page [URL: {}]", link, e);
-        }
-
-        if (doc != null) {
-            title = doc.title();
-            log.debug("Title: {}", title);
-        }
-
-        if (title.isEmpty() || title.isBlank()) {
-            return Optional.empty();
-        } else {
-            return Optional.of(title);
-        }
-    }
-
     /**
      * Trim the title down to a maximum length.
      *
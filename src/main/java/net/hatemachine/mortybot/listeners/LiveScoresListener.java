@@ -0,0 +1,45 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.listeners;
+
+import net.hatemachine.mortybot.services.espn.LiveScores;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.events.ConnectEvent;
+import org.pircbotx.hooks.events.DisconnectEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener that starts sending live score updates once the bot has connected and stops when it disconnects.
+ */
+public class LiveScoresListener extends ListenerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveScoresListener.class);
+
+    @Override
+    public void onConnect(final ConnectEvent event) {
+        log.debug("Starting live scores");
+        LiveScores.getLiveScores().start(event.getBot());
+    }
+
+    @Override
+    public void onDisconnect(final DisconnectEvent event) {
+        log.debug("Stopping live scores");
+        LiveScores.getLiveScores().stop();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.Objects;
+
+/**
+ * What we know about a link that has been seen in chat: its page title and shortened link, and whether fetching
+ * each of them worked. Each part has its own expiry time so that failures can be retried sooner than successes.
+ */
+@Entity
+public class LinkPreview {
+
+    public enum Status {
+        OK,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NaturalId
+    @Column(unique = true, nullable = false)
+    private String url;
+
+    private String title;
+
+    @Enumerated(EnumType.STRING)
+    private Status titleStatus;
+
+    private long titleExpiresAt;
+
+    private String shortLink;
+
+    @Enumerated(EnumType.STRING)
+    private Status shortLinkStatus;
+
+    private long shortLinkExpiresAt;
+
+    public LinkPreview() {}
+
+    public LinkPreview(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Creates a copy of a link preview that can be updated without affecting the original.
+     *
+     * @param other the link preview to copy
+     */
+    public LinkPreview(LinkPreview other) {
+        this.id = other.id;
+        this.url = other.url;
+        this.title = other.title;
+        this.titleStatus = other.titleStatus;
+        this.titleExpiresAt = other.titleExpiresAt;
+        this.shortLink = other.shortLink;
+        this.shortLinkStatus = other.shortLinkStatus;
+        this.shortLinkExpiresAt = other.shortLinkExpiresAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Status getTitleStatus() {
+        return titleStatus;
+    }
+
+    public long getTitleExpiresAt() {
+        return titleExpiresAt;
+    }
+
+    /**
+     * Records the result of fetching the page title.
+     *
+     * @param title the title, or null if there wasn't one
+     * @param expiresAt when the result expires, in milliseconds since the epoch
+     */
+    public void setTitle(String title, long expiresAt) {
+        this.title = title;
+        this.titleStatus = title == null ? Status.FAILED : Status.OK;
+        this.titleExpiresAt = expiresAt;
+    }
+
+    public boolean hasFreshTitle(long now) {
+        return titleStatus != null && titleExpiresAt > now;
+    }
+
+    public String getShortLink() {
+        return shortLink;
+    }
+
+    public Status getShortLinkStatus() {
+        return shortLinkStatus;
+    }
+
+    public long getShortLinkExpiresAt() {
+        return shortLinkExpiresAt;
+    }
+
+    /**
+     * Records the result of shortening the link.
+     *
+     * @param shortLink the short link, or null if it couldn't be shortened
+     * @param expiresAt when the result expires, in milliseconds since the epoch
+     */
+    public void setShortLink(String shortLink, long expiresAt) {
+        this.shortLink = shortLink;
+        this.shortLinkStatus = shortLink == null ? Status.FAILED : Status.OK;
+        this.shortLinkExpiresAt = expiresAt;
+    }
+
+    public boolean hasFreshShortLink(long now) {
+        return shortLinkStatus != null && shortLinkExpiresAt > now;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        if (this.getClass() != o.getClass()) {
+            return false;
+        }
+        Class<?> oEffectiveClass = o instanceof HibernateProxy hibernateProxy ? hibernateProxy.getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy hibernateProxy ? hibernateProxy.getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        LinkPreview that = (LinkPreview) o;
+        return getId() != null && Objects.equals(getId(), that.getId())
+                && getUrl() != null && Objects.equals(getUrl(), that.getUrl());
+    }
+
+    @Override
+    public final int hashCode() {
+        return Objects.hash(url);
+    }
+
+    @Override
+    public String toString() {
+        return url +
+                " :: " +
+                "title[" + titleStatus + "] " + title +
+                " " +
+                "shortLink[" + shortLinkStatus + "] " + shortLink;
+    }
+}
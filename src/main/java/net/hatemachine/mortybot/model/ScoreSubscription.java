@@ -0,0 +1,114 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.model;
+
+import jakarta.persistence.*;
+import net.hatemachine.mortybot.services.espn.SportsLeague;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A channel's subscription to live score updates for a league, or for one team in a league.
+ */
+@Entity
+public class ScoreSubscription {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @Column(nullable = false)
+    private String channel;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SportsLeague league;
+
+    private String team;
+
+    public ScoreSubscription() {}
+
+    /**
+     * Creates a subscription.
+     *
+     * @param channel the channel to send updates to
+     * @param league the league to follow
+     * @param team the abbreviation of the team to follow, or null to follow the whole league
+     */
+    public ScoreSubscription(String channel, SportsLeague league, String team) {
+        this.channel = channel;
+        this.league = league;
+        this.team = team == null ? null : team.toUpperCase(Locale.ROOT);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public SportsLeague getLeague() {
+        return league;
+    }
+
+    public String getTeam() {
+        return team;
+    }
+
+    /**
+     * Checks whether this subscription is for the given channel, league and team.
+     *
+     * @param channel the channel
+     * @param league the league
+     * @param team the team abbreviation, or null for the whole league
+     * @return true if the subscription matches
+     */
+    public boolean matches(String channel, SportsLeague league, String team) {
+        return this.channel.equalsIgnoreCase(channel)
+                && this.league == league
+                && (this.team == null ? team == null : this.team.equalsIgnoreCase(team));
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        if (this.getClass() != o.getClass()) {
+            return false;
+        }
+        Class<?> oEffectiveClass = o instanceof HibernateProxy hibernateProxy ? hibernateProxy.getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy hibernateProxy ? hibernateProxy.getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        ScoreSubscription that = (ScoreSubscription) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return channel + " :: " + league + (team == null ? "" : " " + team);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.model;
+
+import jakarta.persistence.*;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A stock symbol watched by a channel. The channel is told when the price moves by more than the threshold
+ * since the last time it was told about it.
+ */
+@Entity
+public class StockWatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @Column(nullable = false)
+    private String channel;
+
+    @Column(nullable = false)
+    private String symbol;
+
+    private Double threshold;
+
+    public StockWatch() {}
+
+    /**
+     * Creates a stock watch.
+     *
+     * @param channel the channel to send announcements to
+     * @param symbol the stock symbol to watch
+     * @param threshold the percentage move to announce, or null to use the default
+     */
+    public StockWatch(String channel, String symbol, Double threshold) {
+        this.channel = channel;
+        this.symbol = symbol.toUpperCase(Locale.ROOT);
+        this.threshold = threshold;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Checks whether this is a watch on the given symbol by the given channel.
+     *
+     * @param channel the channel
+     * @param symbol the stock symbol
+     * @return true if the watch matches
+     */
+    public boolean matches(String channel, String symbol) {
+        return this.channel.equalsIgnoreCase(channel) && this.symbol.equalsIgnoreCase(symbol);
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        if (this.getClass() != o.getClass()) {
+            return false;
+        }
+        Class<?> oEffectiveClass = o instanceof HibernateProxy hibernateProxy ? hibernateProxy.getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy hibernateProxy ? hibernateProxy.getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        StockWatch that = (StockWatch) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return channel + " :: " + symbol + (threshold == null ? "" : " " + threshold + "%");
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.output;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.pircbotx.PircBotX;
+import org.pircbotx.User;
+import org.pircbotx.output.OutputRaw;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Replacement for PircBotX's OutputRaw that queues outgoing lines and sends them from a single thread per connection,
+ * rather than making each caller sleep for a fixed delay.<br/>
+ * <br/>
+ * - The send rate is limited with a token bucket, and the bucket refills more slowly while the server is lagging.
+ *   Lag is measured by periodically sending our own PING and timing the PONG (see {@link #pongReceived(String)}).<br/>
+ * - Channel management traffic (modes, kicks, joins, etc.) jumps ahead of chatter.<br/>
+ * - Consecutive short messages to the same target are packed into as few lines as possible, and lines that are too
+ *   long are split on character boundaries so multibyte UTF-8 characters never get cut in half.<br/>
+ * <br/>
+ * Lines sent with rawLineNow (e.g. PONG replies and connection registration) bypass the queue entirely.
+ */
+public class ScheduledOutputRaw extends OutputRaw {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledOutputRaw.class);
+
+    private static final String LAG_PROBE_PREFIX = "mortybot-lag-";
+    private static final String PACK_SEPARATOR = " | ";
+    private static final int DEFAULT_PREFIX_RESERVE = 110; // room for ":nick!user@host " added by the server
+    private static final long MAX_LAG_PENALTY = TimeUnit.SECONDS.toNanos(10);
+
+    private static final Set<String> ADMIN_COMMANDS = Set.of("MODE", "KICK", "JOIN", "PART", "TOPIC", "INVITE", "NICK", "QUIT");
+
+    private enum Priority {
+        ADMIN,
+        CHATTER
+    }
+
+    private final PircBotX bot;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Priority, Deque<String>> queues = new EnumMap<>(Priority.class);
+
+    private final int burst;
+    private final long refillNanos;
+    private final long lagProbeNanos;
+    private final boolean packLines;
+
+    private double tokens;
+    private long lastRefill;
+    private volatile long lagNanos = 0;
+    private String probeToken = null;
+    private long probeSentAt = 0;
+    private long lastProbe;
+    private Thread sender = null;
+
+    public ScheduledOutputRaw(PircBotX bot) {
+        super(bot);
+        this.bot = bot;
+
+        BotProperties props = BotProperties.getBotProperties();
+        this.burst = Math.max(1, props.getIntProperty("output.burst", BotDefaults.OUTPUT_BURST));
+        this.refillNanos = TimeUnit.MILLISECONDS.toNanos(props.getIntProperty("output.interval", BotDefaults.OUTPUT_INTERVAL));
+        this.lagProbeNanos = TimeUnit.MILLISECONDS.toNanos(props.getIntProperty("output.lag.interval", BotDefaults.OUTPUT_LAG_INTERVAL));
+        this.packLines = props.getBooleanProperty("output.pack.lines", BotDefaults.OUTPUT_PACK_LINES);
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        this.lastProbe = lastRefill;
+
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Queues a line to be sent to the server. This returns immediately rather than waiting for the line to be sent.
+     *
+     * @param line the raw line to send
+     */
+    @Override
+    public void rawLine(String line) {
+        Objects.requireNonNull(line, "line cannot be null");
+        Priority priority = getPriority(line);
+
+        lock.lock();
+        try {
+            queues.get(priority).add(line);
+            startSender();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getOutgoingQueueSize() {
+        lock.lock();
+        try {
+            return queues.values().stream().mapToInt(Deque::size).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops any lines waiting to be sent, e.g. after being disconnected.
+     */
+    public void clearQueue() {
+        lock.lock();
+        try {
+            queues.values().forEach(Deque::clear);
+            probeToken = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called once the bot has connected. Starts lag probing, with the first probe one interval from now.
+     */
+    public void connected() {
+        lock.lock();
+        try {
+            lastProbe = System.nanoTime();
+            probeToken = null;
+            if (lagProbeNanos > 0) {
+                startSender();
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the sender thread, e.g. after being disconnected. It is started again the next time a line is queued
+     * or the bot connects.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            if (sender != null) {
+                sender.interrupt();
+                sender = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts the sender thread if it isn't running. Must be called while holding the lock.
+     */
+    private void startSender() {
+        if (sender == null) {
+            sender = Thread.ofVirtual().name("output-" + bot.getBotId()).start(this::run);
+        }
+    }
+
+    /**
+     * Gets the most recently measured round trip time to the server.
+     *
+     * @return the server lag
+     */
+    public Duration getLag() {
+        return Duration.ofNanos(lagNanos);
+    }
+
+    /**
+     * Called when the server replies to a PING. If it is a reply to our lag probe, the lag is updated.
+     *
+     * @param token the token the server echoed back
+     */
+    public void pongReceived(String token) {
+        lock.lock();
+        try {
+            if (probeToken != null && probeToken.equals(token)) {
+                lagNanos = System.nanoTime() - probeSentAt;
+                probeToken = null;
+                log.debug("Server lag: {}ms", TimeUnit.NANOSECONDS.toMillis(lagNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sender loop. Waits until there is a line to send and a token available, then sends the highest priority line.
+     * Exits when the thread is interrupted by {@link #stop()}.
+     */
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                String line;
+
+                lock.lock();
+                try {
+                    line = nextLine();
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    rawLineNow(line);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to send line to server: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.lock();
+            try {
+                if (sender == Thread.currentThread()) {
+                    sender = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for the next line that should be sent. Must be called while holding the lock.
+     */
+    private String nextLine() throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            long waitNanos = Long.MAX_VALUE;
+
+            refill(now);
+
+            // probes are only sent while connected, and use up a token like any other line
+            if (lagProbeNanos > 0 && bot.isConnected()) {
+                long untilProbe = lagProbeNanos - (now - lastProbe);
+                if (untilProbe > 0) {
+                    waitNanos = untilProbe;
+                } else if (tokens >= 1) {
+                    if (probeToken != null) {
+                        // the last probe was never answered, so we're at least this lagged
+                        lagNanos = Math.max(lagNanos, now - probeSentAt);
+                    }
+                    tokens -= 1;
+                    lastProbe = now;
+                    probeSentAt = now;
+                    probeToken = LAG_PROBE_PREFIX + now;
+                    return "PING :" + probeToken;
+                } else {
+                    waitNanos = getRefillInterval();
+                }
+            }
+
+            Deque<String> queue = nextQueue();
+            if (queue != null) {
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return takeLine(queue);
+                }
+                waitNanos = Math.min(waitNanos, getRefillInterval());
+            }
+
+            if (waitNanos == Long.MAX_VALUE) {
+                // nothing queued and no probe to send (e.g. while disconnected), so sleep until something changes
+                changed.await();
+            } else {
+                changed.awaitNanos(Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(10)));
+            }
+        }
+    }
+
+    private Deque<String> nextQueue() {
+        for (Priority priority : Priority.values()) {
+            Deque<String> queue = queues.get(priority);
+            if (!queue.isEmpty()) {
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    private void refill(long now) {
+        long interval = getRefillInterval();
+        if (interval <= 0) {
+            tokens = burst;
+        } else {
+            tokens = Math.min(burst, tokens + (double) (now - lastRefill) / interval);
+        }
+        lastRefill = now;
+    }
+
+    private long getRefillInterval() {
+        return refillNanos + Math.min(lagNanos, MAX_LAG_PENALTY);
+    }
+
+    /**
+     * Takes the next line from a queue, packing any messages queued behind it for the same target into it and
+     * splitting it if it is too long. Any leftover part of a split line goes back to the front of the queue.
+     */
+    private String takeLine(Deque<String> queue) {
+        String line = queue.poll();
+        int maxBytes = getMaxLineBytes();
+        int sep = getMessageSeparator(line);
+
+        if (sep == -1) {
+            return line; // not a message, nothing we can do if it's too long
+        }
+
+        String prefix = line.substring(0, sep + 2);
+        StringBuilder text = new StringBuilder(line.substring(sep + 2));
+        int prefixBytes = utf8Length(prefix);
+
+        if (packLines && !isCtcp(text)) {
+            int textBytes = utf8Length(text);
+            while (!queue.isEmpty()) {
+                String next = queue.peek();
+                if (!next.startsWith(prefix) || getMessageSeparator(next) != sep) {
+                    break;
+                }
+                String nextText = next.substring(sep + 2);
+                int nextBytes = utf8Length(nextText);
+                if (isCtcp(nextText) || prefixBytes + textBytes + PACK_SEPARATOR.length() + nextBytes > maxBytes) {
+                    break;
+                }
+                queue.poll();
+                text.append(PACK_SEPARATOR).append(nextText);
+                textBytes += PACK_SEPARATOR.length() + nextBytes;
+            }
+        }
+
+        int cut = findCut(text, maxBytes - prefixBytes);
+        if (cut < text.length()) {
+            String rest = text.substring(cut).stripLeading();
+            if (!rest.isEmpty()) {
+                queue.addFirst(prefix + rest);
+            }
+            text.setLength(cut);
+        }
+
+        return prefix + text;
+    }
+
+    /**
+     * Maximum number of bytes we can send in a single line, leaving room for the CRLF and the prefix the server adds
+     * when relaying our messages to other users.
+     */
+    private int getMaxLineBytes() {
+        int reserve = DEFAULT_PREFIX_RESERVE;
+        User userBot = bot.getUserBot();
+        if (userBot != null && userBot.getHostmask() != null) {
+            reserve = Math.max(reserve, utf8Length(userBot.getHostmask()) + 2);
+        }
+        return bot.getConfiguration().getMaxLineLength() - 2 - reserve;
+    }
+
+    /**
+     * Finds where to cut text so that it fits in the given number of bytes when encoded as UTF-8. Cuts only happen
+     * between characters, and at a space if there is one reasonably close to the limit.
+     *
+     * @return the index to cut at, or the length of the text if it already fits
+     */
+    static int findCut(CharSequence text, int maxBytes) {
+        int bytes = 0;
+        int lastSpace = -1;
+        int i = 0;
+
+        while (i < text.length()) {
+            int cp = Character.codePointAt(text, i);
+            int len = utf8Length(cp);
+            if (bytes + len > maxBytes) {
+                return lastSpace > i / 2 ? lastSpace : Math.max(i, 1);
+            }
+            if (cp == ' ') {
+                lastSpace = i;
+            }
+            bytes += len;
+            i += Character.charCount(cp);
+        }
+
+        return text.length();
+    }
+
+    private static int getMessageSeparator(String line) {
+        if (!line.startsWith("PRIVMSG ") && !line.startsWith("NOTICE ")) {
+            return -1;
+        }
+        return line.indexOf(" :");
+    }
+
+    private static boolean isCtcp(CharSequence text) {
+        return !text.isEmpty() && text.charAt(0) == '\u0001';
+    }
+
+    private static Priority getPriority(String line) {
+        int space = line.indexOf(' ');
+        String command = (space == -1 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+        return ADMIN_COMMANDS.contains(command) ? Priority.ADMIN : Priority.CHATTER;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = Character.codePointAt(text, i);
+            bytes += utf8Length(cp);
+            i += Character.charCount(cp);
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(int cp) {
+        if (cp < 0x80) return 1;
+        if (cp < 0x800) return 2;
+        if (cp < 0x10000) return 3;
+        return 4;
+    }
+
+    /**
+     * Checks whether a token echoed back in a PONG belongs to one of our lag probes.
+     *
+     * @param token the token from the PONG
+     * @return true if it looks like one of our probes
+     */
+    public static boolean isLagProbe(String token) {
+        return token != null && token.startsWith(LAG_PROBE_PREFIX);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Annotation processor that generates a {@link net.hatemachine.mortybot.CommandIndex} for each package containing
+ * classes annotated with BotCommand, along with the service file needed to load them with the ServiceLoader.
+ * The generated index creates commands through constructor references, so no reflection or classpath scanning
+ * is needed at runtime.<br/>
+ * <br/>
+ * Annotations are read as mirrors rather than through the annotation classes so that the processor can be
+ * compiled before the rest of the bot.
+ */
+@SupportedAnnotationTypes({
+        BotCommandProcessor.BOT_COMMAND,
+        BotCommandProcessor.BOT_COMMANDS
+})
+public class BotCommandProcessor extends AbstractProcessor {
+
+    static final String BOT_COMMAND = "net.hatemachine.mortybot.BotCommand";
+    static final String BOT_COMMANDS = "net.hatemachine.mortybot.BotCommands";
+
+    private static final String COMMAND = "net.hatemachine.mortybot.Command";
+    private static final String COMMAND_INDEX = "net.hatemachine.mortybot.CommandIndex";
+    private static final String COMMAND_WRAPPER = "net.hatemachine.mortybot.CommandWrapper";
+    private static final String INDEX_CLASS_NAME = "GeneratedCommandIndex";
+    private static final String SERVICE_FILE = "META-INF/services/" + COMMAND_INDEX;
+
+    private static final List<String> CONSTRUCTOR_PARAMS = List.of(
+            "org.pircbotx.hooks.types.GenericMessageEvent",
+            "net.hatemachine.mortybot.listeners.CommandListener.CommandSource",
+            "java.util.List"
+    );
+
+    private final Map<String, List<CommandEntry>> pendingPackages = new TreeMap<>();
+    private final Set<String> generatedIndexes = new TreeSet<>();
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private Filer filer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+        this.filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+
+        Set<TypeElement> cmdClasses = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            cmdClasses.addAll(ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation)));
+        }
+
+        for (TypeElement cmdClass : cmdClasses) {
+            if (isValidCommandClass(cmdClass)) {
+                String packageName = elements.getPackageOf(cmdClass).getQualifiedName().toString();
+                List<CommandEntry> entries = pendingPackages.computeIfAbsent(packageName, k -> new ArrayList<>());
+                for (AnnotationMirror mirror : getBotCommandMirrors(cmdClass)) {
+                    entries.add(createEntry(cmdClass, mirror));
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<CommandEntry>> pkg : pendingPackages.entrySet()) {
+            writeIndex(pkg.getKey(), pkg.getValue());
+        }
+        pendingPackages.clear();
+
+        return false;
+    }
+
+    /**
+     * Checks that an annotated class can be created by a generated index, reporting an error if not.
+     */
+    private boolean isValidCommandClass(TypeElement cmdClass) {
+        TypeMirror commandType = types.erasure(elements.getTypeElement(COMMAND).asType());
+
+        if (cmdClass.getKind() != ElementKind.CLASS || cmdClass.getModifiers().contains(Modifier.ABSTRACT)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Bot commands must be concrete classes", cmdClass);
+            return false;
+        }
+
+        if (!cmdClass.getModifiers().contains(Modifier.PUBLIC) || cmdClass.getNestingKind().isNested()) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Bot commands must be public top-level classes", cmdClass);
+            return false;
+        }
+
+        if (!types.isAssignable(cmdClass.asType(), commandType)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Bot commands must implement " + COMMAND, cmdClass);
+            return false;
+        }
+
+        boolean hasConstructor = ElementFilter.constructorsIn(cmdClass.getEnclosedElements()).stream()
+                .filter(c -> c.getModifiers().contains(Modifier.PUBLIC))
+                .anyMatch(c -> parameterTypeNames(c).equals(CONSTRUCTOR_PARAMS));
+
+        if (!hasConstructor) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                    "Bot commands must have a public constructor taking " + String.join(", ", CONSTRUCTOR_PARAMS),
+                    cmdClass);
+        }
+
+        return hasConstructor;
+    }
+
+    private List<String> parameterTypeNames(ExecutableElement constructor) {
+        List<String> names = new ArrayList<>();
+        for (VariableElement param : constructor.getParameters()) {
+            TypeMirror type = types.erasure(param.asType());
+            if (type.getKind() == TypeKind.DECLARED) {
+                names.add(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+            } else {
+                names.add(type.toString());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Gets the BotCommand annotations on a class, whether they were declared singly or through the
+     * BotCommands container.
+     */
+    private List<AnnotationMirror> getBotCommandMirrors(TypeElement cmdClass) {
+        List<AnnotationMirror> mirrors = new ArrayList<>();
+
+        for (AnnotationMirror mirror : cmdClass.getAnnotationMirrors()) {
+            String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+
+            if (name.equals(BOT_COMMAND)) {
+                mirrors.add(mirror);
+            } else if (name.equals(BOT_COMMANDS)) {
+                List<?> values = (List<?>) getValue(mirror, "value");
+                for (Object value : values) {
+                    mirrors.add((AnnotationMirror) ((AnnotationValue) value).getValue());
+                }
+            }
+        }
+
+        return mirrors;
+    }
+
+    private CommandEntry createEntry(TypeElement cmdClass, AnnotationMirror mirror) {
+        List<String> help = new ArrayList<>();
+        for (Object line : (List<?>) getValue(mirror, "help")) {
+            help.add((String) ((AnnotationValue) line).getValue());
+        }
+
+        return new CommandEntry(
+                (String) getValue(mirror, "name"),
+                cmdClass.getQualifiedName().toString(),
+                (Boolean) getValue(mirror, "restricted"),
+                help,
+                ((Number) getValue(mirror, "cacheTtl")).longValue()
+        );
+    }
+
+    private Object getValue(AnnotationMirror mirror, String attribute) {
+        for (var entry : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(attribute)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("Missing annotation attribute: " + attribute);
+    }
+
+    private void writeIndex(String packageName, List<CommandEntry> entries) {
+        String indexName = packageName.isEmpty() ? INDEX_CLASS_NAME : packageName + "." + INDEX_CLASS_NAME;
+
+        if (!generatedIndexes.add(indexName)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Command index already generated for package " + packageName);
+            return;
+        }
+
+        entries.sort(Comparator.comparing(CommandEntry::name));
+
+        try (PrintWriter out = new PrintWriter(filer.createSourceFile(indexName).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+            out.println("public final class " + INDEX_CLASS_NAME + " implements " + COMMAND_INDEX + " {");
+            out.println();
+            out.println("    private static final java.util.List<" + COMMAND_WRAPPER + "> COMMANDS = java.util.List.of(");
+            for (int i = 0; i < entries.size(); i++) {
+                CommandEntry entry = entries.get(i);
+                out.printf("            new %s(%s, %s.class, %s::new, %b, new String[] {%s}, %dL)%s%n",
+                        COMMAND_WRAPPER,
+                        elements.getConstantExpression(entry.name()),
+                        entry.className(),
+                        entry.className(),
+                        entry.restricted(),
+                        String.join(", ", entry.help().stream().map(elements::getConstantExpression).toList()),
+                        entry.cacheTtl(),
+                        i < entries.size() - 1 ? "," : "");
+            }
+            out.println("    );");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.List<" + COMMAND_WRAPPER + "> getCommands() {");
+            out.println("        return COMMANDS;");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Unable to write command index " + indexName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the service file listing every index generated in this compilation, keeping any entries
+     * already present from an earlier incremental build.
+     */
+    private void writeServiceFile() {
+        if (generatedIndexes.isEmpty()) {
+            return;
+        }
+
+        Set<String> services = new TreeSet<>(generatedIndexes);
+
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                reader.lines().map(String::trim).filter(s -> !s.isEmpty() && !s.startsWith("#")).forEach(services::add);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no existing service file
+        }
+
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE).openOutputStream(),
+                StandardCharsets.UTF_8))) {
+            services.forEach(out::println);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Unable to write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private record CommandEntry(String name, String className, boolean restricted, List<String> help, long cacheTtl) {}
+}
@@ -19,11 +19,9 @@ package net.hatemachine.mortybot.repositories;
 
 import net.hatemachine.mortybot.model.BotUser;
 import net.hatemachine.mortybot.util.HibernateUtil;
-import net.hatemachine.mortybot.util.StringUtils;
 import org.hibernate.SessionFactory;
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * Repository for managing BotUser entities.
@@ -32,9 +30,11 @@ import java.util.regex.Pattern;
 public class BotUserRepository implements CrudRepository<BotUser, Long> {
 
     private final SessionFactory sessionFactory;
+    private final HostmaskIndex hostmaskIndex;
 
     public BotUserRepository() {
         this.sessionFactory = HibernateUtil.getSessionFactory();
+        this.hostmaskIndex = HostmaskIndex.getIndex();
     }
 
     /**
@@ -54,6 +54,7 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
      */
     public void delete(BotUser botUser) {
         sessionFactory.inTransaction(session -> session.remove(botUser));
+        hostmaskIndex.remove(botUser.getId());
     }
 
     /**
@@ -66,6 +67,7 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
             session.createNativeQuery("delete from BotUser_hostmasks", BotUser.class).executeUpdate();
             session.createNativeQuery("delete from BotUser", BotUser.class).executeUpdate();
         });
+        hostmaskIndex.clear();
     }
 
     /**
@@ -80,6 +82,9 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
                 session.remove(botUser);
             }
         });
+        for (BotUser botUser : botUsers) {
+            hostmaskIndex.remove(botUser.getId());
+        }
     }
 
     /**
@@ -103,6 +108,9 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
             usersQuery.setParameter("ids", ids);
             usersQuery.executeUpdate();
         });
+        for (Long id : ids) {
+            hostmaskIndex.remove(id);
+        }
     }
 
     /**
@@ -125,6 +133,7 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
             userQuery.setParameter("id", id);
             userQuery.executeUpdate();
         });
+        hostmaskIndex.remove(id);
     }
 
     /**
@@ -199,35 +208,34 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
     }
 
     /**
-     * Finds a BotUser by hostmask.
+     * Finds a BotUser by hostmask. Matching is done against the in-memory hostmask index,
+     * so the database is only hit to load the matching user.
      *
      * @param userHostmask the user hostmask to search for
      * @return an Optional containing the BotUser if found, or an empty Optional if not found
      */
     public Optional<BotUser> findByHostmask(String userHostmask) {
-        return sessionFactory.fromTransaction(session -> {
-            Optional<BotUser> botUser = Optional.empty();
-
-            var query = session.createNativeQuery("select * from BotUser_hostmasks", Object.class);
-            var results = query.getResultList();
-
-            if (!results.isEmpty()) {
-                for (Object result : results) {
-                    Object[] row = (Object[]) result;
-                    int id = (int) row[0];
-                    String hostmask = (String) row[1];
+        hostmaskIndex.ensureLoaded(this::findAllHostmasks);
+        return hostmaskIndex.findUserId(userHostmask).flatMap(this::findById);
+    }
 
-                    var pattern = Pattern.compile(StringUtils.wildcardToRegex(hostmask.toLowerCase()));
-                    var matcher = pattern.matcher(userHostmask.toLowerCase());
+    /**
+     * Retrieves the hostmasks of every BotUser, grouped by user ID.
+     *
+     * @return a map of user IDs to their hostmasks
+     */
+    private Map<Long, List<String>> findAllHostmasks() {
+        return sessionFactory.fromTransaction(session -> {
+            Map<Long, List<String>> hostmasks = new LinkedHashMap<>();
+            var query = session.createNativeQuery("select BotUser_id, hostmasks from BotUser_hostmasks", Object.class);
 
-                    if (matcher.matches()) {
-                        botUser = Optional.of(session.find(BotUser.class, id));
-                        break; // we only care about the first match
-                    }
-                }
+            for (Object result : query.getResultList()) {
+                Object[] row = (Object[]) result;
+                long id = ((Number) row[0]).longValue();
+                hostmasks.computeIfAbsent(id, k -> new ArrayList<>()).add((String) row[1]);
             }
 
-            return botUser;
+            return hostmasks;
         });
     }
 
@@ -265,7 +273,7 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
     public <S extends BotUser> S save(S botUser) {
         Objects.requireNonNull(botUser, "botUser cannot be null");
 
-        return sessionFactory.fromTransaction(session -> {
+        S saved = sessionFactory.fromTransaction(session -> {
             if (botUser.getId() == null) {
                 session.persist(botUser);
             } else {
@@ -273,6 +281,8 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
             }
             return botUser;
         });
+        hostmaskIndex.put(saved.getId(), saved.getHostmasks());
+        return saved;
     }
 
     /**
@@ -284,11 +294,15 @@ public class BotUserRepository implements CrudRepository<BotUser, Long> {
      */
     @Override
     public <S extends BotUser> Iterable<S> saveAll(Iterable<S> botUsers) {
-        return sessionFactory.fromTransaction(session -> {
+        sessionFactory.fromTransaction(session -> {
             for (BotUser botUser : botUsers) {
                 session.persist(botUser);
             }
             return botUsers;
         });
+        for (BotUser botUser : botUsers) {
+            hostmaskIndex.put(botUser.getId(), botUser.getHostmasks());
+        }
+        return botUsers;
     }
 }
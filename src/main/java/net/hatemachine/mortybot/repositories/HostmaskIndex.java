@@ -0,0 +1,370 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.repositories;
+
+import net.hatemachine.mortybot.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of the hostmasks belonging to bot users. Masks are bucketed by the literal labels at the end
+ * (or failing that, the start) of their host part so that a lookup only has to run the wildcard matcher against
+ * a handful of candidates instead of every mask in the database. Masks with no usable literal host go into a
+ * small fallback list that is always checked.
+ *
+ * Lookups are lock-free. Writes are serialized and replace bucket arrays rather than modifying them in place.
+ * Every write bumps a generation counter that can be used to tell when results derived from the index are stale.
+ */
+public class HostmaskIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(HostmaskIndex.class);
+
+    /** Maximum number of host labels used to build a bucket key */
+    private static final int MAX_KEY_LABELS = 2;
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private static HostmaskIndex index;
+
+    private final Map<String, Entry[]> suffixBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Entry[]> prefixBuckets = new ConcurrentHashMap<>();
+    private volatile Entry[] unbucketed = EMPTY;
+
+    private final Map<Long, List<Entry>> entriesByUser = new HashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean loaded = false;
+    private long sequence = 0;
+
+    private HostmaskIndex() {}
+
+    /**
+     * Retrieves a singleton instance of our hostmask index.
+     *
+     * @return the hostmask index
+     */
+    public static synchronized HostmaskIndex getIndex() {
+        if (index == null) {
+            index = new HostmaskIndex();
+        }
+        return index;
+    }
+
+    /**
+     * Loads the index if it has not been loaded yet. The loader is called while holding the index lock so that
+     * any writes made while it runs are applied on top of what it returns.
+     *
+     * @param loader supplies the hostmasks for every bot user keyed by user id
+     */
+    public void ensureLoaded(Supplier<Map<Long, ? extends Collection<String>>> loader) {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                var hostmasks = loader.get();
+                hostmasks.forEach(this::addUser);
+                loaded = true;
+                log.info("Loaded {} hostmasks for {} users", sequence, hostmasks.size());
+            }
+        }
+    }
+
+    /**
+     * Retrieves the current generation of the index. This changes every time a user is written to or removed
+     * from the repository.
+     *
+     * @return the current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Finds the id of the first user with a hostmask matching the one given.
+     *
+     * @param userHostmask the user hostmask in the form nick!user@host
+     * @return an optional containing the matching user's id
+     */
+    public Optional<Long> findUserId(String userHostmask) {
+        Entry match = null;
+        int at = userHostmask.lastIndexOf('@');
+
+        if (at == -1 || userHostmask.indexOf('@') != at) {
+            // not a normal user hostmask, so the host part can't be trusted for bucketing
+            for (Entry[] bucket : suffixBuckets.values()) {
+                match = firstMatch(bucket, userHostmask, match);
+            }
+            for (Entry[] bucket : prefixBuckets.values()) {
+                match = firstMatch(bucket, userHostmask, match);
+            }
+        } else {
+            String host = userHostmask.substring(at + 1).toLowerCase();
+            int labels = countLabels(host);
+            for (int i = 1; i <= MAX_KEY_LABELS && i <= labels; i++) {
+                match = firstMatch(suffixBuckets.getOrDefault(lastLabels(host, i), EMPTY), userHostmask, match);
+                match = firstMatch(prefixBuckets.getOrDefault(firstLabels(host, i), EMPTY), userHostmask, match);
+            }
+        }
+
+        match = firstMatch(unbucketed, userHostmask, match);
+
+        return match == null ? Optional.empty() : Optional.of(match.userId);
+    }
+
+    /**
+     * Replaces the hostmasks indexed for a user.
+     *
+     * @param userId the user's id
+     * @param hostmasks the user's current hostmasks
+     */
+    public synchronized void put(long userId, Collection<String> hostmasks) {
+        generation.incrementAndGet();
+        if (!loaded) {
+            return; // picked up when the index is loaded
+        }
+        removeUser(userId);
+        addUser(userId, hostmasks);
+    }
+
+    /**
+     * Removes all hostmasks indexed for a user.
+     *
+     * @param userId the user's id
+     */
+    public synchronized void remove(long userId) {
+        generation.incrementAndGet();
+        if (loaded) {
+            removeUser(userId);
+        }
+    }
+
+    /**
+     * Removes all hostmasks from the index.
+     */
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        suffixBuckets.clear();
+        prefixBuckets.clear();
+        unbucketed = EMPTY;
+        entriesByUser.clear();
+    }
+
+    private void addUser(long userId, Collection<String> hostmasks) {
+        if (hostmasks == null || hostmasks.isEmpty()) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(hostmasks.size());
+        for (String hostmask : hostmasks) {
+            Entry entry = new Entry(userId, hostmask.toLowerCase(), sequence++);
+            String key = suffixKey(entry.mask);
+            if (key != null) {
+                entry.bucket = key;
+                suffixBuckets.merge(key, new Entry[] { entry }, HostmaskIndex::concat);
+            } else if ((key = prefixKey(entry.mask)) != null) {
+                entry.bucket = key;
+                entry.prefix = true;
+                prefixBuckets.merge(key, new Entry[] { entry }, HostmaskIndex::concat);
+            } else {
+                unbucketed = concat(unbucketed, new Entry[] { entry });
+            }
+            entries.add(entry);
+        }
+        entriesByUser.put(userId, entries);
+    }
+
+    private void removeUser(long userId) {
+        List<Entry> entries = entriesByUser.remove(userId);
+        if (entries == null) {
+            return;
+        }
+        for (Entry entry : entries) {
+            if (entry.bucket == null) {
+                unbucketed = without(unbucketed, entry);
+            } else {
+                var buckets = entry.prefix ? prefixBuckets : suffixBuckets;
+                buckets.computeIfPresent(entry.bucket, (k, v) -> {
+                    Entry[] remaining = without(v, entry);
+                    return remaining.length == 0 ? null : remaining;
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns whichever of the current match or the first matching entry in the bucket was indexed first,
+     * so results are stable regardless of which bucket a mask ended up in.
+     */
+    private static Entry firstMatch(Entry[] bucket, String userHostmask, Entry current) {
+        for (Entry entry : bucket) {
+            if (current != null && entry.seq > current.seq) {
+                continue;
+            }
+            if (StringUtils.wildcardMatches(entry.mask, userHostmask)) {
+                current = entry;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Builds a bucket key from the complete labels in the literal tail of a mask's host,
+     * e.g. "*!*@*.users.example.com" gives "example.com".
+     */
+    private static String suffixKey(String mask) {
+        int at = mask.lastIndexOf('@');
+        if (at == -1) {
+            return null;
+        }
+        int start = at + 1;
+        int tail = start;
+        for (int i = mask.length() - 1; i >= start; i--) {
+            char c = mask.charAt(i);
+            if (c == '*' || c == '?') {
+                tail = i + 1;
+                // the first label of the tail is only complete if it starts right after a separator
+                while (tail < mask.length() && !isSeparator(mask.charAt(tail))) {
+                    tail++;
+                }
+                break;
+            }
+        }
+        String literal = mask.substring(tail);
+        if (literal.isEmpty() || countLabels(literal) == 0) {
+            return null;
+        }
+        return lastLabels(literal, Math.min(MAX_KEY_LABELS, countLabels(literal)));
+    }
+
+    /**
+     * Builds a bucket key from the complete labels in the literal head of a mask's host,
+     * e.g. "*!*@192.168.*" gives "192.168".
+     */
+    private static String prefixKey(String mask) {
+        int at = mask.lastIndexOf('@');
+        if (at == -1) {
+            return null;
+        }
+        int start = at + 1;
+        int end = start;
+        while (end < mask.length() && mask.charAt(end) != '*' && mask.charAt(end) != '?') {
+            end++;
+        }
+        if (end < mask.length()) {
+            // drop the incomplete label the wildcard is in
+            while (end > start && !isSeparator(mask.charAt(end - 1))) {
+                end--;
+            }
+        }
+        String literal = mask.substring(start, end);
+        if (countLabels(literal) == 0) {
+            return null;
+        }
+        return firstLabels(literal, Math.min(MAX_KEY_LABELS, countLabels(literal)));
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == ':';
+    }
+
+    private static int countLabels(String host) {
+        int count = 0;
+        boolean inLabel = false;
+        for (int i = 0; i < host.length(); i++) {
+            if (isSeparator(host.charAt(i))) {
+                inLabel = false;
+            } else if (!inLabel) {
+                inLabel = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String lastLabels(String host, int n) {
+        int end = host.length();
+        while (end > 0 && isSeparator(host.charAt(end - 1))) {
+            end--;
+        }
+        int i = end;
+        while (n > 0 && i > 0) {
+            i--;
+            if (isSeparator(host.charAt(i)) && i < end - 1 && !isSeparator(host.charAt(i + 1)) && --n == 0) {
+                return host.substring(i + 1, end);
+            }
+        }
+        int start = 0;
+        while (start < end && isSeparator(host.charAt(start))) {
+            start++;
+        }
+        return host.substring(start, end);
+    }
+
+    private static String firstLabels(String host, int n) {
+        int start = 0;
+        while (start < host.length() && isSeparator(host.charAt(start))) {
+            start++;
+        }
+        for (int i = start; i < host.length(); i++) {
+            if (isSeparator(host.charAt(i)) && i > start && !isSeparator(host.charAt(i - 1)) && --n == 0) {
+                return host.substring(start, i);
+            }
+        }
+        int end = host.length();
+        while (end > start && isSeparator(host.charAt(end - 1))) {
+            end--;
+        }
+        return host.substring(start, end);
+    }
+
+    private static Entry[] concat(Entry[] a, Entry[] b) {
+        Entry[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                Entry[] result = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, result, 0, i);
+                System.arraycopy(entries, i + 1, result, i, entries.length - i - 1);
+                return result;
+            }
+        }
+        return entries;
+    }
+
+    private static class Entry {
+        private final long userId;
+        private final String mask;
+        private final long seq;
+        private String bucket;
+        private boolean prefix;
+
+        Entry(long userId, String mask, long seq) {
+            this.userId = userId;
+            this.mask = mask;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.repositories;
+
+import jakarta.persistence.criteria.CriteriaQuery;
+import net.hatemachine.mortybot.model.LinkPreview;
+import net.hatemachine.mortybot.util.HibernateUtil;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Repository for managing LinkPreview entities.
+ * It implements the CrudRepository interface, providing basic CRUD operations for LinkPreview objects.
+ */
+public class LinkPreviewRepository implements CrudRepository<LinkPreview, Long> {
+
+    private final SessionFactory sessionFactory;
+
+    public LinkPreviewRepository() {
+        this.sessionFactory = HibernateUtil.getSessionFactory();
+    }
+
+    /**
+     * Retrieves the total number of records in the LinkPreview table.
+     *
+     * @return the total number of records
+     */
+    @Override
+    public long count() {
+        return sessionFactory.fromTransaction(session -> session.createNativeQuery("select count(*) from LinkPreview", Long.class).uniqueResult());
+    }
+
+    /**
+     * Deletes a LinkPreview entity from the database.
+     *
+     * @param linkPreview the LinkPreview object to be deleted
+     */
+    @Override
+    public void delete(LinkPreview linkPreview) {
+        sessionFactory.inTransaction(session -> session.remove(session.contains(linkPreview) ? linkPreview : session.merge(linkPreview)));
+    }
+
+    /**
+     * Deletes all LinkPreview entities from the database.
+     */
+    @Override
+    public void deleteAll() {
+        sessionFactory.inTransaction(session -> session.createMutationQuery("delete from LinkPreview").executeUpdate());
+    }
+
+    /**
+     * Deletes all the given link previews from the database.
+     *
+     * @param linkPreviews an iterable collection of link previews to be deleted
+     */
+    @Override
+    public void deleteAll(Iterable<? extends LinkPreview> linkPreviews) {
+        sessionFactory.inTransaction(session -> {
+            for (LinkPreview linkPreview : linkPreviews) {
+                session.remove(session.contains(linkPreview) ? linkPreview : session.merge(linkPreview));
+            }
+        });
+    }
+
+    /**
+     * Deletes multiple LinkPreview entities from the database by their IDs.
+     *
+     * @param ids An {@link Iterable} of {@link Long} IDs representing the LinkPreviews to be deleted.
+     * @throws org.hibernate.HibernateException If an error occurs during the database operation.
+     */
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        sessionFactory.inTransaction(session -> {
+            var query = session.createMutationQuery("delete from LinkPreview where id in :ids");
+            query.setParameter("ids", ids);
+            query.executeUpdate();
+        });
+    }
+
+    /**
+     * Deletes a LinkPreview entity from the database by its id.
+     *
+     * @param id The id of the LinkPreview entity to be deleted.
+     * @throws org.hibernate.HibernateException If an error occurs during the database operation.
+     */
+    @Override
+    public void deleteById(Long id) {
+        sessionFactory.inTransaction(session -> {
+            var query = session.createMutationQuery("delete from LinkPreview where id = :id");
+            query.setParameter("id", id);
+            query.executeUpdate();
+        });
+    }
+
+    /**
+     * Deletes the link previews where everything that was fetched has expired.
+     *
+     * @param now the current time in milliseconds since the epoch
+     * @return the number of link previews deleted
+     */
+    public int deleteExpired(long now) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createMutationQuery(
+                    "delete from LinkPreview where titleExpiresAt <= :now and shortLinkExpiresAt <= :now");
+            query.setParameter("now", now);
+            return query.executeUpdate();
+        });
+    }
+
+    /**
+     * Checks if a LinkPreview with the given id exists in the database.
+     *
+     * @param id the id of the LinkPreview to check
+     * @return true if a LinkPreview with the given id exists, false otherwise
+     */
+    @Override
+    public boolean existsById(Long id) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createNativeQuery("select 1 from LinkPreview where id = :id", Integer.class);
+            query.setParameter("id", id);
+            return query.uniqueResult() != null;
+        });
+    }
+
+    /**
+     * Retrieves all the LinkPreview entities from the database.
+     *
+     * @return A list containing all the LinkPreviews.
+     */
+    @Override
+    public List<LinkPreview> findAll() {
+        return sessionFactory.fromTransaction(session -> {
+            CriteriaQuery<LinkPreview> criteria = session.getCriteriaBuilder().createQuery(LinkPreview.class);
+            criteria.from(LinkPreview.class);
+            return session.createQuery(criteria).list();
+        });
+    }
+
+    /**
+     * Retrieves a list of LinkPreviews that match the given IDs.
+     *
+     * @param ids An iterable collection of Long values representing the IDs of the LinkPreviews to find.
+     * @return A list of LinkPreviews that match the given IDs.
+     */
+    @Override
+    public List<LinkPreview> findAllById(Iterable<Long> ids) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createSelectionQuery("from LinkPreview where id in :ids", LinkPreview.class);
+            query.setParameter("ids", ids);
+            return query.getResultList();
+        });
+    }
+
+    /**
+     * Retrieves a LinkPreview by its ID.
+     *
+     * @param id the ID of the LinkPreview to retrieve
+     * @return an Optional containing the LinkPreview if found, otherwise an empty Optional
+     */
+    @Override
+    public Optional<LinkPreview> findById(Long id) {
+        var linkPreview = sessionFactory.fromTransaction(session -> session.find(LinkPreview.class, id));
+        return linkPreview == null ? Optional.empty() : Optional.of(linkPreview);
+    }
+
+    /**
+     * Finds a LinkPreview by its normalized url.
+     *
+     * @param url the normalized url of the LinkPreview to find
+     * @return an Optional object containing the found LinkPreview if it exists, otherwise returns an empty Optional
+     */
+    public Optional<LinkPreview> findByUrl(String url) {
+        var linkPreview = sessionFactory.fromTransaction(session -> session.bySimpleNaturalId(LinkPreview.class).load(url));
+        return linkPreview == null ? Optional.empty() : Optional.of(linkPreview);
+    }
+
+    /**
+     * Saves a LinkPreview entity to the database.
+     *
+     * @param linkPreview the LinkPreview object to save (not null)
+     * @param <S>         the type of the LinkPreview object
+     * @return the saved LinkPreview object
+     * @throws NullPointerException if linkPreview is null
+     */
+    @Override
+    public <S extends LinkPreview> S save(S linkPreview) {
+        Objects.requireNonNull(linkPreview, "linkPreview cannot be null");
+
+        return sessionFactory.fromTransaction(session -> {
+            if (linkPreview.getId() == null) {
+                session.persist(linkPreview);
+            } else {
+                session.merge(linkPreview);
+            }
+            return linkPreview;
+        });
+    }
+
+    /**
+     * Saves all the given LinkPreview entities to the database.
+     *
+     * @param linkPreviews the link previews to save
+     * @param <S>          the type of link preview
+     * @return an iterable of the saved link previews
+     */
+    @Override
+    public <S extends LinkPreview> Iterable<S> saveAll(Iterable<S> linkPreviews) {
+        return sessionFactory.fromTransaction(session -> {
+            for (LinkPreview linkPreview : linkPreviews) {
+                session.persist(linkPreview);
+            }
+            return linkPreviews;
+        });
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.repositories;
+
+import jakarta.persistence.criteria.CriteriaQuery;
+import net.hatemachine.mortybot.model.ScoreSubscription;
+import net.hatemachine.mortybot.util.HibernateUtil;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Repository for managing ScoreSubscription entities.
+ * It implements the CrudRepository interface, providing basic CRUD operations for ScoreSubscription objects.
+ */
+public class ScoreSubscriptionRepository implements CrudRepository<ScoreSubscription, Long> {
+
+    private final SessionFactory sessionFactory;
+
+    public ScoreSubscriptionRepository() {
+        this.sessionFactory = HibernateUtil.getSessionFactory();
+    }
+
+    /**
+     * Retrieves the total number of records in the ScoreSubscription table.
+     *
+     * @return the total number of records
+     */
+    @Override
+    public long count() {
+        return sessionFactory.fromTransaction(session -> session.createNativeQuery("select count(*) from ScoreSubscription", Long.class).uniqueResult());
+    }
+
+    /**
+     * Deletes a ScoreSubscription entity from the database.
+     *
+     * @param scoreSubscription the ScoreSubscription object to be deleted
+     */
+    @Override
+    public void delete(ScoreSubscription scoreSubscription) {
+        sessionFactory.inTransaction(session -> session.remove(session.contains(scoreSubscription) ? scoreSubscription : session.merge(scoreSubscription)));
+    }
+
+    /**
+     * Deletes all ScoreSubscription entities from the database.
+     */
+    @Override
+    public void deleteAll() {
+        sessionFactory.inTransaction(session -> session.createMutationQuery("delete from ScoreSubscription").executeUpdate());
+    }
+
+    /**
+     * Deletes all the given score subscriptions from the database.
+     *
+     * @param scoreSubscriptions an iterable collection of score subscriptions to be deleted
+     */
+    @Override
+    public void deleteAll(Iterable<? extends ScoreSubscription> scoreSubscriptions) {
+        sessionFactory.inTransaction(session -> {
+            for (ScoreSubscription scoreSubscription : scoreSubscriptions) {
+                session.remove(session.contains(scoreSubscription) ? scoreSubscription : session.merge(scoreSubscription));
+            }
+        });
+    }
+
+    /**
+     * Deletes multiple ScoreSubscription entities from the database by their IDs.
+     *
+     * @param ids An {@link Iterable} of {@link Long} IDs representing the ScoreSubscriptions to be deleted.
+     * @throws org.hibernate.HibernateException If an error occurs during the database operation.
+     */
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        sessionFactory.inTransaction(session -> {
+            var query = session.createMutationQuery("delete from ScoreSubscription where id in :ids");
+            query.setParameter("ids", ids);
+            query.executeUpdate();
+        });
+    }
+
+    /**
+     * Deletes a ScoreSubscription entity from the database by its id.
+     *
+     * @param id The id of the ScoreSubscription entity to be deleted.
+     * @throws org.hibernate.HibernateException If an error occurs during the database operation.
+     */
+    @Override
+    public void deleteById(Long id) {
+        sessionFactory.inTransaction(session -> {
+            var query = session.createMutationQuery("delete from ScoreSubscription where id = :id");
+            query.setParameter("id", id);
+            query.executeUpdate();
+        });
+    }
+
+    /**
+     * Checks if a ScoreSubscription with the given id exists in the database.
+     *
+     * @param id the id of the ScoreSubscription to check
+     * @return true if a ScoreSubscription with the given id exists, false otherwise
+     */
+    @Override
+    public boolean existsById(Long id) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createNativeQuery("select 1 from ScoreSubscription where id = :id", Integer.class);
+            query.setParameter("id", id);
+            return query.uniqueResult() != null;
+        });
+    }
+
+    /**
+     * Retrieves all the ScoreSubscription entities from the database.
+     *
+     * @return A list containing all the ScoreSubscriptions.
+     */
+    @Override
+    public List<ScoreSubscription> findAll() {
+        return sessionFactory.fromTransaction(session -> {
+            CriteriaQuery<ScoreSubscription> criteria = session.getCriteriaBuilder().createQuery(ScoreSubscription.class);
+            criteria.from(ScoreSubscription.class);
+            return session.createQuery(criteria).list();
+        });
+    }
+
+    /**
+     * Retrieves a list of ScoreSubscriptions that match the given IDs.
+     *
+     * @param ids An iterable collection of Long values representing the IDs of the ScoreSubscriptions to find.
+     * @return A list of ScoreSubscriptions that match the given IDs.
+     */
+    @Override
+    public List<ScoreSubscription> findAllById(Iterable<Long> ids) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createSelectionQuery("from ScoreSubscription where id in :ids", ScoreSubscription.class);
+            query.setParameter("ids", ids);
+            return query.getResultList();
+        });
+    }
+
+    /**
+     * Retrieves a ScoreSubscription by its ID.
+     *
+     * @param id the ID of the ScoreSubscription to retrieve
+     * @return an Optional containing the ScoreSubscription if found, otherwise an empty Optional
+     */
+    @Override
+    public Optional<ScoreSubscription> findById(Long id) {
+        var scoreSubscription = sessionFactory.fromTransaction(session -> session.find(ScoreSubscription.class, id));
+        return scoreSubscription == null ? Optional.empty() : Optional.of(scoreSubscription);
+    }
+
+    /**
+     * Finds the score subscriptions for a channel.
+     *
+     * @param channel the name of the channel
+     * @return a list of the channel's subscriptions
+     */
+    public List<ScoreSubscription> findByChannel(String channel) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createSelectionQuery("from ScoreSubscription where channel = :channel order by league, team", ScoreSubscription.class);
+            query.setParameter("channel", channel);
+            return query.getResultList();
+        });
+    }
+
+    /**
+     * Saves a ScoreSubscription entity to the database.
+     *
+     * @param scoreSubscription the ScoreSubscription object to save (not null)
+     * @param <S>         the type of the ScoreSubscription object
+     * @return the saved ScoreSubscription object
+     * @throws NullPointerException if scoreSubscription is null
+     */
+    @Override
+    public <S extends ScoreSubscription> S save(S scoreSubscription) {
+        Objects.requireNonNull(scoreSubscription, "scoreSubscription cannot be null");
+
+        return sessionFactory.fromTransaction(session -> {
+            if (scoreSubscription.getId() == null) {
+                session.persist(scoreSubscription);
+            } else {
+                session.merge(scoreSubscription);
+            }
+            return scoreSubscription;
+        });
+    }
+
+    /**
+     * Saves all the given ScoreSubscription entities to the database.
+     *
+     * @param scoreSubscriptions the score subscriptions to save
+     * @param <S>          the type of score subscription
+     * @return an iterable of the saved score subscriptions
+     */
+    @Override
+    public <S extends ScoreSubscription> Iterable<S> saveAll(Iterable<S> scoreSubscriptions) {
+        return sessionFactory.fromTransaction(session -> {
+            for (ScoreSubscription scoreSubscription : scoreSubscriptions) {
+                session.persist(scoreSubscription);
+            }
+            return scoreSubscriptions;
+        });
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.repositories;
+
+import jakarta.persistence.criteria.CriteriaQuery;
+import net.hatemachine.mortybot.model.StockWatch;
+import net.hatemachine.mortybot.util.HibernateUtil;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Repository for managing StockWatch entities.
+ * It implements the CrudRepository interface, providing basic CRUD operations for StockWatch objects.
+ */
+public class StockWatchRepository implements CrudRepository<StockWatch, Long> {
+
+    private final SessionFactory sessionFactory;
+
+    public StockWatchRepository() {
+        this.sessionFactory = HibernateUtil.getSessionFactory();
+    }
+
+    /**
+     * Retrieves the total number of records in the StockWatch table.
+     *
+     * @return the total number of records
+     */
+    @Override
+    public long count() {
+        return sessionFactory.fromTransaction(session -> session.createNativeQuery("select count(*) from StockWatch", Long.class).uniqueResult());
+    }
+
+    /**
+     * Deletes a StockWatch entity from the database.
+     *
+     * @param stockWatch the StockWatch object to be deleted
+     */
+    @Override
+    public void delete(StockWatch stockWatch) {
+        sessionFactory.inTransaction(session -> session.remove(session.contains(stockWatch) ? stockWatch : session.merge(stockWatch)));
+    }
+
+    /**
+     * Deletes all StockWatch entities from the database.
+     */
+    @Override
+    public void deleteAll() {
+        sessionFactory.inTransaction(session -> session.createMutationQuery("delete from StockWatch").executeUpdate());
+    }
+
+    /**
+     * Deletes all the given stock watches from the database.
+     *
+     * @param stockWatches an iterable collection of stock watches to be deleted
+     */
+    @Override
+    public void deleteAll(Iterable<? extends StockWatch> stockWatches) {
+        sessionFactory.inTransaction(session -> {
+            for (StockWatch stockWatch : stockWatches) {
+                session.remove(session.contains(stockWatch) ? stockWatch : session.merge(stockWatch));
+            }
+        });
+    }
+
+    /**
+     * Deletes multiple StockWatch entities from the database by their IDs.
+     *
+     * @param ids An {@link Iterable} of {@link Long} IDs representing the StockWatches to be deleted.
+     * @throws org.hibernate.HibernateException If an error occurs during the database operation.
+     */
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        sessionFactory.inTransaction(session -> {
+            var query = session.createMutationQuery("delete from StockWatch where id in :ids");
+            query.setParameter("ids", ids);
+            query.executeUpdate();
+        });
+    }
+
+    /**
+     * Deletes a StockWatch entity from the database by its id.
+     *
+     * @param id The id of the StockWatch entity to be deleted.
+     * @throws org.hibernate.HibernateException If an error occurs during the database operation.
+     */
+    @Override
+    public void deleteById(Long id) {
+        sessionFactory.inTransaction(session -> {
+            var query = session.createMutationQuery("delete from StockWatch where id = :id");
+            query.setParameter("id", id);
+            query.executeUpdate();
+        });
+    }
+
+    /**
+     * Checks if a StockWatch with the given id exists in the database.
+     *
+     * @param id the id of the StockWatch to check
+     * @return true if a StockWatch with the given id exists, false otherwise
+     */
+    @Override
+    public boolean existsById(Long id) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createNativeQuery("select 1 from StockWatch where id = :id", Integer.class);
+            query.setParameter("id", id);
+            return query.uniqueResult() != null;
+        });
+    }
+
+    /**
+     * Retrieves all the StockWatch entities from the database.
+     *
+     * @return A list containing all the StockWatches.
+     */
+    @Override
+    public List<StockWatch> findAll() {
+        return sessionFactory.fromTransaction(session -> {
+            CriteriaQuery<StockWatch> criteria = session.getCriteriaBuilder().createQuery(StockWatch.class);
+            criteria.from(StockWatch.class);
+            return session.createQuery(criteria).list();
+        });
+    }
+
+    /**
+     * Retrieves a list of StockWatches that match the given IDs.
+     *
+     * @param ids An iterable collection of Long values representing the IDs of the StockWatches to find.
+     * @return A list of StockWatches that match the given IDs.
+     */
+    @Override
+    public List<StockWatch> findAllById(Iterable<Long> ids) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createSelectionQuery("from StockWatch where id in :ids", StockWatch.class);
+            query.setParameter("ids", ids);
+            return query.getResultList();
+        });
+    }
+
+    /**
+     * Retrieves a StockWatch by its ID.
+     *
+     * @param id the ID of the StockWatch to retrieve
+     * @return an Optional containing the StockWatch if found, otherwise an empty Optional
+     */
+    @Override
+    public Optional<StockWatch> findById(Long id) {
+        var stockWatch = sessionFactory.fromTransaction(session -> session.find(StockWatch.class, id));
+        return stockWatch == null ? Optional.empty() : Optional.of(stockWatch);
+    }
+
+    /**
+     * Finds the stock watches for a channel.
+     *
+     * @param channel the name of the channel
+     * @return a list of the channel's watches
+     */
+    public List<StockWatch> findByChannel(String channel) {
+        return sessionFactory.fromTransaction(session -> {
+            var query = session.createSelectionQuery("from StockWatch where channel = :channel order by symbol", StockWatch.class);
+            query.setParameter("channel", channel);
+            return query.getResultList();
+        });
+    }
+
+    /**
+     * Saves a StockWatch entity to the database.
+     *
+     * @param stockWatch the StockWatch object to save (not null)
+     * @param <S>         the type of the StockWatch object
+     * @return the saved StockWatch object
+     * @throws NullPointerException if stockWatch is null
+     */
+    @Override
+    public <S extends StockWatch> S save(S stockWatch) {
+        Objects.requireNonNull(stockWatch, "stockWatch cannot be null");
+
+        return sessionFactory.fromTransaction(session -> {
+            if (stockWatch.getId() == null) {
+                session.persist(stockWatch);
+            } else {
+                session.merge(stockWatch);
+            }
+            return stockWatch;
+        });
+    }
+
+    /**
+     * Saves all the given StockWatch entities to the database.
+     *
+     * @param stockWatches the stock watches to save
+     * @param <S>          the type of stock watch
+     * @return an iterable of the saved stock watches
+     */
+    @Override
+    public <S extends StockWatch> Iterable<S> saveAll(Iterable<S> stockWatches) {
+        return sessionFactory.fromTransaction(session -> {
+            for (StockWatch stockWatch : stockWatches) {
+                session.persist(stockWatch);
+            }
+            return stockWatches;
+        });
+    }
+}
@@ -19,13 +19,13 @@ package net.hatemachine.mortybot.services.bitly;
 
 import com.google.gson.Gson;
 import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.util.HttpClientPool;
 import net.hatemachine.mortybot.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -33,6 +33,8 @@ import java.util.Optional;
 
 public class Bitly {
 
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
     private static final Logger log = LoggerFactory.getLogger(Bitly.class);
 
     private Bitly() {}
@@ -58,21 +60,18 @@ public class Bitly {
                 "    \"long_url\": \"" + uri.toASCIIString() + "\"  \n" +
                 "}";
 
-        try (HttpClient client = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .version(HttpClient.Version.HTTP_1_1)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build()) {
-
+        try {
+            HttpClientPool pool = HttpClientPool.getPool();
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(apiEndpoint))
+                    .timeout(pool.getTimeout("bitly", TIMEOUT))
                     .POST(HttpRequest.BodyPublishers.ofString(requestJson))
                     .setHeader("User-Agent", "Java 11 HttpClient Bot")
                     .setHeader("Content-Type", "application/json")
                     .setHeader("Authorization", "Bearer " + apiKey)
                     .build();
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = pool.send("bitly", request, HttpResponse.BodyHandlers.ofString());
 
             int status = response.statusCode();
             if (status >= 200 && status <= 299) {
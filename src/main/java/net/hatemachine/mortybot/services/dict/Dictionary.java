@@ -32,4 +32,25 @@ public interface Dictionary {
      * @see DictionaryEntry
      */
     List<DictionaryEntry> lookup(String term);
+
+    /**
+     * Finds words starting with a prefix. Dictionaries that can't do this cheaply return nothing.
+     *
+     * @param prefix the start of the words to find
+     * @param limit the maximum number of words to return
+     * @return a sorted list of matching words
+     */
+    default List<String> complete(String prefix, int limit) {
+        return List.of();
+    }
+
+    /**
+     * Whether finding nothing in this dictionary means the term isn't a word, rather than just that this
+     * dictionary doesn't have it.
+     *
+     * @return true if an empty lookup can be trusted as a miss
+     */
+    default boolean isAuthoritative() {
+        return true;
+    }
 }
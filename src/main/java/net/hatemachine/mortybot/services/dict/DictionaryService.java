@@ -0,0 +1,156 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.dict;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Dictionary that looks terms up in a series of other dictionaries, in order, until one of them has an answer.
+ * Results are cached in front of all of them. The usual tiers are:
+ * <ol>
+ *     <li>a {@link LocalDictionary} compiled from a file in the config directory, if there is one</li>
+ *     <li>the {@link MerriamWebsterAPI}, if an API key has been configured</li>
+ *     <li>the {@link MerriamWebsterWeb} scraper</li>
+ * </ol>
+ * so most lookups are answered locally and the network is only used for words the local dictionary doesn't have.
+ * A tier that fails is logged and skipped. A miss is only cached when an authoritative dictionary answered without
+ * failing, so a network outage doesn't become "not found" for ten minutes.
+ */
+public class DictionaryService implements Dictionary {
+
+    /** How long to remember that none of the tiers had a term */
+    private static final Duration MISS_TTL = Duration.ofMinutes(10);
+
+    private static final Logger log = LoggerFactory.getLogger(DictionaryService.class);
+
+    private static DictionaryService service;
+
+    private final List<Dictionary> tiers;
+    private final Map<String, CachedLookup> cache;
+    private final Duration ttl;
+
+    /**
+     * Creates a dictionary service.
+     *
+     * @param tiers the dictionaries to try, in order
+     * @param cacheSize the number of lookups to cache
+     * @param ttl how long to cache lookups that found something
+     */
+    public DictionaryService(List<Dictionary> tiers, int cacheSize, Duration ttl) {
+        this.tiers = List.copyOf(tiers);
+        this.ttl = ttl;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLookup> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Retrieves a singleton instance of our dictionary service, opening (and if necessary compiling) the local
+     * dictionary the first time.
+     *
+     * @return the dictionary service
+     */
+    public static synchronized DictionaryService getService() {
+        if (service == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            List<Dictionary> tiers = new ArrayList<>();
+
+            Path source = props.getBotConfigDir().resolve(props.getStringProperty("dict.local.source", BotDefaults.DICT_LOCAL_SOURCE));
+            Path index = Paths.get(props.getStringProperty("dict.local.index", BotDefaults.DICT_LOCAL_INDEX));
+            try {
+                LocalDictionary.open(source, index).ifPresent(tiers::add);
+            } catch (IOException e) {
+                log.error("Unable to open local dictionary {}", index, e);
+            }
+
+            MerriamWebsterAPI api = new MerriamWebsterAPI();
+            if (api.isConfigured()) {
+                tiers.add(api);
+            }
+            tiers.add(new MerriamWebsterWeb());
+
+            int cacheSize = props.getIntProperty("dict.cache.size", BotDefaults.DICT_CACHE_SIZE);
+            int ttl = props.getIntProperty("dict.cache.ttl", BotDefaults.DICT_CACHE_TTL);
+            service = new DictionaryService(tiers, cacheSize, Duration.ofSeconds(ttl));
+        }
+        return service;
+    }
+
+    @Override
+    public List<DictionaryEntry> lookup(String term) {
+        String key = LocalDictionary.normalize(term);
+        CachedLookup cached = cache.get(key);
+        if (cached != null && cached.expiresAt.isAfter(Instant.now())) {
+            return cached.entries;
+        }
+
+        List<DictionaryEntry> entries = List.of();
+        boolean answered = false;
+        for (Dictionary tier : tiers) {
+            try {
+                entries = tier.lookup(term);
+                answered |= tier.isAuthoritative();
+            } catch (UncheckedIOException e) {
+                log.warn("{} lookup failed for \"{}\": {}", tier.getClass().getSimpleName(), term, e.getMessage());
+                continue;
+            } catch (RuntimeException e) {
+                log.warn("{} lookup failed for \"{}\"", tier.getClass().getSimpleName(), term, e);
+                continue;
+            }
+            if (!entries.isEmpty()) {
+                log.debug("Found \"{}\" in {}", term, tier.getClass().getSimpleName());
+                break;
+            }
+        }
+
+        entries = List.copyOf(entries);
+        if (!entries.isEmpty()) {
+            cache.put(key, new CachedLookup(entries, Instant.now().plus(ttl)));
+        } else if (answered) {
+            cache.put(key, new CachedLookup(entries, Instant.now().plus(MISS_TTL)));
+        }
+        return entries;
+    }
+
+    @Override
+    public List<String> complete(String prefix, int limit) {
+        for (Dictionary tier : tiers) {
+            List<String> words = tier.complete(prefix, limit);
+            if (!words.isEmpty()) {
+                return words;
+            }
+        }
+        return List.of();
+    }
+
+    private record CachedLookup(List<DictionaryEntry> entries, Instant expiresAt) {}
+}
@@ -0,0 +1,309 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.dict;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Dictionary backed by a local index file, so lookups don't need the network.<br/>
+ * <br/>
+ * The index is compiled from a tab separated source file with one definition per line in the form
+ * <code>word&lt;TAB&gt;type&lt;TAB&gt;attributes&lt;TAB&gt;definition</code>, which is easy to produce from a
+ * WordNet style dump. Lines for the same word, type and attributes are merged into a single entry. Blank lines and
+ * lines starting with # are ignored.<br/>
+ * <br/>
+ * The compiled index is memory-mapped. It holds the records sorted by the UTF-8 bytes of their lower case word,
+ * followed by a table of record offsets, so an exact or prefix lookup is a binary search over the table that
+ * only touches the pages it needs and never loads the whole dictionary into the heap.
+ */
+public class LocalDictionary implements Dictionary {
+
+    private static final int INDEX_MAGIC = 0x44495831; // DIX1
+    private static final int TRAILER_SIZE = 12;
+    private static final String UNKNOWN = "--";
+
+    private static final Logger log = LoggerFactory.getLogger(LocalDictionary.class);
+
+    private final ByteBuffer buffer;
+    private final int tablePos;
+    private final int count;
+
+    private LocalDictionary(ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        if (limit < TRAILER_SIZE || buffer.getInt(limit - 4) != INDEX_MAGIC) {
+            throw new IOException("Not a dictionary index");
+        }
+        this.buffer = buffer;
+        this.tablePos = buffer.getInt(limit - TRAILER_SIZE);
+        this.count = buffer.getInt(limit - TRAILER_SIZE + 4);
+    }
+
+    /**
+     * Opens a local dictionary, compiling the index from the source file first if the index doesn't exist or is
+     * older than the source.
+     *
+     * @param source the tab separated source file
+     * @param index the compiled index file
+     * @return the dictionary, or empty if there is neither an index nor a source to build one from
+     * @throws IOException if the index could not be compiled or opened
+     */
+    public static Optional<LocalDictionary> open(Path source, Path index) throws IOException {
+        boolean hasSource = Files.isRegularFile(source);
+        boolean hasIndex = Files.isRegularFile(index);
+
+        if (hasSource && (!hasIndex || Files.getLastModifiedTime(source).compareTo(Files.getLastModifiedTime(index)) > 0)) {
+            compile(source, index);
+        } else if (!hasIndex) {
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            LocalDictionary dict = new LocalDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            log.info("Opened dictionary index {} with {} words", index, dict.size());
+            return Optional.of(dict);
+        }
+    }
+
+    /**
+     * Compiles a tab separated source file into an index.
+     *
+     * @param source the source file
+     * @param index the index file to write
+     * @throws IOException if the source could not be read or the index could not be written
+     */
+    public static void compile(Path source, Path index) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, Map<String, EntryBuilder>> words = new HashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 4);
+                String word = fields[0].trim();
+                if (word.isEmpty() || fields.length < 4 || fields[3].isBlank()) {
+                    continue;
+                }
+                String type = fields[1].isBlank() ? UNKNOWN : fields[1].trim();
+                String attributes = fields[2].isBlank() ? UNKNOWN : fields[2].trim();
+                words.computeIfAbsent(normalize(word), k -> new LinkedHashMap<>())
+                        .computeIfAbsent(word + '\t' + type + '\t' + attributes, k -> new EntryBuilder(word, type, attributes))
+                        .definitions.add(formatDefinition(fields[3].trim()));
+            }
+        }
+
+        List<byte[]> keys = new ArrayList<>(words.size());
+        words.keySet().forEach(k -> keys.add(k.getBytes(StandardCharsets.UTF_8)));
+        keys.sort(Arrays::compareUnsigned);
+
+        Files.createDirectories(index.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(index.toAbsolutePath().getParent(), index.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                int[] offsets = new int[keys.size()];
+                for (int i = 0; i < keys.size(); i++) {
+                    offsets[i] = out.size();
+                    byte[] key = keys.get(i);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    Collection<EntryBuilder> entries = words.get(new String(key, StandardCharsets.UTF_8)).values();
+                    out.writeInt(entries.size());
+                    for (EntryBuilder entry : entries) {
+                        writeString(out, entry.word);
+                        writeString(out, entry.type);
+                        writeString(out, entry.attributes);
+                        out.writeInt(entry.definitions.size());
+                        for (String definition : entry.definitions) {
+                            writeString(out, definition);
+                        }
+                    }
+                }
+                int tablePos = out.size();
+                for (int offset : offsets) {
+                    out.writeInt(offset);
+                }
+                out.writeInt(tablePos);
+                out.writeInt(offsets.length);
+                out.writeInt(INDEX_MAGIC);
+                if (out.size() == Integer.MAX_VALUE) {
+                    // size() stops counting here, so offsets past this point would be wrong
+                    throw new IOException("Dictionary index is too large");
+                }
+            }
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        log.info("Compiled {} words from {} into {} in {}ms", keys.size(), source, index, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return the number of distinct words in the dictionary
+     */
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public List<DictionaryEntry> lookup(String term) {
+        byte[] key = normalize(term).getBytes(StandardCharsets.UTF_8);
+        int i = lowerBound(key);
+        if (i == count || compareKey(offset(i), key, false) != 0) {
+            return List.of();
+        }
+        return readEntries(offset(i));
+    }
+
+    @Override
+    public List<String> complete(String prefix, int limit) {
+        byte[] key = normalize(prefix).getBytes(StandardCharsets.UTF_8);
+        List<String> words = new ArrayList<>();
+        for (int i = lowerBound(key); i < count && words.size() < limit; i++) {
+            int offset = offset(i);
+            if (compareKey(offset, key, true) != 0) {
+                break;
+            }
+            words.add(readString(offset));
+        }
+        return words;
+    }
+
+    /**
+     * The local word list is only ever a subset of the dictionaries behind it, so a word missing from it
+     * may still be found elsewhere.
+     */
+    @Override
+    public boolean isAuthoritative() {
+        return false;
+    }
+
+    /**
+     * Finds the position of the first key in the table that is not less than the one given.
+     */
+    private int lowerBound(byte[] key) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareKey(offset(mid), key, false) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int offset(int i) {
+        return buffer.getInt(tablePos + i * 4);
+    }
+
+    /**
+     * Compares the key of the record at an offset with another key, byte by byte. When checking a prefix, a
+     * record key that starts with the other key compares as equal.
+     */
+    private int compareKey(int offset, byte[] key, boolean prefix) {
+        int len = buffer.getInt(offset);
+        int pos = offset + 4;
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(pos + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return prefix && len >= key.length ? 0 : Integer.compare(len, key.length);
+    }
+
+    private List<DictionaryEntry> readEntries(int offset) {
+        int pos = offset + 4 + buffer.getInt(offset);
+        int entryCount = buffer.getInt(pos);
+        pos += 4;
+
+        List<DictionaryEntry> entries = new ArrayList<>(entryCount);
+        for (int e = 0; e < entryCount; e++) {
+            String word = readString(pos);
+            pos += 4 + buffer.getInt(pos);
+            String type = readString(pos);
+            pos += 4 + buffer.getInt(pos);
+            String attributes = readString(pos);
+            pos += 4 + buffer.getInt(pos);
+
+            int defCount = buffer.getInt(pos);
+            pos += 4;
+            List<String> definitions = new ArrayList<>(defCount);
+            for (int d = 0; d < defCount; d++) {
+                definitions.add(readString(pos));
+                pos += 4 + buffer.getInt(pos);
+            }
+            entries.add(new DictionaryEntry(word, type, attributes, definitions));
+        }
+        return entries;
+    }
+
+    private String readString(int pos) {
+        byte[] bytes = new byte[buffer.getInt(pos)];
+        buffer.get(pos + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Formats a definition the way Merriam-Webster does, starting with a colon.
+     */
+    private static String formatDefinition(String definition) {
+        return definition.startsWith(":") ? definition : ": " + definition;
+    }
+
+    static String normalize(String term) {
+        return term.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static class EntryBuilder {
+        private final String word;
+        private final String type;
+        private final String attributes;
+        private final List<String> definitions = new ArrayList<>();
+
+        EntryBuilder(String word, String type, String attributes) {
+            this.word = word;
+            this.type = type;
+            this.attributes = attributes;
+        }
+    }
+}
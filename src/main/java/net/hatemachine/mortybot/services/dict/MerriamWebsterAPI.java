@@ -17,20 +17,109 @@
  */
 package net.hatemachine.mortybot.services.dict;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.uwyn.urlencoder.UrlEncoder;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.util.Validate;
+import net.hatemachine.mortybot.util.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Dictionary lookups using the Merriam-Webster Collegiate Dictionary API. This requires a free API key from
+ * <a href="https://dictionaryapi.com/">https://dictionaryapi.com/</a>, without one every lookup comes back empty.
+ */
 public class MerriamWebsterAPI implements Dictionary {
 
+    private static final String API_URL = "https://www.dictionaryapi.com/api/v3/references/collegiate/json/";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static final Logger log = LoggerFactory.getLogger(MerriamWebsterAPI.class);
+
+    private final WebClient webClient = new WebClient("mw", TIMEOUT, new String[] { "Accept", "application/json" });
+    private final String apiKey;
+
+    public MerriamWebsterAPI() {
+        this.apiKey = BotProperties.getBotProperties().getStringProperty("mw.api.key", System.getenv("MW_API_KEY"));
+        // the key goes in the url, which the HTTP cache would write to disk, and DictionaryService caches results anyway
+        this.webClient.setCacheable(false);
+    }
+
+    /**
+     * @return true if an API key has been configured
+     */
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isBlank();
+    }
+
     /**
      * Performs a Merriam-Webster dictionary lookup and returns any definitions found.
      *
      * @param term the term to lookup
      * @return a list of dictionary entries containing any definitions for the given term
+     * @throws UncheckedIOException if the API did not respond
      */
     @Override
     public List<DictionaryEntry> lookup(String term) {
-        // TODO: implement me!
-        return new ArrayList<>();
+        Validate.notNullOrBlank(term);
+        if (!isConfigured()) {
+            log.debug("No Merriam-Webster API key configured");
+            return List.of();
+        }
+
+        log.info("Fetching definition for \"{}\" from the API", term);
+
+        String url = API_URL + UrlEncoder.encode(term.trim()) + "?key=" + UrlEncoder.encode(apiKey);
+        // a word that isn't found still gets a response, so no response at all means the request failed
+        List<DictionaryEntry> entries = webClient.getJson(url, JsonNode.class)
+                .map(json -> parseEntries(json, term.trim()))
+                .orElseThrow(() -> new UncheckedIOException(new IOException("No response from API for " + term)));
+
+        log.info("Found {} dictionary entries for \"{}\"", entries.size(), term);
+        return entries;
+    }
+
+    /**
+     * Converts the API response into dictionary entries. When the word isn't found the response is a list of
+     * suggested spellings instead of entries, which gives no entries here. Entries for other words that share the
+     * term's stem are only used if there are none for the term itself.
+     */
+    private static List<DictionaryEntry> parseEntries(JsonNode json, String term) {
+        List<DictionaryEntry> exact = new ArrayList<>();
+        List<DictionaryEntry> related = new ArrayList<>();
+
+        for (JsonNode node : json) {
+            if (!node.isObject() || !node.path("shortdef").isArray() || node.path("shortdef").isEmpty()) {
+                continue;
+            }
+
+            // headwords mark syllable breaks with *, and ids look like "word:2"
+            String headword = node.path("hwi").path("hw").asText();
+            String word = headword.replace("*", "");
+            if (word.isEmpty()) {
+                word = node.path("meta").path("id").asText().replaceFirst(":.*$", "");
+            }
+
+            String attributes = headword.isEmpty() ? "--" : headword.replace('*', '·');
+            JsonNode pronunciation = node.path("hwi").path("prs").path(0).path("mw");
+            if (pronunciation.isTextual()) {
+                attributes += " \\" + pronunciation.asText() + "\\";
+            }
+
+            List<String> definitions = new ArrayList<>();
+            node.path("shortdef").forEach(def -> definitions.add(": " + def.asText()));
+
+            var entry = new DictionaryEntry(word, node.path("fl").asText("--"), attributes, definitions);
+            (word.equalsIgnoreCase(term) ? exact : related).add(entry);
+        }
+
+        return exact.isEmpty() ? related : exact;
     }
 }
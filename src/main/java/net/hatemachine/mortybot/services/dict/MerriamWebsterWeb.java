@@ -19,7 +19,7 @@ package net.hatemachine.mortybot.services.dict;
 
 import com.uwyn.urlencoder.UrlEncoder;
 import net.hatemachine.mortybot.util.Validate;
-import org.jsoup.Jsoup;
+import net.hatemachine.mortybot.util.WebClient;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -27,6 +27,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -36,13 +38,18 @@ public class MerriamWebsterWeb implements Dictionary {
     private static final String DICTIONARY_URL = "https://www.merriam-webster.com/dictionary/";
     private static final String WOTD_URL = "https://www.merriam-webster.com/word-of-the-day";
 
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
     private static final Logger log = LoggerFactory.getLogger(MerriamWebsterWeb.class);
 
+    private final WebClient webClient = new WebClient("mw", TIMEOUT, WebClient.BROWSER_HEADERS);
+
     /**
      * Performs a Merriam-Webster dictionary lookup and returns any definitions found.
      *
      * @param term the term to lookup
      * @return a list of dictionary entries containing any definitions for the given term
+     * @throws UncheckedIOException if the page could not be fetched
      */
     public List<DictionaryEntry> lookup(String term) {
         String url = DICTIONARY_URL + UrlEncoder.encode(Validate.notNullOrBlank(term));
@@ -51,11 +58,7 @@ public class MerriamWebsterWeb implements Dictionary {
         log.info("Fetching definition for \"{}\"", term);
 
         try {
-            Document doc = Jsoup.connect(url)
-                    .header("Cache-Control", "max-age=0, no-cache, must-revalidate, proxy-revalidate")
-                    .header("Cache-Store", "no-store")
-                    .timeout(5000)
-                    .get();
+            Document doc = webClient.getDocument(url).orElseThrow(() -> new IOException("No response"));
 
             Element content = doc.select("div#left-content").first();
 
@@ -111,7 +114,8 @@ public class MerriamWebsterWeb implements Dictionary {
                 }
             }
         } catch (IOException e) {
-            log.error("Exception encountered fetching page: {}", url, e);
+            // the site answers unknown words with a 404, so this can't tell a miss from a failure
+            throw new UncheckedIOException("Exception encountered fetching page: " + url, e);
         }
 
         log.info("Found {} dictionary entries for \"{}\"", entries.size(), term);
@@ -129,11 +133,7 @@ public class MerriamWebsterWeb implements Dictionary {
         log.info("Fetching word of the day");
 
         try {
-            Document doc = Jsoup.connect(WOTD_URL)
-                    .header("Cache-Control", "max-age=0, no-cache, must-revalidate, proxy-revalidate")
-                    .header("Cache-Store", "no-store")
-                    .timeout(5000)
-                    .get();
+            Document doc = webClient.getDocument(WOTD_URL).orElseThrow(() -> new IOException("No response"));
 
             Element wordDiv = doc.select("div.word-and-pronunciation").first();
             Element typeAttrSpan = doc.select("div.word-attributes span.main-attr").first();
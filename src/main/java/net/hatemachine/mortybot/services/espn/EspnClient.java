@@ -17,17 +17,12 @@
  */
 package net.hatemachine.mortybot.services.espn;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import net.hatemachine.mortybot.services.espn.model.Scoreboard;
 import net.hatemachine.mortybot.util.WebClient;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class EspnClient {
 
@@ -49,43 +44,35 @@ public class EspnClient {
             "Accept", "application/json"
     };
 
-    private static final Logger log = LoggerFactory.getLogger(EspnClient.class);
-
     public WebClient webClient;
 
     public EspnClient() {
-        this.webClient = new WebClient(WEBCLIENT_TIMEOUT, WEBCLIENT_HEADERS);
+        this.webClient = new WebClient("espn", WEBCLIENT_TIMEOUT, WEBCLIENT_HEADERS);
     }
 
     public Optional<Scoreboard> scoreboard(SportsLeague league) {
-        Scoreboard scoreboard = null;
-
-        Optional<String> json = switch (league) {
-            case CBB -> webClient.get(CBB_SCOREBOARD_ENDPOINT);
-            case CFB -> webClient.get(CFB_SCOREBOARD_ENDPOINT);
-            case MLB -> webClient.get(MLB_SCOREBOARD_ENDPOINT);
-            case NBA -> webClient.get(NBA_SCOREBOARD_ENDPOINT);
-            case NFL -> webClient.get(NFL_SCOREBOARD_ENDPOINT);
-            case NHL -> webClient.get(NHL_SCOREBOARD_ENDPOINT);
-            case UFC -> webClient.get(UFC_SCOREBOARD_ENDPOINT);
-        };
+        return webClient.getJson(endpoint(league), Scoreboard.class);
+    }
 
-        if (json.isPresent()) {
-            try {
-                ObjectMapper mapper = new ObjectMapper();
-                mapper.registerModule(new JavaTimeModule());
-                scoreboard = mapper.readValue(json.get(), Scoreboard.class);
-            } catch (JsonMappingException e) {
-                log.error("Failed to map JSON to Scoreboard class: {}", e.getMessage(), e);
-            } catch (JsonProcessingException e) {
-                log.error("Error processing JSON: {}", e.getMessage(), e);
-            }
-        }
+    /**
+     * Fetches the scoreboard for a league asynchronously.
+     *
+     * @param league the league to fetch the scoreboard for
+     * @return a future that completes with the scoreboard, if one could be fetched
+     */
+    public CompletableFuture<Optional<Scoreboard>> scoreboardAsync(SportsLeague league) {
+        return webClient.getJsonAsync(endpoint(league), Scoreboard.class);
+    }
 
-        if (scoreboard != null) {
-            return Optional.of(scoreboard);
-        } else {
-            return Optional.empty();
-        }
+    private static String endpoint(SportsLeague league) {
+        return switch (league) {
+            case CBB -> CBB_SCOREBOARD_ENDPOINT;
+            case CFB -> CFB_SCOREBOARD_ENDPOINT;
+            case MLB -> MLB_SCOREBOARD_ENDPOINT;
+            case NBA -> NBA_SCOREBOARD_ENDPOINT;
+            case NFL -> NFL_SCOREBOARD_ENDPOINT;
+            case NHL -> NHL_SCOREBOARD_ENDPOINT;
+            case UFC -> UFC_SCOREBOARD_ENDPOINT;
+        };
     }
 }
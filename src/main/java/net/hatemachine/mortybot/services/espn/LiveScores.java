@@ -0,0 +1,239 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.espn;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.model.ScoreSubscription;
+import net.hatemachine.mortybot.repositories.ScoreSubscriptionRepository;
+import org.pircbotx.PircBotX;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes live score updates to channels that have subscribed to a league or a team. Each time a league's
+ * scoreboard is refreshed, it's compared with the previous snapshot and only the events that changed are sent on,
+ * as one line each, to the channels following them.<br/>
+ * <br/>
+ * Updates are batched per channel. A channel is sent at most live.scores.max.lines lines at a time and then has
+ * to wait live.scores.interval seconds before the next batch. Updates that arrive while a channel is waiting replace
+ * any earlier update for the same event, so a busy game doesn't build up a backlog.
+ */
+public class LiveScores {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveScores.class);
+
+    private static LiveScores liveScores;
+
+    private final ScoreSubscriptionRepository repository = new ScoreSubscriptionRepository();
+    private final Map<String, ChannelQueue> queues = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("live-scores").daemon().factory());
+
+    private volatile List<ScoreSubscription> subscriptions = List.of();
+    private volatile PircBotX bot;
+    private boolean loaded = false;
+
+    private LiveScores() {}
+
+    /**
+     * Retrieves a singleton instance of our live scores manager.
+     *
+     * @return the live scores manager
+     */
+    public static synchronized LiveScores getLiveScores() {
+        if (liveScores == null) {
+            liveScores = new LiveScores();
+        }
+        return liveScores;
+    }
+
+    /**
+     * Starts sending updates through a bot, loading the subscriptions and starting to poll the leagues they
+     * follow the first time it's called.
+     *
+     * @param bot the bot to send updates with
+     */
+    public synchronized void start(PircBotX bot) {
+        this.bot = bot;
+        if (!loaded) {
+            subscriptions = List.copyOf(repository.findAll());
+            ScoreboardService.getService().addListener(this::scoreboardRefreshed);
+            loaded = true;
+            log.info("Loaded {} live score subscriptions", subscriptions.size());
+        }
+        subscriptions.stream()
+                .map(ScoreSubscription::getLeague)
+                .distinct()
+                .forEach(ScoreboardService.getService()::watch);
+    }
+
+    /**
+     * Stops sending updates, dropping any that haven't been sent yet.
+     */
+    public void stop() {
+        bot = null;
+        queues.clear();
+    }
+
+    /**
+     * Subscribes a channel to updates for a league or team.
+     *
+     * @param channel the channel to send updates to
+     * @param league the league to follow
+     * @param team the abbreviation of the team to follow, or null for the whole league
+     * @return true if the subscription was added, false if the channel already had it
+     */
+    public synchronized boolean subscribe(String channel, SportsLeague league, String team) {
+        if (subscriptions.stream().anyMatch(s -> s.matches(channel, league, team))) {
+            return false;
+        }
+
+        ScoreSubscription subscription = repository.save(new ScoreSubscription(channel, league, team));
+        List<ScoreSubscription> updated = new ArrayList<>(subscriptions);
+        updated.add(subscription);
+        subscriptions = List.copyOf(updated);
+
+        if (bot != null) {
+            ScoreboardService.getService().watch(league);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a channel's subscription to a league or team.
+     *
+     * @param channel the channel
+     * @param league the league
+     * @param team the abbreviation of the team, or null for the whole league
+     * @return true if the subscription was removed, false if the channel didn't have it
+     */
+    public synchronized boolean unsubscribe(String channel, SportsLeague league, String team) {
+        Optional<ScoreSubscription> subscription = subscriptions.stream()
+                .filter(s -> s.matches(channel, league, team))
+                .findFirst();
+
+        if (subscription.isEmpty()) {
+            return false;
+        }
+
+        repository.delete(subscription.get());
+        List<ScoreSubscription> updated = new ArrayList<>(subscriptions);
+        updated.remove(subscription.get());
+        subscriptions = List.copyOf(updated);
+
+        if (subscriptions.stream().noneMatch(s -> s.getLeague() == league)) {
+            ScoreboardService.getService().unwatch(league);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the subscriptions for a channel, or for every channel.
+     *
+     * @param channel the channel, or null for every channel
+     * @return the matching subscriptions
+     */
+    public List<ScoreSubscription> getSubscriptions(String channel) {
+        return subscriptions.stream()
+                .filter(s -> channel == null || s.getChannel().equalsIgnoreCase(channel))
+                .toList();
+    }
+
+    private void scoreboardRefreshed(ScoreboardSnapshot previous, ScoreboardSnapshot current) {
+        List<ScoreSubscription> following = subscriptions.stream()
+                .filter(s -> s.getLeague() == current.league())
+                .toList();
+
+        if (following.isEmpty() || bot == null) {
+            return;
+        }
+
+        for (ScoreChange change : ScoreChange.diff(previous, current)) {
+            Set<String> teams = change.teams();
+            String line = null;
+            for (ScoreSubscription subscription : following) {
+                if (subscription.getTeam() == null || teams.contains(subscription.getTeam())) {
+                    if (line == null) {
+                        line = change.format();
+                    }
+                    queue(subscription.getChannel(), change.event().id(), line);
+                }
+            }
+        }
+    }
+
+    private void queue(String channel, long eventId, String line) {
+        ChannelQueue queue = queues.computeIfAbsent(channel.toLowerCase(Locale.ROOT), k -> new ChannelQueue(channel));
+        synchronized (queue) {
+            // a newer update for the same event replaces one that hasn't been sent yet
+            queue.pending.remove(eventId);
+            queue.pending.put(eventId, line);
+            if (!queue.scheduled) {
+                queue.scheduled = true;
+                long delay = Math.max(0, queue.nextSendAt - System.currentTimeMillis());
+                scheduler.schedule(() -> flush(queue), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flush(ChannelQueue queue) {
+        BotProperties props = BotProperties.getBotProperties();
+        int maxLines = props.getIntProperty("live.scores.max.lines", BotDefaults.LIVE_SCORES_MAX_LINES);
+        long interval = props.getIntProperty("live.scores.interval", BotDefaults.LIVE_SCORES_INTERVAL) * 1000L;
+        List<String> lines = new ArrayList<>();
+
+        synchronized (queue) {
+            Iterator<String> it = queue.pending.values().iterator();
+            while (it.hasNext() && lines.size() < maxLines) {
+                lines.add(it.next());
+                it.remove();
+            }
+            queue.nextSendAt = System.currentTimeMillis() + interval;
+            queue.scheduled = !queue.pending.isEmpty();
+            if (queue.scheduled) {
+                scheduler.schedule(() -> flush(queue), interval, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        PircBotX currentBot = bot;
+        if (currentBot == null || !currentBot.isConnected()) {
+            return;
+        }
+        for (String line : lines) {
+            currentBot.sendIRC().message(queue.channel, line);
+        }
+    }
+
+    private static class ChannelQueue {
+        private final String channel;
+        private final Map<Long, String> pending = new LinkedHashMap<>();
+        private long nextSendAt = 0;
+        private boolean scheduled = false;
+
+        private ChannelQueue(String channel) {
+            this.channel = channel;
+        }
+    }
+}
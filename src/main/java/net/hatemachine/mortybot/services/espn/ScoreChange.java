@@ -0,0 +1,175 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.espn;
+
+import net.hatemachine.mortybot.services.espn.model.Competition;
+import net.hatemachine.mortybot.services.espn.model.Competitor;
+import net.hatemachine.mortybot.services.espn.model.Event;
+
+import java.util.*;
+
+/**
+ * Something that changed in an event between two snapshots of a scoreboard.
+ *
+ * @param league the league the event is in
+ * @param event the event as it is now
+ * @param kind what changed
+ */
+public record ScoreChange(SportsLeague league, Event event, Kind kind) {
+
+    public enum Kind {
+        START("Started"),
+        SCORE("Score"),
+        PERIOD("Update"),
+        FINAL("Final");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Works out what changed between two snapshots of the same league's scoreboard. Each event that changed gives
+     * a single change describing the most significant thing that happened to it, so an event that went final with
+     * a late score is reported once, as final. An event that wasn't on the earlier scoreboard is reported as started
+     * if it's already in progress, or as final if it has already finished, so games that join the scoreboard's
+     * rolling window late aren't missed.
+     *
+     * @param previous the earlier snapshot
+     * @param current the later snapshot
+     * @return the changes, in the order the events appear on the scoreboard
+     */
+    public static List<ScoreChange> diff(ScoreboardSnapshot previous, ScoreboardSnapshot current) {
+        Map<Long, Event> before = new HashMap<>();
+        for (Event event : previous.events()) {
+            before.put(event.id(), event);
+        }
+
+        List<ScoreChange> changes = new ArrayList<>();
+        for (Event event : current.events()) {
+            Event old = before.get(event.id());
+            Kind kind = old == null ? appeared(event) : compare(old, event);
+            if (kind != null) {
+                changes.add(new ScoreChange(current.league(), event, kind));
+            }
+        }
+        return changes;
+    }
+
+    private static Kind appeared(Event event) {
+        String state = ScoreboardSnapshot.state(event);
+        if ("in".equals(state)) {
+            return Kind.START;
+        } else if ("post".equals(state)) {
+            return Kind.FINAL;
+        }
+        return null;
+    }
+
+    private static Kind compare(Event old, Event event) {
+        String oldState = ScoreboardSnapshot.state(old);
+        String state = ScoreboardSnapshot.state(event);
+
+        if ("post".equals(state) && !"post".equals(oldState)) {
+            return Kind.FINAL;
+        } else if ("in".equals(state) && "pre".equals(oldState)) {
+            return Kind.START;
+        } else if (!"in".equals(state)) {
+            return null;
+        } else if (!scores(old).equals(scores(event))) {
+            return Kind.SCORE;
+        } else if (period(old) != period(event)) {
+            return Kind.PERIOD;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the upper case abbreviations of the teams taking part in the event.
+     *
+     * @return the teams taking part
+     */
+    public Set<String> teams() {
+        Set<String> teams = new HashSet<>();
+        for (Competitor competitor : competitors(event)) {
+            if (competitor.team() != null && competitor.team().abbreviation() != null) {
+                teams.add(competitor.team().abbreviation().toUpperCase(Locale.ROOT));
+            }
+        }
+        return teams;
+    }
+
+    /**
+     * Formats the change as a line to send to a channel.
+     *
+     * @return the formatted change
+     */
+    public String format() {
+        List<Competitor> competitors = competitors(event);
+        Optional<Competitor> away = competitors.stream().filter(c -> "away".equals(c.homeAway())).findFirst();
+        Optional<Competitor> home = competitors.stream().filter(c -> "home".equals(c.homeAway())).findFirst();
+        String detail = detail(event);
+
+        String matchup;
+        if (away.isPresent() && home.isPresent() && away.get().team() != null && home.get().team() != null) {
+            matchup = String.format("%s %s @ %s %s",
+                    away.get().team().abbreviation(), away.get().score(),
+                    home.get().team().abbreviation(), home.get().score());
+        } else {
+            matchup = event.name();
+        }
+
+        return String.format("%s %s: %s%s", league, kind.getLabel(), matchup, detail == null ? "" : " | " + detail);
+    }
+
+    private static List<String> scores(Event event) {
+        List<String> scores = new ArrayList<>();
+        for (Competitor competitor : competitors(event)) {
+            scores.add(competitor.score());
+        }
+        return scores;
+    }
+
+    private static int period(Event event) {
+        Competition competition = competition(event);
+        return competition == null || competition.status() == null ? 0 : competition.status().period();
+    }
+
+    private static String detail(Event event) {
+        Competition competition = competition(event);
+        if (competition == null || competition.status() == null || competition.status().type() == null) {
+            return null;
+        }
+        return competition.status().type().detail();
+    }
+
+    private static List<Competitor> competitors(Event event) {
+        Competition competition = competition(event);
+        return competition == null || competition.competitors() == null ? List.of() : competition.competitors();
+    }
+
+    private static Competition competition(Event event) {
+        return event.competitions() == null || event.competitions().isEmpty() ? null : event.competitions().getFirst();
+    }
+}
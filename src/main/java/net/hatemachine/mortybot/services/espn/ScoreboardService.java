@@ -0,0 +1,259 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.espn;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.util.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps a snapshot of each league's scoreboard in memory and refreshes it in the background, so that scores can be
+ * shown without going to ESPN for every request. A league is polled from the first time anyone asks for it.<br/>
+ * <br/>
+ * How often a league is polled depends on what's happening in it. While games are in progress it's refreshed every
+ * espn.poll.live seconds. When nothing is live it's refreshed every espn.poll.idle seconds, or shortly after the
+ * next game starts if that's sooner. A league with nothing on its scoreboard is out of season and is only checked
+ * every espn.poll.offseason seconds.<br/>
+ * <br/>
+ * A league that isn't being watched for live scores stops being polled once nobody has asked for it in
+ * espn.poll.expiry seconds, and is fetched again the next time someone does.
+ */
+public class ScoreboardService {
+
+    private static final Duration FIRST_LOAD_TIMEOUT = Duration.ofSeconds(20);
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreboardService.class);
+
+    private static ScoreboardService service;
+
+    private final EspnClient espnClient = new EspnClient();
+    private final Map<SportsLeague, ScoreboardSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<SportsLeague, CompletableFuture<Optional<ScoreboardSnapshot>>> firstLoads = new ConcurrentHashMap<>();
+    private final Map<SportsLeague, Integer> failures = new ConcurrentHashMap<>();
+    private final Map<SportsLeague, Instant> lastRequested = new ConcurrentHashMap<>();
+    private final Set<SportsLeague> watched = ConcurrentHashMap.newKeySet();
+    private final List<BiConsumer<ScoreboardSnapshot, ScoreboardSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("espn-poller").daemon().factory());
+
+    private ScoreboardService() {}
+
+    /**
+     * Retrieves a singleton instance of our scoreboard service.
+     *
+     * @return the scoreboard service
+     */
+    public static synchronized ScoreboardService getService() {
+        if (service == null) {
+            service = new ScoreboardService();
+        }
+        return service;
+    }
+
+    /**
+     * Gets the latest snapshot of a league's scoreboard. The first time a league is asked for, this waits for it
+     * to be fetched and starts polling it in the background.
+     *
+     * @param league the league
+     * @return an optional containing the latest snapshot, empty if the scoreboard hasn't been fetched successfully
+     */
+    public Optional<ScoreboardSnapshot> getSnapshot(SportsLeague league) {
+        lastRequested.put(league, Instant.now());
+        ScoreboardSnapshot snapshot = snapshots.get(league);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+
+        CompletableFuture<Optional<ScoreboardSnapshot>> firstLoad = firstLoads.computeIfAbsent(league, this::refresh);
+        try {
+            return firstLoad.copy().get(FIRST_LOAD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to load {} scoreboard: {}", league, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the latest snapshots of several leagues' scoreboards at once. Any league that hasn't been asked for
+     * before is fetched, concurrently with the others, and starts being polled.
+     *
+     * @param leagues the leagues
+     * @param deadline the maximum amount of time to wait for leagues that haven't been fetched yet
+     * @return the snapshots in the same order as the leagues, empty for any that couldn't be fetched in time
+     */
+    public List<Optional<ScoreboardSnapshot>> getSnapshots(List<SportsLeague> leagues, Duration deadline) {
+        Instant now = Instant.now();
+        List<CompletableFuture<Optional<ScoreboardSnapshot>>> futures = leagues.stream()
+                .map(league -> {
+                    lastRequested.put(league, now);
+                    ScoreboardSnapshot snapshot = snapshots.get(league);
+                    // waiters get a copy so giving up on it doesn't cancel the fetch for everyone else
+                    return snapshot != null
+                            ? CompletableFuture.completedFuture(Optional.of(snapshot))
+                            : firstLoads.computeIfAbsent(league, this::refresh).copy();
+                })
+                .toList();
+        return Futures.awaitAll(futures, deadline, Optional.empty());
+    }
+
+    /**
+     * Starts polling a league in the background if it isn't being polled already, and keeps polling it until
+     * {@link #unwatch(SportsLeague)} is called.
+     *
+     * @param league the league
+     */
+    public void watch(SportsLeague league) {
+        watched.add(league);
+        firstLoads.computeIfAbsent(league, this::refresh);
+    }
+
+    /**
+     * Lets a league stop being polled once nobody has asked for it in a while.
+     *
+     * @param league the league
+     */
+    public void unwatch(SportsLeague league) {
+        watched.remove(league);
+    }
+
+    /**
+     * Adds a listener that is called with the previous and new snapshots each time a league's scoreboard is
+     * refreshed. Listeners are called from the thread that completed the fetch, so they should be quick.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(BiConsumer<ScoreboardSnapshot, ScoreboardSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Fetches a league's scoreboard, stores the snapshot and schedules the next refresh.
+     */
+    private CompletableFuture<Optional<ScoreboardSnapshot>> refresh(SportsLeague league) {
+        return espnClient.scoreboardAsync(league)
+                .handle((scoreboard, e) -> {
+                    Optional<ScoreboardSnapshot> snapshot = Optional.empty();
+                    if (e != null) {
+                        log.warn("Error fetching {} scoreboard: {}", league, e.getMessage());
+                    } else {
+                        // an unexpected payload counts as a failed fetch so the league keeps being polled
+                        try {
+                            snapshot = scoreboard.map(s -> ScoreboardSnapshot.of(league, s, Instant.now()));
+                        } catch (RuntimeException ex) {
+                            log.warn("Error reading {} scoreboard", league, ex);
+                        }
+                    }
+                    snapshot.ifPresent(s -> {
+                        ScoreboardSnapshot previous = snapshots.put(league, s);
+                        if (previous != null) {
+                            notifyListeners(previous, s);
+                        }
+                    });
+                    scheduleRefresh(league, snapshot.isPresent());
+                    return snapshot;
+                });
+    }
+
+    private void notifyListeners(ScoreboardSnapshot previous, ScoreboardSnapshot current) {
+        for (BiConsumer<ScoreboardSnapshot, ScoreboardSnapshot> listener : listeners) {
+            try {
+                listener.accept(previous, current);
+            } catch (RuntimeException e) {
+                log.error("Error notifying scoreboard listener", e);
+            }
+        }
+    }
+
+    private void scheduleRefresh(SportsLeague league, boolean succeeded) {
+        if (isExpired(league)) {
+            log.info("Nobody has asked for the {} scoreboard lately, no longer polling it", league);
+            firstLoads.remove(league);
+            snapshots.remove(league);
+            failures.remove(league);
+            lastRequested.remove(league);
+            return;
+        }
+
+        Duration delay = succeeded ? nextRefresh(snapshots.get(league)) : retryDelay(league);
+        if (succeeded) {
+            failures.remove(league);
+        }
+        log.debug("Refreshing {} scoreboard in {}s", league, delay.toSeconds());
+        scheduler.schedule(() -> refresh(league), delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks if a league is no longer watched and hasn't been asked for within espn.poll.expiry seconds.
+     */
+    private boolean isExpired(SportsLeague league) {
+        if (watched.contains(league)) {
+            return false;
+        }
+        int expiry = BotProperties.getBotProperties().getIntProperty("espn.poll.expiry", BotDefaults.ESPN_POLL_EXPIRY);
+        Instant requested = lastRequested.get(league);
+        return requested == null || requested.plusSeconds(expiry).isBefore(Instant.now());
+    }
+
+    /**
+     * Works out when a league should be refreshed next based on what's on its scoreboard.
+     */
+    private Duration nextRefresh(ScoreboardSnapshot snapshot) {
+        BotProperties props = BotProperties.getBotProperties();
+        Duration live      = Duration.ofSeconds(props.getIntProperty("espn.poll.live",      BotDefaults.ESPN_POLL_LIVE));
+        Duration idle      = Duration.ofSeconds(props.getIntProperty("espn.poll.idle",      BotDefaults.ESPN_POLL_IDLE));
+        Duration offseason = Duration.ofSeconds(props.getIntProperty("espn.poll.offseason", BotDefaults.ESPN_POLL_OFFSEASON));
+
+        if (snapshot.events().isEmpty()) {
+            return offseason;
+        } else if (snapshot.live()) {
+            return live;
+        } else if (snapshot.nextStart().isPresent()) {
+            Duration untilStart = Duration.between(ZonedDateTime.now(), snapshot.nextStart().get());
+            if (untilStart.compareTo(idle) < 0) {
+                return untilStart.compareTo(live) < 0 ? live : untilStart;
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * Backs off exponentially from the live refresh interval, up to the idle interval, while fetches keep failing.
+     */
+    private Duration retryDelay(SportsLeague league) {
+        BotProperties props = BotProperties.getBotProperties();
+        Duration live = Duration.ofSeconds(props.getIntProperty("espn.poll.live", BotDefaults.ESPN_POLL_LIVE));
+        Duration idle = Duration.ofSeconds(props.getIntProperty("espn.poll.idle", BotDefaults.ESPN_POLL_IDLE));
+        int attempts = failures.merge(league, 1, Integer::sum);
+        Duration delay = live.multipliedBy(1L << Math.min(attempts - 1, 16));
+        return delay.compareTo(idle) > 0 ? idle : delay;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.espn;
+
+import net.hatemachine.mortybot.services.espn.model.Competition;
+import net.hatemachine.mortybot.services.espn.model.Competitor;
+import net.hatemachine.mortybot.services.espn.model.Event;
+import net.hatemachine.mortybot.services.espn.model.Scoreboard;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+/**
+ * An immutable copy of a league's scoreboard as it was when it was fetched, indexed up front so that commands can
+ * answer from it without scanning or copying anything.
+ *
+ * @param league the league the scoreboard is for
+ * @param events all the events on the scoreboard
+ * @param recentEvents the events ESPN considers recent (in progress or just finished)
+ * @param eventsByTeam events keyed by the upper case abbreviation of each team taking part
+ * @param teams an index of the names of the teams taking part
+ * @param live true if any event is in progress
+ * @param nextStart the start time of the next event that hasn't started yet, if there is one
+ * @param fetchedAt when the scoreboard was fetched
+ */
+public record ScoreboardSnapshot(SportsLeague league,
+                                 List<Event> events,
+                                 List<Event> recentEvents,
+                                 Map<String, List<Event>> eventsByTeam,
+                                 TeamAliasIndex teams,
+                                 boolean live,
+                                 Optional<ZonedDateTime> nextStart,
+                                 Instant fetchedAt) {
+
+    /**
+     * Builds a snapshot from a scoreboard.
+     *
+     * @param league the league the scoreboard is for
+     * @param scoreboard the scoreboard
+     * @param fetchedAt when the scoreboard was fetched
+     * @return the snapshot
+     */
+    public static ScoreboardSnapshot of(SportsLeague league, Scoreboard scoreboard, Instant fetchedAt) {
+        List<Event> events = scoreboard.events() == null ? List.of() : List.copyOf(scoreboard.events());
+        List<Event> recent = new ArrayList<>();
+        Map<String, List<Event>> byTeam = new HashMap<>();
+        boolean live = false;
+        ZonedDateTime nextStart = null;
+
+        for (Event event : events) {
+            Competition competition = competition(event);
+            if (competition == null) {
+                continue;
+            }
+
+            if (competition.recent()) {
+                recent.add(event);
+            }
+
+            String state = state(event);
+            if ("in".equals(state)) {
+                live = true;
+            } else if ("pre".equals(state) && event.date() != null
+                    && (nextStart == null || event.date().isBefore(nextStart))) {
+                nextStart = event.date();
+            }
+
+            if (competition.competitors() != null) {
+                for (Competitor competitor : competition.competitors()) {
+                    if (competitor.team() != null && competitor.team().abbreviation() != null) {
+                        String key = competitor.team().abbreviation().toUpperCase(Locale.ROOT);
+                        byTeam.computeIfAbsent(key, k -> new ArrayList<>()).add(event);
+                    }
+                }
+            }
+        }
+
+        Map<String, List<Event>> index = new HashMap<>(byTeam.size());
+        byTeam.forEach((team, teamEvents) -> index.put(team, List.copyOf(teamEvents)));
+
+        return new ScoreboardSnapshot(league, events, List.copyOf(recent), Map.copyOf(index),
+                TeamAliasIndex.build(events), live, Optional.ofNullable(nextStart), fetchedAt);
+    }
+
+    /**
+     * Finds the events a team is taking part in.
+     *
+     * @param abbreviation the team's abbreviation, in any case
+     * @return the team's events
+     */
+    public List<Event> eventsForTeam(String abbreviation) {
+        return eventsByTeam.getOrDefault(abbreviation.toUpperCase(Locale.ROOT), List.of());
+    }
+
+    /**
+     * Finds the events taking part between any of the teams a list of arguments could refer to, in the order they
+     * appear on the scoreboard.
+     *
+     * @param args the arguments naming teams, see {@link TeamAliasIndex#resolve(List)}
+     * @return the matching events
+     */
+    public List<Event> findEvents(List<String> args) {
+        Set<String> matched = teams.resolve(args);
+        if (matched.isEmpty()) {
+            return List.of();
+        } else if (matched.size() == 1) {
+            return eventsForTeam(matched.iterator().next());
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (String team : matched) {
+            for (Event event : eventsForTeam(team)) {
+                ids.add(event.id());
+            }
+        }
+        return events.stream().filter(event -> ids.contains(event.id())).toList();
+    }
+
+    /**
+     * Gets the state of an event, which is "pre" before it starts, "in" while it's in progress and "post" after.
+     *
+     * @param event the event
+     * @return the event's state, or null if it isn't known
+     */
+    public static String state(Event event) {
+        Competition competition = competition(event);
+        if (competition != null && competition.status() != null && competition.status().type() != null) {
+            return competition.status().type().state();
+        }
+        if (event.status() != null && event.status().type() != null) {
+            return event.status().type().state();
+        }
+        return null;
+    }
+
+    private static Competition competition(Event event) {
+        return event.competitions() == null || event.competitions().isEmpty() ? null : event.competitions().getFirst();
+    }
+}
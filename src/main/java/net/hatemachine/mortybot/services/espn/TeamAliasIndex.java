@@ -0,0 +1,145 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.espn;
+
+import net.hatemachine.mortybot.services.espn.model.Competitor;
+import net.hatemachine.mortybot.services.espn.model.Event;
+import net.hatemachine.mortybot.services.espn.model.Team;
+
+import java.util.*;
+
+/**
+ * Resolves the names people use for teams to team abbreviations. Every team on a scoreboard is indexed under its
+ * abbreviation, nickname, location, full name and short name, normalized to lower case letters and digits so that
+ * "N.Y. Jets", "ny jets" and "NYJets" all look the same. A name that isn't an exact match is tried as a prefix,
+ * so "yank" finds the Yankees.
+ */
+public class TeamAliasIndex {
+
+    /** Shortest query that will be matched as a prefix, to stop one or two letters matching half the league */
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    private static final TeamAliasIndex EMPTY = new TeamAliasIndex(new TreeMap<>());
+
+    private final NavigableMap<String, Set<String>> aliases;
+
+    private TeamAliasIndex(NavigableMap<String, Set<String>> aliases) {
+        this.aliases = aliases;
+    }
+
+    /**
+     * Builds an index of the teams taking part in some events.
+     *
+     * @param events the events
+     * @return the index
+     */
+    public static TeamAliasIndex build(List<Event> events) {
+        NavigableMap<String, Set<String>> aliases = new TreeMap<>();
+
+        for (Event event : events) {
+            if (event.competitions() == null || event.competitions().isEmpty()
+                    || event.competitions().getFirst().competitors() == null) {
+                continue;
+            }
+            for (Competitor competitor : event.competitions().getFirst().competitors()) {
+                Team team = competitor.team();
+                if (team == null || team.abbreviation() == null) {
+                    continue;
+                }
+                String abbreviation = team.abbreviation().toUpperCase(Locale.ROOT);
+                for (String name : new String[] { team.abbreviation(), team.name(), team.location(),
+                        team.displayName(), team.shortDisplayName() }) {
+                    String key = normalize(name);
+                    if (!key.isEmpty()) {
+                        aliases.computeIfAbsent(key, k -> new TreeSet<>()).add(abbreviation);
+                    }
+                }
+            }
+        }
+
+        if (aliases.isEmpty()) {
+            return EMPTY;
+        }
+
+        NavigableMap<String, Set<String>> frozen = new TreeMap<>();
+        aliases.forEach((key, teams) -> frozen.put(key, Set.copyOf(teams)));
+        return new TeamAliasIndex(Collections.unmodifiableNavigableMap(frozen));
+    }
+
+    /**
+     * Finds the abbreviations of the teams a name could refer to.
+     *
+     * @param name a team's name, nickname, location or abbreviation
+     * @return the abbreviations of the matching teams, empty if nothing matched
+     */
+    public Set<String> resolve(String name) {
+        String key = normalize(name);
+        if (key.isEmpty()) {
+            return Set.of();
+        }
+
+        Set<String> exact = aliases.get(key);
+        if (exact != null) {
+            return exact;
+        }
+
+        if (key.length() < MIN_PREFIX_LENGTH) {
+            return Set.of();
+        }
+
+        Set<String> matches = new TreeSet<>();
+        for (Set<String> teams : aliases.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            matches.addAll(teams);
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the abbreviations of the teams named in a list of arguments. The arguments are first tried together
+     * as one name (e.g. "new york"), then each one on its own (e.g. "NYJ BUF").
+     *
+     * @param args the arguments naming teams
+     * @return the abbreviations of the matching teams, empty if nothing matched
+     */
+    public Set<String> resolve(List<String> args) {
+        Set<String> teams = resolve(String.join(" ", args));
+        if (!teams.isEmpty() || args.size() < 2) {
+            return teams;
+        }
+
+        Set<String> matches = new TreeSet<>();
+        for (String arg : args) {
+            matches.addAll(resolve(arg));
+        }
+        return matches;
+    }
+
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+}
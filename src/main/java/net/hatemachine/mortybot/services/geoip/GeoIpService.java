@@ -0,0 +1,199 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.geoip;
+
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.WebServiceClient;
+import com.maxmind.geoip2.exception.AddressNotFoundException;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.model.CityResponse;
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeoIP lookups against a local GeoLite2 City database, falling back to the MaxMind web service when there is
+ * no local database. The database file is memory-mapped and shared by all lookups. It is checked periodically,
+ * and when it has been replaced (e.g. by geoipupdate) the new file is opened and swapped in without blocking
+ * lookups. Recent results are kept in a small LRU cache.
+ *
+ * <a href="https://dev.maxmind.com/geoip/geolite2-free-geolocation-data">https://dev.maxmind.com/geoip/geolite2-free-geolocation-data</a>
+ */
+public class GeoIpService {
+
+    private static final String WEB_SERVICE_HOST = "geolite.info";
+
+    /** How long to wait before closing a database that has been replaced, so lookups using it can finish */
+    private static final long CLOSE_DELAY_SECONDS = 60;
+
+    private static final Logger log = LoggerFactory.getLogger(GeoIpService.class);
+
+    private static GeoIpService service;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("geoip-reloader").daemon().factory());
+
+    private final Path databaseFile;
+    private final boolean fallbackEnabled;
+    private final Map<InetAddress, Optional<CityResponse>> results;
+    private volatile Database database;
+    private WebServiceClient webServiceClient;
+
+    private GeoIpService(Path databaseFile, int cacheSize, boolean fallbackEnabled) {
+        this.databaseFile = databaseFile;
+        this.fallbackEnabled = fallbackEnabled;
+        this.results = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, Optional<CityResponse>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Retrieves a singleton instance of our GeoIP service, opening the local database if there is one.
+     *
+     * @return the GeoIP service
+     */
+    public static synchronized GeoIpService getService() {
+        if (service == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            Path file = props.getBotConfigDir().resolve(props.getStringProperty("geoip.database", BotDefaults.GEOIP_DATABASE));
+            int cacheSize = props.getIntProperty("geoip.cache.size", BotDefaults.GEOIP_CACHE_SIZE);
+            int reloadInterval = props.getIntProperty("geoip.reload.interval", BotDefaults.GEOIP_RELOAD_INTERVAL);
+            boolean fallback = props.getBooleanProperty("geoip.webservice.fallback", BotDefaults.GEOIP_WEBSERVICE_FALLBACK);
+
+            service = new GeoIpService(file, cacheSize, fallback);
+            service.reload();
+            if (reloadInterval > 0) {
+                service.scheduler.scheduleWithFixedDelay(service::reload, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Looks up the location of an IP address.
+     *
+     * @param address the address to look up
+     * @return the location of the address, or empty if the address is not in the database
+     * @throws IOException if the database or web service could not be read
+     * @throws GeoIp2Exception if the web service returned an error
+     * @throws IllegalStateException if there is no local database and the web service is not configured
+     */
+    public Optional<CityResponse> lookup(InetAddress address) throws IOException, GeoIp2Exception {
+        Optional<CityResponse> result = results.get(address);
+        if (result != null) {
+            return result;
+        }
+
+        Database db = database;
+        if (db != null) {
+            result = db.reader().tryCity(address);
+        } else if (fallbackEnabled) {
+            try {
+                result = Optional.of(getWebServiceClient().city(address));
+            } catch (AddressNotFoundException e) {
+                result = Optional.empty();
+            }
+        } else {
+            throw new IllegalStateException("No GeoIP database found: " + databaseFile);
+        }
+
+        results.put(address, result);
+        return result;
+    }
+
+    /**
+     * Opens the database file if it is new or has changed since it was last opened, and swaps it in for the
+     * current one. The replaced database is closed after a delay.
+     */
+    private void reload() {
+        try {
+            if (!Files.isRegularFile(databaseFile)) {
+                if (database == null) {
+                    log.info("No GeoIP database at {}, {}", databaseFile,
+                            fallbackEnabled ? "using the web service" : "GEOIP lookups are disabled");
+                }
+                return;
+            }
+
+            FileTime modified = Files.getLastModifiedTime(databaseFile);
+            long size = Files.size(databaseFile);
+            Database current = database;
+            if (current != null && current.modified.equals(modified) && current.size == size) {
+                return;
+            }
+
+            DatabaseReader reader = new DatabaseReader.Builder(databaseFile.toFile())
+                    .fileMode(Reader.FileMode.MEMORY_MAPPED)
+                    .withCache(new CHMCache())
+                    .build();
+            database = new Database(reader, modified, size);
+            results.clear();
+            log.info("Loaded GeoIP database {} (built {})", databaseFile, reader.getMetadata().getBuildDate());
+
+            if (current != null) {
+                scheduler.schedule(() -> close(current), CLOSE_DELAY_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to load GeoIP database {}", databaseFile, e);
+        }
+    }
+
+    private static void close(Database db) {
+        try {
+            db.reader().close();
+        } catch (IOException e) {
+            log.warn("Unable to close GeoIP database", e);
+        }
+    }
+
+    private synchronized WebServiceClient getWebServiceClient() {
+        if (webServiceClient == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            String accountId = props.getStringProperty("maxmind.account.id", System.getenv("MAXMIND_ACCOUNT_ID"));
+            String licenseKey = props.getStringProperty("maxmind.license.key", System.getenv("MAXMIND_LICENSE_KEY"));
+            if (accountId == null || licenseKey == null) {
+                throw new IllegalStateException("MaxMind account ID and license key are not configured");
+            }
+            webServiceClient = new WebServiceClient.Builder(Integer.parseInt(accountId.trim()), licenseKey)
+                    .host(WEB_SERVICE_HOST)
+                    .build();
+        }
+        return webServiceClient;
+    }
+
+    private record Database(DatabaseReader reader, FileTime modified, long size) {}
+}
@@ -17,35 +17,54 @@
  */
 package net.hatemachine.mortybot.services.imdb;
 
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.uwyn.urlencoder.UrlEncoder;
-import net.hatemachine.mortybot.MortyBot;
 import net.hatemachine.mortybot.util.Validate;
-import org.jsoup.Jsoup;
+import net.hatemachine.mortybot.util.WebClient;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class IMDBHelper {
 
     public static final String BASE_URL = "https://www.imdb.com";
     public static final String SEARCH_URL = BASE_URL + "/find/?q=";
 
+    private static final Duration TIMEOUT = Duration.ofSeconds(12);
+
+    // selectors are parsed once here rather than on every page
+    private static final Evaluator FIND_SECTION = QueryParser.parse("div.findSection");
+    private static final Evaluator SECTION_HEADER_LINK = QueryParser.parse("h3.findSectionHeader > a");
+    private static final Evaluator RESULT_TEXT = QueryParser.parse("td.result_text");
+    private static final Evaluator LINK = QueryParser.parse("a");
+    private static final Evaluator NAME_OVERVIEW = QueryParser.parse("div#name-overview-widget");
+    private static final Evaluator NAME_HEADING = QueryParser.parse("td > h1");
+    private static final Evaluator BIO_TEXT = QueryParser.parse("div.name-trivia-bio-text");
+    private static final Evaluator BIO_INLINE = QueryParser.parse("div.inline");
+    private static final Evaluator LD_JSON = QueryParser.parse("script[type=\"application/ld+json\"]");
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
     private static final Logger log = LoggerFactory.getLogger(IMDBHelper.class);
 
+    private final WebClient webClient = new WebClient("imdb", TIMEOUT, WebClient.BROWSER_HEADERS);
+
     /**
      * Searches IMDB for matching persons and titles.
      *
@@ -53,28 +72,36 @@ public class IMDBHelper {
      * @return list of the results
      */
     public List<SearchResult> search(String query) {
+        return search(query, result -> {});
+    }
+
+    /**
+     * Searches IMDB for matching persons and titles, handing each result to a callback as soon as it has been
+     * read from the page so that work on the first results can start while the rest are still being read.
+     * The page itself is parsed in full before the first result is read. Handing out results while the HTML is
+     * still being parsed would need jsoup's StreamParser, which arrived in 1.18 (we're on 1.17.2).
+     *
+     * @param query the search string
+     * @param onResult called with each result in the order they appear on the page
+     * @return list of the results
+     */
+    public List<SearchResult> search(String query, Consumer<SearchResult> onResult) {
         Validate.notNullOrBlank(query);
         String searchUrl = SEARCH_URL + UrlEncoder.encode(query);
         List<SearchResult> results = new ArrayList<>();
-        Document searchResultPage = null;
 
         log.info("Searching IMDB for \"{}\"", query);
         log.debug("searchUrl: {}", searchUrl);
 
         // attempt to connect to imdb.com and fetch the search results page
-        try {
-            searchResultPage = Jsoup.connect(searchUrl).get();
-        } catch (IOException e) {
-            log.error("Failed to fetch results page: {}", e.getMessage());
-            e.printStackTrace();
-        }
+        Document searchResultPage = webClient.getDocument(searchUrl).orElse(null);
 
         if (searchResultPage != null) {
-            Elements findSectionDivs = searchResultPage.select("div.findSection");
+            Elements findSectionDivs = searchResultPage.select(FIND_SECTION);
 
             for (Element div : findSectionDivs) {
                 // find the section type
-                Element aTag = div.select("h3.findSectionHeader > a").first();
+                Element aTag = div.selectFirst(SECTION_HEADER_LINK);
                 SearchResult.Type sectionType = null;
                 if (aTag != null) {
                     try {
@@ -86,11 +113,11 @@ public class IMDBHelper {
 
                 // get the results for this section and add them to our list
                 if (sectionType != null) {
-                    Elements tds = div.select("td.result_text");
+                    Elements tds = div.select(RESULT_TEXT);
 
                     for (Element td : tds) {
                         String name = td.text();
-                        String href = td.select("a").attr("href");
+                        String href = td.select(LINK).attr("href");
 
                         // strip the extra referrer params
                         int slashCount = 0;
@@ -103,7 +130,9 @@ public class IMDBHelper {
                         }
 
                         String url = BASE_URL + href.substring(0, lastSlash + 1);
-                        results.add(new SearchResult(name, url, sectionType));
+                        SearchResult result = new SearchResult(name, url, sectionType);
+                        results.add(result);
+                        onResult.accept(result);
                     }
                 }
             }
@@ -122,34 +151,24 @@ public class IMDBHelper {
     public Optional<Person> fetchPerson(String url) {
         Validate.notNullOrBlank(url);
         Optional<Person> person = Optional.empty();
-        Document personDetailsPage = null;
 
         log.info("Fetching person details for {}", url);
 
-        try {
-            personDetailsPage = Jsoup.connect(url)
-                    .ignoreContentType(true)
-                    .userAgent("MortyBot/" + MortyBot.VERSION)
-                    .timeout(12000)
-                    .followRedirects(true)
-                    .get();
-        } catch (IOException e) {
-            log.error("Failed to fetch person details page: {}", e.getMessage(), e);
-        }
+        Document personDetailsPage = webClient.getDocument(url).orElse(null);
 
         if (personDetailsPage != null) {
-            Element divNameOverview = personDetailsPage.select("div#name-overview-widget").first();
+            Element divNameOverview = personDetailsPage.selectFirst(NAME_OVERVIEW);
 
             if (divNameOverview != null) {
-                Element h1 = divNameOverview.select("td > h1").first();
+                Element h1 = divNameOverview.selectFirst(NAME_HEADING);
 
                 if (h1 != null) {
                     String name = h1.text();
                     var p = new Person(name, url);
-                    Element divBioText = personDetailsPage.select("div.name-trivia-bio-text").first();
+                    Element divBioText = personDetailsPage.selectFirst(BIO_TEXT);
 
                     if (divBioText != null) {
-                        Element divInline = divBioText.select("div.inline").first();
+                        Element divInline = divBioText.selectFirst(BIO_INLINE);
 
                         if (divInline != null) {
                             p.setBio(divInline.ownText());
@@ -173,50 +192,57 @@ public class IMDBHelper {
     public Optional<Title> fetchTitle(String url) {
         Validate.notNullOrBlank(url);
         Optional<Title> title = Optional.empty();
-        Document titleDetailsPage = null;
 
         log.info("Fetching title details for {}", url);
 
-        try {
-            titleDetailsPage = Jsoup.connect(url).get();
-        } catch (IOException e) {
-            log.error("Exception encountered fetching title details", e);
-        }
+        Document titleDetailsPage = webClient.getDocument(url).orElse(null);
 
         if (titleDetailsPage != null) {
-            Element scriptTag = titleDetailsPage.select("script[type=\"application/ld+json\"]").first();
+            Element scriptTag = titleDetailsPage.selectFirst(LD_JSON);
 
             if (scriptTag != null) {
-                String json = scriptTag.data();
-                Title t = createTitleFromJson(url, json);
-                title = Optional.of(t);
+                try {
+                    title = Optional.of(createTitleFromJson(url, scriptTag.data()));
+                } catch (JsonProcessingException e) {
+                    log.error("Unable to parse title details for {}", url, e);
+                }
             }
         }
 
         return title;
     }
 
-    private Title createTitleFromJson(String url, String json) {
-        Configuration conf = Configuration.defaultConfiguration();
-        DocumentContext parsedJson = JsonPath.using(conf).parse(json);
-        String name = parsedJson.read("$.name");
-        Title title = new Title(name, url);
+    private Title createTitleFromJson(String url, String json) throws JsonProcessingException {
+        // the whole document is parsed once and every field is read from the same tree
+        JsonNode root = JSON_MAPPER.readTree(json);
+        Title title = new Title(root.path("name").asText(null), url);
 
-        try {
-            title.setDescription(parsedJson.read("$.description"));
-        } catch (PathNotFoundException e) {
+        JsonNode description = root.path("description");
+        if (description.isTextual()) {
+            title.setDescription(description.asText());
+        } else {
             log.warn("No description found");
         }
 
-        try {
-            title.setRating(Double.parseDouble(parsedJson.read("$.aggregateRating.ratingValue").toString()));
-        } catch (PathNotFoundException e) {
+        JsonNode rating = root.path("aggregateRating").path("ratingValue");
+        if (rating.isNumber() || rating.isTextual()) {
+            try {
+                title.setRating(Double.parseDouble(rating.asText()));
+            } catch (NumberFormatException e) {
+                log.warn("Invalid rating: {}", rating.asText());
+            }
+        } else {
             log.warn("No rating found");
         }
 
-        try {
-            title.setPublishDate(LocalDate.parse(parsedJson.read("$.datePublished"), DateTimeFormatter.ISO_LOCAL_DATE));
-        } catch (PathNotFoundException e) {
+        JsonNode datePublished = root.path("datePublished");
+        if (datePublished.isTextual()) {
+            try {
+                title.setPublishDate(LocalDate.parse(datePublished.asText(), DateTimeFormatter.ISO_LOCAL_DATE));
+            } catch (DateTimeParseException e) {
+                log.warn("Invalid publish date: {}", datePublished.asText());
+            }
+        } else {
             log.warn("No publish date found");
         }
 
@@ -0,0 +1,201 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.imdb;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.util.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Searches IMDB and fetches the details of titles and persons, caching both.<br/>
+ * <br/>
+ * While a search page is being read, the details for the first imdb.prefetch results are fetched in parallel as
+ * soon as each result is found, so by the time the search returns the details for the top result are usually on
+ * their way. Parsed titles and persons are kept in a bounded cache keyed by IMDB id, and search results are cached
+ * by query, both for imdb.cache.ttl seconds. A title or person that is already being fetched is never fetched twice.
+ */
+public class IMDBService {
+
+    private static final Logger log = LoggerFactory.getLogger(IMDBService.class);
+
+    private static IMDBService service;
+
+    private final IMDBHelper helper = new IMDBHelper();
+    private final Map<String, Entry<List<SearchResult>>> searches;
+    private final DetailCache<Title> titles;
+    private final DetailCache<Person> persons;
+    private final int prefetch;
+    private final Duration ttl;
+
+    private IMDBService(int cacheSize, Duration ttl, int prefetch) {
+        this.searches = Collections.synchronizedMap(lruMap(cacheSize));
+        this.titles = new DetailCache<>(cacheSize, ttl);
+        this.persons = new DetailCache<>(cacheSize, ttl);
+        this.prefetch = prefetch;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Retrieves a singleton instance of our IMDB service.
+     *
+     * @return the IMDB service
+     */
+    public static synchronized IMDBService getService() {
+        if (service == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            int cacheSize = props.getIntProperty("imdb.cache.size", BotDefaults.IMDB_CACHE_SIZE);
+            int ttl = props.getIntProperty("imdb.cache.ttl", BotDefaults.IMDB_CACHE_TTL);
+            int prefetch = props.getIntProperty("imdb.prefetch", BotDefaults.IMDB_PREFETCH);
+            service = new IMDBService(cacheSize, Duration.ofSeconds(ttl), prefetch);
+        }
+        return service;
+    }
+
+    /**
+     * Searches IMDB for matching persons and titles, starting to fetch the details of the first few results
+     * while the rest of the search page is read.
+     *
+     * @param query the search string
+     * @return list of the results
+     */
+    public List<SearchResult> search(String query) {
+        return search(query, true);
+    }
+
+    /**
+     * Searches IMDB for matching persons and titles.
+     *
+     * @param query the search string
+     * @param prefetchDetails whether to start fetching the details of the first few results, which is only worth
+     *                        doing when one of them is about to be shown
+     * @return list of the results
+     */
+    public List<SearchResult> search(String query, boolean prefetchDetails) {
+        String key = query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        Entry<List<SearchResult>> cached = searches.get(key);
+        if (cached != null && cached.isFresh(ttl)) {
+            log.debug("Using cached search results for \"{}\"", query);
+            return cached.value();
+        }
+
+        AtomicInteger found = new AtomicInteger();
+        List<SearchResult> results = helper.search(query, result -> {
+            if (prefetchDetails && found.getAndIncrement() < prefetch) {
+                getDetails(result);
+            }
+        });
+
+        if (!results.isEmpty()) {
+            searches.put(key, new Entry<>(List.copyOf(results), Instant.now()));
+        }
+        return results;
+    }
+
+    /**
+     * Gets the details for a title.
+     *
+     * @param result the search result for the title
+     * @return a future containing the title, or empty if it could not be fetched
+     */
+    public CompletableFuture<Optional<Title>> getTitle(SearchResult result) {
+        return titles.get(result.getId(), () -> helper.fetchTitle(result.getUrl()));
+    }
+
+    /**
+     * Gets the details for a person.
+     *
+     * @param result the search result for the person
+     * @return a future containing the person, or empty if they could not be fetched
+     */
+    public CompletableFuture<Optional<Person>> getPerson(SearchResult result) {
+        return persons.get(result.getId(), () -> helper.fetchPerson(result.getUrl()));
+    }
+
+    private void getDetails(SearchResult result) {
+        switch (result.getType()) {
+            case TT -> getTitle(result);
+            case NM -> getPerson(result);
+        }
+    }
+
+    private static <V> Map<String, V> lruMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private record Entry<T>(T value, Instant storedAt) {
+        boolean isFresh(Duration ttl) {
+            return storedAt.plus(ttl).isAfter(Instant.now());
+        }
+    }
+
+    /**
+     * Bounded cache of parsed entities keyed by IMDB id, which also keeps track of the fetches in flight.
+     */
+    private static class DetailCache<T> {
+        private final Map<String, Entry<T>> entries;
+        private final Map<String, CompletableFuture<Optional<T>>> inFlight = new ConcurrentHashMap<>();
+        private final Duration ttl;
+
+        DetailCache(int maxSize, Duration ttl) {
+            this.entries = Collections.synchronizedMap(lruMap(maxSize));
+            this.ttl = ttl;
+        }
+
+        CompletableFuture<Optional<T>> get(String id, Supplier<Optional<T>> loader) {
+            Entry<T> cached = entries.get(id);
+            if (cached != null && cached.isFresh(ttl)) {
+                return CompletableFuture.completedFuture(Optional.of(cached.value()));
+            }
+
+            CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+            CompletableFuture<Optional<T>> existing = inFlight.putIfAbsent(id, future);
+            if (existing != null) {
+                return existing;
+            }
+
+            Futures.supplyAsync(loader).whenComplete((result, e) -> {
+                if (e == null) {
+                    result.ifPresent(value -> entries.put(id, new Entry<>(value, Instant.now())));
+                }
+                inFlight.remove(id, future);
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(result);
+                }
+            });
+
+            return future;
+        }
+    }
+}
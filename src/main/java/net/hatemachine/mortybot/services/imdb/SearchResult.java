@@ -48,6 +48,16 @@ public class SearchResult {
         return type;
     }
 
+    /**
+     * Gets the IMDB id of the result, taken from the last part of its url, e.g. "tt0095016".
+     *
+     * @return the id of the title or person
+     */
+    public String getId() {
+        int end = url.endsWith("/") ? url.length() - 1 : url.length();
+        return url.substring(url.lastIndexOf('/', end - 1) + 1, end);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,280 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.links;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.model.LinkPreview;
+import net.hatemachine.mortybot.repositories.LinkPreviewRepository;
+import net.hatemachine.mortybot.services.bitly.Bitly;
+import net.hatemachine.mortybot.util.Futures;
+import net.hatemachine.mortybot.util.TitleFetcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Remembers the titles and short links of links seen in chat, so that a link pasted again (or in several channels
+ * at once) doesn't mean fetching the page and spending Bitly quota again. Previews are keyed on a normalized form
+ * of the link and kept in a small in-memory LRU in front of the LinkPreview table.<br/>
+ * <br/>
+ * Titles are kept for links.cache.ttl seconds and short links for links.cache.short.ttl seconds. Failures are
+ * remembered too, for links.cache.failure.ttl seconds, so a dead link isn't fetched over and over. When several
+ * requests for the same link arrive at once, only the first does the work and the rest wait for its result.
+ */
+public class LinkPreviewCache {
+
+    private static final Set<String> TRACKING_PARAMS = Set.of("fbclid", "gclid", "igshid", "mc_cid", "mc_eid");
+
+    private static final Logger log = LoggerFactory.getLogger(LinkPreviewCache.class);
+
+    private static LinkPreviewCache cache;
+
+    private final Map<String, LinkPreview> previews;
+    private final Map<String, CompletableFuture<LinkPreview>> inFlight = new ConcurrentHashMap<>();
+    private final LinkPreviewRepository repository;
+
+    private LinkPreviewCache(int maxSize, LinkPreviewRepository repository) {
+        this.previews = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LinkPreview> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.repository = repository;
+    }
+
+    /**
+     * Retrieves a singleton instance of our link preview cache.
+     *
+     * @return the link preview cache
+     */
+    public static synchronized LinkPreviewCache getCache() {
+        if (cache == null) {
+            int maxSize = BotProperties.getBotProperties().getIntProperty("links.cache.size", BotDefaults.LINKS_CACHE_SIZE);
+            cache = new LinkPreviewCache(maxSize, new LinkPreviewRepository());
+            cache.deleteExpired();
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the preview for a link, fetching whatever parts of it are missing or have expired.
+     *
+     * @param link the link
+     * @param shorten true if the link's short link is wanted
+     * @param fetchTitle true if the link's title is wanted
+     * @return the preview for the link
+     */
+    public LinkPreview get(String link, boolean shorten, boolean fetchTitle) {
+        String key = normalize(link);
+
+        while (true) {
+            LinkPreview preview = lookup(key).orElse(null);
+            long now = System.currentTimeMillis();
+            boolean needTitle = fetchTitle && (preview == null || !preview.hasFreshTitle(now));
+            boolean needShortLink = shorten && (preview == null || !preview.hasFreshShortLink(now));
+
+            if (!needTitle && !needShortLink) {
+                return preview != null ? preview : new LinkPreview(key);
+            }
+
+            CompletableFuture<LinkPreview> flight = new CompletableFuture<>();
+            CompletableFuture<LinkPreview> existing = inFlight.putIfAbsent(key, flight);
+
+            if (existing != null) {
+                // another request is already fetching this link, wait for it then check whether it got what we need
+                await(existing);
+                continue;
+            }
+
+            try {
+                LinkPreview updated = fetch(key, preview, needTitle, needShortLink);
+                flight.complete(updated);
+                return updated;
+            } catch (RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of previews held in memory.
+     *
+     * @return the number of previews in memory
+     */
+    public int size() {
+        synchronized (previews) {
+            return previews.size();
+        }
+    }
+
+    /**
+     * Normalizes a link so that trivially different forms of it share a preview. The scheme and host are lower
+     * cased, default ports are dropped, an empty path becomes "/" and common tracking parameters are removed.
+     *
+     * @param link the link to normalize
+     * @return the normalized link, or the link as it was if it can't be parsed
+     */
+    static String normalize(String link) {
+        URI uri;
+        try {
+            uri = new URI(link);
+        } catch (URISyntaxException e) {
+            return link;
+        }
+
+        if (uri.getScheme() == null || uri.getRawAuthority() == null || uri.getHost() == null) {
+            return link;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(link.length()).append(scheme).append("://");
+
+        if (uri.getRawUserInfo() != null) {
+            sb.append(uri.getRawUserInfo()).append('@');
+        }
+        sb.append(uri.getHost().toLowerCase(Locale.ROOT));
+
+        int port = uri.getPort();
+        if (port != -1 && !(scheme.equals("http") && port == 80) && !(scheme.equals("https") && port == 443)) {
+            sb.append(':').append(port);
+        }
+
+        String path = uri.getRawPath();
+        sb.append(path == null || path.isEmpty() ? "/" : path);
+
+        if (uri.getRawQuery() != null) {
+            StringJoiner query = new StringJoiner("&", "?", "").setEmptyValue("");
+            for (String param : uri.getRawQuery().split("&")) {
+                String name = param.split("=", 2)[0].toLowerCase(Locale.ROOT);
+                if (!param.isEmpty() && !name.startsWith("utm_") && !TRACKING_PARAMS.contains(name)) {
+                    query.add(param);
+                }
+            }
+            sb.append(query);
+        }
+
+        if (uri.getRawFragment() != null) {
+            sb.append('#').append(uri.getRawFragment());
+        }
+
+        return sb.toString();
+    }
+
+    private Optional<LinkPreview> lookup(String key) {
+        synchronized (previews) {
+            LinkPreview preview = previews.get(key);
+            if (preview != null) {
+                return Optional.of(preview);
+            }
+        }
+
+        try {
+            Optional<LinkPreview> stored = repository.findByUrl(key);
+            stored.ifPresent(preview -> remember(key, preview));
+            return stored;
+        } catch (RuntimeException e) {
+            log.warn("Failed to load link preview for {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Fetches the missing parts of a preview. Previews in the cache are never modified once they're there, so this
+     * works on a copy and replaces the cached preview with it when done.
+     */
+    private LinkPreview fetch(String key, LinkPreview current, boolean needTitle, boolean needShortLink) {
+        BotProperties props = BotProperties.getBotProperties();
+        long ttl          = props.getIntProperty("links.cache.ttl",         BotDefaults.LINKS_CACHE_TTL) * 1000L;
+        long shortLinkTtl = props.getIntProperty("links.cache.short.ttl",   BotDefaults.LINKS_CACHE_SHORT_TTL) * 1000L;
+        long failureTtl   = props.getIntProperty("links.cache.failure.ttl", BotDefaults.LINKS_CACHE_FAILURE_TTL) * 1000L;
+
+        LinkPreview preview = current == null ? new LinkPreview(key) : new LinkPreview(current);
+
+        // shortening and fetching the title don't depend on each other, so do both at once
+        CompletableFuture<String> shortLink = needShortLink
+                ? Futures.supplyAsync(() -> shorten(key))
+                : CompletableFuture.completedFuture(null);
+
+        if (needTitle) {
+            String title = TitleFetcher.fetch(key).orElse(null);
+            preview.setTitle(title, System.currentTimeMillis() + (title == null ? failureTtl : ttl));
+        }
+
+        if (needShortLink) {
+            String link = shortLink.join();
+            preview.setShortLink(link, System.currentTimeMillis() + (link == null ? failureTtl : shortLinkTtl));
+        }
+
+        try {
+            preview = repository.save(preview);
+        } catch (RuntimeException e) {
+            log.warn("Failed to save link preview for {}: {}", key, e.getMessage());
+        }
+
+        remember(key, preview);
+        return preview;
+    }
+
+    private void remember(String key, LinkPreview preview) {
+        synchronized (previews) {
+            previews.put(key, preview);
+        }
+    }
+
+    private void deleteExpired() {
+        try {
+            int deleted = repository.deleteExpired(System.currentTimeMillis());
+            log.info("Deleted {} expired link previews", deleted);
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete expired link previews: {}", e.getMessage());
+        }
+    }
+
+    private static String shorten(String link) {
+        try {
+            return Bitly.shorten(link).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to shorten link {}: {}", link, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void await(CompletableFuture<LinkPreview> flight) {
+        try {
+            flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for link preview");
+        } catch (ExecutionException e) {
+            // the request doing the fetch has already dealt with the failure, so just try again ourselves
+            log.debug("Shared link preview fetch failed: {}", e.getCause().getMessage());
+        }
+    }
+}
@@ -17,86 +17,53 @@
  */
 package net.hatemachine.mortybot.services.mst;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import net.hatemachine.mortybot.util.Validate;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+import net.hatemachine.mortybot.util.WebClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.function.Consumer;
 
 public class MSTHelper {
 
     private static final String BASE_URL = "https://mass-shooting-tracker-data.s3.us-east-2.amazonaws.com/";
 
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+    private static final String[] HEADERS = {
+            "User-Agent", "Java HttpClient Bot",
+            "Accept", "application/json"
+    };
+
     private static final Logger log = LoggerFactory.getLogger(MSTHelper.class);
 
-    public List<ShootingEvent> shootingsByYear(int year) throws JsonProcessingException {
+    private final WebClient webClient = new WebClient("mst", TIMEOUT, HEADERS);
+
+    /**
+     * Downloads a year of shooting events and hands them to the action one at a time as they are parsed,
+     * so the whole year never has to be held in memory at once.
+     *
+     * @param year the year to download
+     * @param action called for each event in the order they appear in the data
+     * @return true if the data was downloaded and parsed, false if it could not be retrieved
+     */
+    public boolean forEachShooting(int year, Consumer<ShootingEvent> action) {
         LocalDate now = LocalDate.now();
-        if (year < 2013 || year > now.getYear()) {
-            throw new IllegalArgumentException("year must be between 2013 and " + now.getYear());
-        }
-
-        Optional<String> json = fetchJson(year);
-
-        if (json.isPresent()) {
-            ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
-            return mapper.readValue(Validate.notNullOrBlank(json.get()), new TypeReference<>() {});
-        } else {
-            return new ArrayList<>();
-        }
-    }
-
-    private Optional<String> fetchJson(int year) {
-        String urlStr = BASE_URL + year + "-data.json";
-        Optional<String> json = Optional.empty();
-        URI uri;
-
-        try {
-            uri = new URI(urlStr);
-        } catch (URISyntaxException e) {
-            log.error("Couldn't parse URL: {}", urlStr);
-            throw new RuntimeException(e);
-        }
-
-        try {
-            HttpClient client = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .version(HttpClient.Version.HTTP_1_1)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
-
-            HttpRequest request = HttpRequest.newBuilder(uri)
-                    .header("User-Agent", "Java HttpClient Bot")
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response;
-
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response != null && response.statusCode() == 200) {
-                json = Optional.of(response.body());
-            }
-        } catch (IOException e) {
-            log.error("Failed to fetch HTTP response body");
-            throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            log.warn("Thread interrupted!");
-            Thread.currentThread().interrupt();
+        if (year < MSTStore.FIRST_YEAR || year > now.getYear()) {
+            throw new IllegalArgumentException("year must be between " + MSTStore.FIRST_YEAR + " and " + now.getYear());
         }
 
-        return json;
+        return webClient.getJson(BASE_URL + year + "-data.json", parser -> {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        throw new JsonParseException(parser, "Expected an array of shooting events");
+                    }
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        action.accept(parser.readValueAs(ShootingEvent.class));
+                    }
+                    return Boolean.TRUE;
+                })
+                .orElse(Boolean.FALSE);
     }
 }
@@ -0,0 +1,264 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.mst;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local copy of the Mass Shooting Tracker data. Each year is downloaded once, written to disk in a compact binary
+ * format and indexed in memory so that queries can be answered without going to the network.<br/>
+ * <br/>
+ * Past years don't change, so once a past year is on disk it is never downloaded again. The current year is
+ * downloaded again when it is older than mst.refresh seconds. That request goes through the HTTP cache, which
+ * revalidates it with a conditional request, so it only transfers the data when something has been added.
+ */
+public class MSTStore {
+
+    public static final int FIRST_YEAR = 2013;
+
+    private static final int FILE_MAGIC = 0x4d535431; // MST1
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final Logger log = LoggerFactory.getLogger(MSTStore.class);
+
+    private static MSTStore store;
+
+    private final MSTHelper helper = new MSTHelper();
+    private final Path dir;
+    private final Duration refreshInterval;
+    private final Map<Integer, MSTYear> years = new ConcurrentHashMap<>();
+    private final Map<Integer, Object> locks = new ConcurrentHashMap<>();
+
+    private MSTStore(Path dir, Duration refreshInterval) {
+        this.dir = dir;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Retrieves a singleton instance of our MST store.
+     *
+     * @return the MST store
+     */
+    public static synchronized MSTStore getStore() {
+        if (store == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            Path dir = Paths.get(props.getStringProperty("mst.data.dir", BotDefaults.MST_DATA_DIR));
+            int refresh = props.getIntProperty("mst.refresh", BotDefaults.MST_REFRESH);
+            store = new MSTStore(dir, Duration.ofSeconds(refresh));
+        }
+        return store;
+    }
+
+    /**
+     * Retrieves a year of data, loading it from disk or downloading it if necessary.
+     *
+     * @param year the year to retrieve
+     * @return the indexed events for the year, empty if the year could not be loaded
+     * @throws IllegalArgumentException if there is no data for the year
+     */
+    public MSTYear getYear(int year) {
+        int currentYear = LocalDate.now().getYear();
+        if (year < FIRST_YEAR || year > currentYear) {
+            throw new IllegalArgumentException("year must be between " + FIRST_YEAR + " and " + currentYear);
+        }
+
+        MSTYear data = years.get(year);
+        if (isUsable(data, currentYear)) {
+            return data;
+        }
+
+        // only one thread loads a given year, the others wait for it and use what it loaded
+        synchronized (locks.computeIfAbsent(year, k -> new Object())) {
+            data = years.get(year);
+            if (isUsable(data, currentYear)) {
+                return data;
+            }
+            MSTYear loaded = load(year, currentYear);
+            if (loaded != null) {
+                years.put(year, loaded);
+                return loaded;
+            } else if (data != null) {
+                // keep serving the old data, but don't try again until the next refresh is due
+                MSTYear retained = new MSTYear(year, data.getEvents(), Instant.now(), false);
+                years.put(year, retained);
+                return retained;
+            }
+            return new MSTYear(year, List.of(), Instant.now(), false);
+        }
+    }
+
+    /**
+     * Finds the events between two dates, which may be in different years.
+     *
+     * @param from the first date to include
+     * @param to the last date to include
+     * @return the matching events with the most recent first
+     */
+    public List<ShootingEvent> getBetween(LocalDate from, LocalDate to) {
+        int first = Math.max(from.getYear(), FIRST_YEAR);
+        int last = Math.min(to.getYear(), LocalDate.now().getYear());
+        List<ShootingEvent> result = new ArrayList<>();
+        for (int year = last; year >= first; year--) {
+            result.addAll(getYear(year).getBetween(from, to));
+        }
+        return result;
+    }
+
+    private boolean isUsable(MSTYear data, int currentYear) {
+        if (data == null) {
+            return false;
+        } else if (data.getYear() < currentYear) {
+            // a year loaded while it was still the current year has to be downloaded once more after it ends
+            return data.isComplete();
+        } else {
+            return data.getLoadedAt().plus(refreshInterval).isAfter(Instant.now());
+        }
+    }
+
+    private MSTYear load(int year, int currentYear) {
+        boolean complete = year < currentYear;
+        Path file = dir.resolve(year + ".dat");
+
+        if (complete && Files.exists(file)) {
+            try {
+                MSTYear data = new MSTYear(year, read(file), Instant.now(), true);
+                log.debug("Loaded {} shooting events for {} from {}", data.getEvents().size(), year, file);
+                return data;
+            } catch (IOException e) {
+                log.warn("Unable to read {}, downloading it again", file, e);
+            }
+        }
+
+        List<ShootingEvent> events = new ArrayList<>();
+        if (!helper.forEachShooting(year, events::add)) {
+            log.warn("Unable to download shooting events for {}", year);
+            return null;
+        }
+        log.info("Downloaded {} shooting events for {}", events.size(), year);
+
+        if (complete) {
+            try {
+                write(file, events);
+            } catch (IOException e) {
+                log.warn("Unable to write {}", file, e);
+            }
+        }
+        return new MSTYear(year, events, Instant.now(), complete);
+    }
+
+    private static List<ShootingEvent> read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not an MST data file");
+            }
+            int count = in.readInt();
+            List<ShootingEvent> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long seconds = in.readLong();
+                ShootingEvent event = new ShootingEvent();
+                event.setDate(seconds == NO_DATE ? null : LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC));
+                event.setKilled(readString(in));
+                event.setWounded(readString(in));
+                event.setCity(readString(in));
+                event.setState(readString(in));
+                event.setNames(readStrings(in));
+                event.setSources(readStrings(in));
+                events.add(event);
+            }
+            return events;
+        }
+    }
+
+    private static void write(Path file, List<ShootingEvent> events) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(events.size());
+                for (ShootingEvent event : events) {
+                    out.writeLong(event.getDate() == null ? NO_DATE : event.getDate().toEpochSecond(ZoneOffset.UTC));
+                    writeString(out, event.getKilled());
+                    writeString(out, event.getWounded());
+                    writeString(out, event.getCity());
+                    writeString(out, event.getState());
+                    writeStrings(out, event.getNames());
+                    writeStrings(out, event.getSources());
+                }
+            }
+            // readers either see the old file or the complete new one
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutput out, String str) throws IOException {
+        out.writeBoolean(str != null);
+        if (str != null) {
+            out.writeUTF(str);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(in.readUTF());
+        }
+        return list;
+    }
+
+    private static void writeStrings(DataOutput out, List<String> list) throws IOException {
+        if (list == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(list.size());
+        for (String str : list) {
+            out.writeUTF(str == null ? "" : str);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.mst;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * A year of Mass Shooting Tracker data indexed by date, state and city. Instances are immutable, a refresh of
+ * the current year builds a new one rather than modifying the existing one.
+ */
+public class MSTYear {
+
+    private static final Comparator<ShootingEvent> NEWEST_FIRST =
+            Comparator.comparing(ShootingEvent::getDate, Comparator.nullsFirst(Comparator.naturalOrder())).reversed();
+
+    private final int year;
+    private final Instant loadedAt;
+    private final boolean complete;
+    private final List<ShootingEvent> events;
+    private final NavigableMap<LocalDate, List<ShootingEvent>> byDate = new TreeMap<>();
+    private final Map<String, List<ShootingEvent>> byState = new HashMap<>();
+    private final Map<String, List<ShootingEvent>> byCity = new HashMap<>();
+    private final Map<String, Integer> stateCounts;
+    private final SortedMap<YearMonth, Integer> monthCounts;
+
+    /**
+     * Indexes a year of shooting events.
+     *
+     * @param year the year the events are from
+     * @param events the events in any order
+     * @param loadedAt when the events were loaded
+     * @param complete true if the year is over and the events will not change
+     */
+    public MSTYear(int year, Collection<ShootingEvent> events, Instant loadedAt, boolean complete) {
+        this.year = year;
+        this.loadedAt = loadedAt;
+        this.complete = complete;
+
+        List<ShootingEvent> sorted = new ArrayList<>(events);
+        sorted.sort(NEWEST_FIRST);
+        this.events = Collections.unmodifiableList(sorted);
+
+        for (ShootingEvent event : sorted) {
+            if (event.getDate() != null) {
+                byDate.computeIfAbsent(event.getDate().toLocalDate(), k -> new ArrayList<>()).add(event);
+            }
+            if (event.getState() != null) {
+                byState.computeIfAbsent(stateKey(event.getState()), k -> new ArrayList<>()).add(event);
+            }
+            if (event.getCity() != null) {
+                byCity.computeIfAbsent(cityKey(event.getCity()), k -> new ArrayList<>()).add(event);
+            }
+        }
+
+        this.stateCounts = countByState(sorted);
+        this.monthCounts = countByMonth(sorted);
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * @return true if the year is over and the events will not change
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return all events for the year with the most recent first
+     */
+    public List<ShootingEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * Finds the events in a state.
+     *
+     * @param state the state as it appears in the data, case is ignored
+     * @return the matching events with the most recent first
+     */
+    public List<ShootingEvent> getByState(String state) {
+        return Collections.unmodifiableList(byState.getOrDefault(stateKey(state), List.of()));
+    }
+
+    /**
+     * Finds the events in a city. Cities with the same name in different states are all included.
+     *
+     * @param city the city name, case is ignored
+     * @return the matching events with the most recent first
+     */
+    public List<ShootingEvent> getByCity(String city) {
+        return Collections.unmodifiableList(byCity.getOrDefault(cityKey(city), List.of()));
+    }
+
+    /**
+     * Finds the events between two dates.
+     *
+     * @param from the first date to include
+     * @param to the last date to include
+     * @return the matching events with the most recent first
+     */
+    public List<ShootingEvent> getBetween(LocalDate from, LocalDate to) {
+        List<ShootingEvent> result = new ArrayList<>();
+        if (!from.isAfter(to)) {
+            byDate.subMap(from, true, to, true).descendingMap().values().forEach(result::addAll);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of events in each state, largest first
+     */
+    public Map<String, Integer> getStateCounts() {
+        return stateCounts;
+    }
+
+    /**
+     * @return the number of events in each month that had any, January first
+     */
+    public SortedMap<YearMonth, Integer> getMonthCounts() {
+        return monthCounts;
+    }
+
+    /**
+     * Checks if an event happened in a state.
+     */
+    public static boolean inState(ShootingEvent event, String state) {
+        return event.getState() != null && stateKey(event.getState()).equals(stateKey(state));
+    }
+
+    /**
+     * Checks if an event happened in a city.
+     */
+    public static boolean inCity(ShootingEvent event, String city) {
+        return event.getCity() != null && cityKey(event.getCity()).equals(cityKey(city));
+    }
+
+    /**
+     * Counts events by state.
+     *
+     * @param events the events to count
+     * @return an unmodifiable map of state to number of events, largest first
+     */
+    public static Map<String, Integer> countByState(Collection<ShootingEvent> events) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (ShootingEvent event : events) {
+            if (event.getState() != null) {
+                counts.merge(stateKey(event.getState()), 1, Integer::sum);
+            }
+        }
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    /**
+     * Counts events by month. Months are keyed by year as well, so the same month in different years is
+     * counted separately.
+     *
+     * @param events the events to count
+     * @return an unmodifiable map of month to number of events for the months that had any, earliest first
+     */
+    public static SortedMap<YearMonth, Integer> countByMonth(Collection<ShootingEvent> events) {
+        SortedMap<YearMonth, Integer> counts = new TreeMap<>();
+        for (ShootingEvent event : events) {
+            if (event.getDate() != null) {
+                counts.merge(YearMonth.from(event.getDate()), 1, Integer::sum);
+            }
+        }
+        return Collections.unmodifiableSortedMap(counts);
+    }
+
+    private static String stateKey(String state) {
+        return state.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static String cityKey(String city) {
+        return city.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -18,14 +18,14 @@
 package net.hatemachine.mortybot.services.rt;
 
 import com.uwyn.urlencoder.UrlEncoder;
-import org.jsoup.Jsoup;
+import net.hatemachine.mortybot.util.WebClient;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -34,6 +34,8 @@ public class RTHelper {
     private static final String BASE_URL = "https://www.rottentomatoes.com";
     private static final String SEARCH_URL = BASE_URL + "/search?search=";
 
+    private static final WebClient WEB_CLIENT = new WebClient("rt", Duration.ofSeconds(10), WebClient.BROWSER_HEADERS);
+
     private static final Logger log = LoggerFactory.getLogger(RTHelper.class);
 
     private RTHelper() {
@@ -49,13 +51,7 @@ public class RTHelper {
 
         String searchUrl = SEARCH_URL + UrlEncoder.encode(query);
         List<Movie> results = new ArrayList<>();
-        Document resultsPage = null;
-
-        try {
-            resultsPage = Jsoup.connect(searchUrl).get();
-        } catch (IOException e) {
-            log.error(e.getMessage());
-        }
+        Document resultsPage = WEB_CLIENT.getDocument(searchUrl).orElse(null);
 
         if (resultsPage != null) {
             Elements movieList = resultsPage.select("search-page-result[type=movie] > ul[slot=list] > search-page-media-row");
@@ -0,0 +1,58 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.stocks;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A stock quote.
+ *
+ * @param symbol the stock symbol
+ * @param price the regular market price
+ * @param previousClose the previous day's closing price, or NaN if it isn't known
+ * @param marketTime when the price was last updated by the market
+ * @param timezone the abbreviated name of the exchange's time zone
+ * @param fetchedAt when the quote was retrieved
+ */
+public record Quote(String symbol, double price, double previousClose, Instant marketTime, String timezone, Instant fetchedAt) {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("h:mma");
+
+    /**
+     * @return the change from the previous close as a percentage, or NaN if there is no previous close
+     */
+    public double changePercent() {
+        return previousClose > 0 ? (price - previousClose) / previousClose * 100 : Double.NaN;
+    }
+
+    /**
+     * Formats the quote for display, e.g. "AAPL 189.71 +0.52% [4:00PM EST]".
+     *
+     * @return the formatted quote
+     */
+    public String format() {
+        var dt = ZonedDateTime.ofInstant(marketTime, ZoneId.systemDefault());
+        double change = changePercent();
+        return Double.isNaN(change)
+                ? String.format("%s %.2f [%s %s]", symbol, price, dt.format(TIME_FORMAT), timezone)
+                : String.format("%s %.2f %+.2f%% [%s %s]", symbol, price, change, dt.format(TIME_FORMAT), timezone);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.stocks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.util.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches stock quotes from Yahoo Finance. Any number of symbols are fetched together using the spark endpoint,
+ * which returns quotes for up to 20 symbols per request, and the results are kept in a quote table shared by every
+ * caller for stock.quote.ttl seconds. A symbol that is already being fetched for one caller is not fetched again
+ * for another, they both get the result of the same request.
+ */
+public class QuoteService {
+
+    private static final String SPARK_URL = "https://query1.finance.yahoo.com/v7/finance/spark?range=1d&interval=1d&symbols=";
+    private static final int MAX_SYMBOLS_PER_REQUEST = 20;
+    private static final Pattern SYMBOL_PATTERN = Pattern.compile("[A-Z0-9.^=-]{1,16}");
+
+    private static final Logger log = LoggerFactory.getLogger(QuoteService.class);
+
+    private static QuoteService service;
+
+    private final WebClient webClient = new WebClient("yahoo");
+    private final Map<String, Quote> quotes = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Optional<Quote>>> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+
+    private QuoteService(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Retrieves a singleton instance of our quote service.
+     *
+     * @return the quote service
+     */
+    public static synchronized QuoteService getService() {
+        if (service == null) {
+            int ttl = BotProperties.getBotProperties().getIntProperty("stock.quote.ttl", BotDefaults.STOCK_QUOTE_TTL);
+            service = new QuoteService(Duration.ofSeconds(ttl));
+        }
+        return service;
+    }
+
+    /**
+     * Normalizes a stock symbol.
+     *
+     * @param symbol the symbol as given by a user
+     * @return the symbol in upper case
+     * @throws IllegalArgumentException if it isn't a valid symbol
+     */
+    public static String normalizeSymbol(String symbol) {
+        String normalized = symbol.trim().toUpperCase(Locale.ROOT);
+        if (!SYMBOL_PATTERN.matcher(normalized).matches()) {
+            throw new IllegalArgumentException("Invalid symbol: " + symbol);
+        }
+        return normalized;
+    }
+
+    /**
+     * Gets quotes for a number of symbols. Quotes in the table that are newer than the TTL are used as they are,
+     * the rest are fetched in as few requests as possible.
+     *
+     * @param symbols the symbols to get quotes for
+     * @return a future map of symbol to quote in the order the symbols were given, unknown symbols are left out
+     */
+    public CompletableFuture<Map<String, Quote>> getQuotes(Collection<String> symbols) {
+        // check them all before registering anything so a bad symbol can't leave a fetch half started
+        List<String> normalized = symbols.stream().map(QuoteService::normalizeSymbol).distinct().toList();
+        Instant now = Instant.now();
+        Map<String, CompletableFuture<Optional<Quote>>> pending = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Optional<Quote>>> toFetch = new LinkedHashMap<>();
+
+        for (String symbol : normalized) {
+            Quote quote = quotes.get(symbol);
+            if (quote != null && quote.fetchedAt().plus(ttl).isAfter(now)) {
+                pending.put(symbol, CompletableFuture.completedFuture(Optional.of(quote)));
+            } else {
+                pending.put(symbol, inFlight.computeIfAbsent(symbol, k -> {
+                    var future = new CompletableFuture<Optional<Quote>>();
+                    toFetch.put(k, future);
+                    return future;
+                }));
+            }
+        }
+
+        List<String> fetching = new ArrayList<>(toFetch.keySet());
+        for (int i = 0; i < fetching.size(); i += MAX_SYMBOLS_PER_REQUEST) {
+            fetch(fetching.subList(i, Math.min(i + MAX_SYMBOLS_PER_REQUEST, fetching.size())), toFetch);
+        }
+
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    Map<String, Quote> result = new LinkedHashMap<>();
+                    pending.forEach((symbol, future) -> future.join().ifPresent(q -> result.put(symbol, q)));
+                    return result;
+                });
+    }
+
+    private void fetch(List<String> symbols, Map<String, CompletableFuture<Optional<Quote>>> futures) {
+        log.info("Fetching stock quotes for {}", symbols);
+        String url = SPARK_URL + URLEncoder.encode(String.join(",", symbols), StandardCharsets.UTF_8);
+
+        webClient.getJsonAsync(url, JsonNode.class).whenComplete((json, e) -> {
+            Map<String, Quote> parsed = Map.of();
+            if (e != null) {
+                log.warn("Failed to fetch stock quotes for {}: {}", symbols, e.getMessage());
+            } else if (json.isPresent()) {
+                try {
+                    parsed = parseSpark(json.get(), Instant.now());
+                } catch (RuntimeException ex) {
+                    log.error("Unable to parse stock quotes for {}", symbols, ex);
+                }
+            }
+            for (String symbol : symbols) {
+                Quote quote = parsed.get(symbol);
+                if (quote != null) {
+                    quotes.put(symbol, quote);
+                }
+                inFlight.remove(symbol);
+                futures.get(symbol).complete(Optional.ofNullable(quote));
+            }
+        });
+    }
+
+    private static Map<String, Quote> parseSpark(JsonNode root, Instant fetchedAt) {
+        Map<String, Quote> parsed = new HashMap<>();
+        for (JsonNode result : root.path("spark").path("result")) {
+            JsonNode meta = result.path("response").path(0).path("meta");
+            if (!meta.hasNonNull("regularMarketPrice")) {
+                continue; // unknown symbol
+            }
+            String symbol = result.path("symbol").asText(meta.path("symbol").asText());
+            double previousClose = meta.hasNonNull("previousClose")
+                    ? meta.get("previousClose").asDouble()
+                    : meta.path("chartPreviousClose").asDouble(Double.NaN);
+            parsed.put(symbol.toUpperCase(Locale.ROOT), new Quote(
+                    meta.path("symbol").asText(symbol),
+                    meta.get("regularMarketPrice").asDouble(),
+                    previousClose,
+                    Instant.ofEpochSecond(meta.path("regularMarketTime").asLong()),
+                    meta.path("timezone").asText(),
+                    fetchedAt));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.stocks;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.model.StockWatch;
+import net.hatemachine.mortybot.repositories.StockWatchRepository;
+import org.pircbotx.PircBotX;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Announces large price moves in the stocks that channels are watching. Every stock.watch.interval seconds the
+ * quotes for all watched symbols are fetched together, and each channel is told about a symbol when its price has
+ * moved by more than the watch's threshold since the last announcement. The first price seen for a watch is only
+ * used as the starting point, nothing is announced for it.
+ */
+public class StockWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(StockWatcher.class);
+
+    private static StockWatcher stockWatcher;
+
+    private final StockWatchRepository repository = new StockWatchRepository();
+    private final Map<Long, Double> lastPrices = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("stock-watcher").daemon().factory());
+
+    private volatile List<StockWatch> watches = List.of();
+    private volatile PircBotX bot;
+    private boolean loaded = false;
+
+    private StockWatcher() {}
+
+    /**
+     * Retrieves a singleton instance of our stock watcher.
+     *
+     * @return the stock watcher
+     */
+    public static synchronized StockWatcher getStockWatcher() {
+        if (stockWatcher == null) {
+            stockWatcher = new StockWatcher();
+        }
+        return stockWatcher;
+    }
+
+    /**
+     * Starts sending announcements through a bot, loading the watches and starting to poll the first time
+     * it's called.
+     *
+     * @param bot the bot to send announcements with
+     */
+    public synchronized void start(PircBotX bot) {
+        this.bot = bot;
+        if (!loaded) {
+            watches = List.copyOf(repository.findAll());
+            int interval = BotProperties.getBotProperties().getIntProperty("stock.watch.interval", BotDefaults.STOCK_WATCH_INTERVAL);
+            scheduler.scheduleWithFixedDelay(this::poll, 0, interval, TimeUnit.SECONDS);
+            loaded = true;
+            log.info("Loaded {} stock watches", watches.size());
+        }
+    }
+
+    /**
+     * Stops sending announcements. Prices are still tracked while stopped but nothing is sent.
+     */
+    public void stop() {
+        bot = null;
+    }
+
+    /**
+     * Adds a stock watch for a channel, or changes the threshold of an existing one.
+     *
+     * @param channel the channel to send announcements to
+     * @param symbol the stock symbol to watch
+     * @param threshold the percentage move to announce, or null to use the default
+     * @return true if the watch was added, false if an existing one was changed
+     * @throws IllegalArgumentException if the channel is already watching as many symbols as it's allowed to
+     */
+    public synchronized boolean watch(String channel, String symbol, Double threshold) {
+        Optional<StockWatch> existing = find(channel, symbol);
+        if (existing.isPresent()) {
+            StockWatch watch = existing.get();
+            watch.setThreshold(threshold);
+            replace(watch, repository.save(watch));
+            return false;
+        }
+
+        int max = BotProperties.getBotProperties().getIntProperty("stock.watch.max", BotDefaults.STOCK_WATCH_MAX);
+        if (getWatches(channel).size() >= max) {
+            throw new IllegalArgumentException(channel + " is already watching " + max + " symbols");
+        }
+
+        StockWatch watch = repository.save(new StockWatch(channel, symbol, threshold));
+        List<StockWatch> updated = new ArrayList<>(watches);
+        updated.add(watch);
+        watches = List.copyOf(updated);
+        return true;
+    }
+
+    /**
+     * Removes a channel's watch on a symbol.
+     *
+     * @param channel the channel
+     * @param symbol the stock symbol
+     * @return true if the watch was removed, false if the channel wasn't watching the symbol
+     */
+    public synchronized boolean unwatch(String channel, String symbol) {
+        Optional<StockWatch> watch = find(channel, symbol);
+        if (watch.isEmpty()) {
+            return false;
+        }
+
+        repository.delete(watch.get());
+        lastPrices.remove(watch.get().getId());
+        List<StockWatch> updated = new ArrayList<>(watches);
+        updated.remove(watch.get());
+        watches = List.copyOf(updated);
+        return true;
+    }
+
+    /**
+     * Gets the watches for a channel, or for every channel.
+     *
+     * @param channel the channel, or null for every channel
+     * @return the matching watches
+     */
+    public List<StockWatch> getWatches(String channel) {
+        return watches.stream()
+                .filter(w -> channel == null || w.getChannel().equalsIgnoreCase(channel))
+                .toList();
+    }
+
+    private Optional<StockWatch> find(String channel, String symbol) {
+        return watches.stream()
+                .filter(w -> w.matches(channel, symbol))
+                .findFirst();
+    }
+
+    private void replace(StockWatch old, StockWatch watch) {
+        List<StockWatch> updated = new ArrayList<>(watches);
+        updated.remove(old);
+        updated.add(watch);
+        watches = List.copyOf(updated);
+    }
+
+    private void poll() {
+        List<StockWatch> current = watches;
+        if (current.isEmpty()) {
+            return;
+        }
+
+        Set<String> symbols = new LinkedHashSet<>();
+        current.forEach(w -> symbols.add(w.getSymbol()));
+
+        try {
+            Map<String, Quote> quotes = QuoteService.getService().getQuotes(symbols).get(1, TimeUnit.MINUTES);
+            check(current, quotes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // keep the schedule going whatever happens
+            log.warn("Failed to check watched stocks: {}", e.getMessage());
+        }
+    }
+
+    private void check(List<StockWatch> current, Map<String, Quote> quotes) {
+        float defaultThreshold = BotProperties.getBotProperties().getFloatProperty("stock.watch.threshold", BotDefaults.STOCK_WATCH_THRESHOLD);
+        PircBotX currentBot = bot;
+
+        for (StockWatch watch : current) {
+            Quote quote = quotes.get(watch.getSymbol());
+            if (quote == null) {
+                continue;
+            }
+
+            Double last = lastPrices.putIfAbsent(watch.getId(), quote.price());
+            if (last == null || last <= 0) {
+                continue;
+            }
+
+            double move = (quote.price() - last) / last * 100;
+            double threshold = watch.getThreshold() != null ? watch.getThreshold() : defaultThreshold;
+            if (Math.abs(move) <= threshold) {
+                continue;
+            }
+
+            lastPrices.put(watch.getId(), quote.price());
+            if (currentBot != null && currentBot.isConnected()) {
+                currentBot.sendIRC().message(watch.getChannel(),
+                        String.format("%s moved %+.2f%% since %.2f: %s", watch.getSymbol(), move, last, quote.format()));
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.urban;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a buffer of random Urban Dictionary definitions so that random lookups can be answered from memory instead
+ * of fetching and parsing a page while the user waits.<br/>
+ * <br/>
+ * The buffer holds up to urb.pool.size definitions and is topped up every urb.pool.refill.interval seconds by a
+ * low priority background thread, or sooner once it drops below half full. Each definition comes from a different
+ * random term, and terms that have been pooled recently are skipped when the random page lands on them again.
+ */
+public class RandomDefinitionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(RandomDefinitionPool.class);
+
+    private static RandomDefinitionPool pool;
+
+    private final BlockingQueue<Definition> definitions;
+    private final Set<String> recent;
+    private final AtomicBoolean refillPending = new AtomicBoolean(false);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("urban-refill").priority(Thread.MIN_PRIORITY).daemon().factory());
+    private final int capacity;
+
+    private RandomDefinitionPool(int capacity, int historySize) {
+        this.capacity = capacity;
+        this.definitions = new ArrayBlockingQueue<>(capacity);
+        this.recent = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > historySize;
+            }
+        }));
+    }
+
+    /**
+     * Retrieves a singleton instance of our definition pool, starting the background refill the first time.
+     *
+     * @return the definition pool
+     */
+    public static synchronized RandomDefinitionPool getPool() {
+        if (pool == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            int size = props.getIntProperty("urb.pool.size", BotDefaults.URB_POOL_SIZE);
+            int history = props.getIntProperty("urb.pool.history", BotDefaults.URB_POOL_HISTORY);
+            int refillInterval = props.getIntProperty("urb.pool.refill.interval", BotDefaults.URB_POOL_REFILL_INTERVAL);
+
+            pool = new RandomDefinitionPool(Math.max(1, size), Math.max(size, history));
+            pool.scheduler.scheduleWithFixedDelay(pool::refill, 0, Math.max(1, refillInterval), TimeUnit.SECONDS);
+        }
+        return pool;
+    }
+
+    /**
+     * Takes a random definition from the pool without waiting.
+     *
+     * @return an optional containing a definition, or empty if the pool has run dry
+     */
+    public Optional<Definition> next() {
+        Definition def = definitions.poll();
+        if (definitions.size() < capacity / 2 && refillPending.compareAndSet(false, true)) {
+            scheduler.execute(this::refill);
+        }
+        return Optional.ofNullable(def);
+    }
+
+    /**
+     * Gets the number of definitions currently waiting in the pool.
+     *
+     * @return the number of pooled definitions
+     */
+    public int size() {
+        return definitions.size();
+    }
+
+    /**
+     * Fetches random terms and adds the top definition of each one we haven't seen lately until the pool is full.
+     * Gives up for this round once a fetch fails or too many of the terms fetched were repeats.
+     */
+    private void refill() {
+        refillPending.set(false);
+        int attempts = definitions.remainingCapacity() * 2;
+        int added = 0;
+
+        try {
+            while (definitions.remainingCapacity() > 0 && attempts-- > 0 && !Thread.currentThread().isInterrupted()) {
+                List<Definition> fetched = UrbanDictionary.random();
+                if (fetched.isEmpty()) {
+                    break;
+                }
+                Definition def = fetched.get(0);
+                if (recent.add(key(def))) {
+                    if (!definitions.offer(def)) {
+                        recent.remove(key(def));
+                        break;
+                    }
+                    added++;
+                }
+            }
+            log.debug("Added {} definitions to the pool, {} pooled", added, definitions.size());
+        } catch (RuntimeException e) {
+            log.error("Exception encountered refilling definition pool", e);
+        }
+    }
+
+    private static String key(Definition def) {
+        return def.term().toLowerCase(Locale.ROOT);
+    }
+}
@@ -35,6 +35,7 @@ public class UrbanDictionary {
 
     private static final String BASE_URL = "https://www.urbandictionary.com";
     private static final String SEARCH_URL = BASE_URL + "/define.php?term=";
+    private static final String RANDOM_URL = BASE_URL + "/random.php";
 
     private static final Logger log = LoggerFactory.getLogger(UrbanDictionary.class);
 
@@ -42,6 +43,16 @@ public class UrbanDictionary {
         return doLookup(BASE_URL);
     }
 
+    /**
+     * Fetches the definitions for a random term. Each call lands on a different term, unlike the home page
+     * which shows the same entries all day.
+     *
+     * @return the definitions of a random term, most popular first
+     */
+    public static List<Definition> random() {
+        return doLookup(RANDOM_URL);
+    }
+
     public static List<Definition> lookup(String term) {
         return doLookup(SEARCH_URL + UrlEncoder.encode(term));
     }
@@ -0,0 +1,104 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.weather;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * The current weather in an area.
+ *
+ * @param areaName the name of the area
+ * @param region the region (state, province, etc.) the area is in
+ * @param country the country the area is in
+ * @param latitude the latitude of the area
+ * @param longitude the longitude of the area
+ * @param tempF the temperature in Fahrenheit
+ * @param tempC the temperature in Celsius
+ * @param description a short description of the conditions, e.g. "Partly cloudy"
+ * @param humidity the relative humidity as a percentage
+ * @param windspeedMiles the wind speed in miles per hour
+ * @param windDirection the wind direction as a 16 point compass direction, e.g. "NNW"
+ * @param fetchedAt when the conditions were retrieved
+ */
+public record Weather(String areaName,
+                      String region,
+                      String country,
+                      String latitude,
+                      String longitude,
+                      int tempF,
+                      int tempC,
+                      String description,
+                      int humidity,
+                      int windspeedMiles,
+                      String windDirection,
+                      Instant fetchedAt) {
+
+    static Optional<Weather> from(WttrResponse response, Instant fetchedAt) {
+        if (response.currentCondition() == null || response.currentCondition().isEmpty()
+                || response.nearestArea() == null || response.nearestArea().isEmpty()) {
+            return Optional.empty();
+        }
+        var current = response.currentCondition().get(0);
+        var area = response.nearestArea().get(0);
+        return Optional.of(new Weather(
+                WttrResponse.first(area.areaName()),
+                WttrResponse.first(area.region()),
+                WttrResponse.first(area.country()),
+                area.latitude(),
+                area.longitude(),
+                current.tempF(),
+                current.tempC(),
+                WttrResponse.first(current.weatherDesc()),
+                current.humidity(),
+                current.windspeedMiles(),
+                current.winddir16Point(),
+                fetchedAt));
+    }
+
+    /**
+     * Gets a key identifying the area, the same for every way of naming it.
+     *
+     * @return the area's coordinates, or its name if there are none
+     */
+    public String areaKey() {
+        return latitude != null && longitude != null ? latitude + "," + longitude : areaName + "," + region;
+    }
+
+    /**
+     * Copies these conditions, replacing the area with the one from another report. Used when refreshing an area
+     * by its coordinates so it keeps the name it was first looked up by.
+     *
+     * @param other the report to take the area from
+     * @return the combined report
+     */
+    Weather withAreaOf(Weather other) {
+        return new Weather(other.areaName, other.region, other.country, other.latitude, other.longitude,
+                tempF, tempC, description, humidity, windspeedMiles, windDirection, fetchedAt);
+    }
+
+    /**
+     * Formats the weather for display.
+     *
+     * @return the formatted weather
+     */
+    public String format() {
+        return String.format("[wtr] %s, %s (%d°F/%d°C/%s) [H:%d%% W:%dmph/%s]",
+                areaName, region, tempF, tempC, description, humidity, windspeedMiles, windDirection);
+    }
+}
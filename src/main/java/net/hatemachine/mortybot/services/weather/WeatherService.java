@@ -0,0 +1,205 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.weather;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import net.hatemachine.mortybot.identity.IdentityManager;
+import net.hatemachine.mortybot.model.BotUser;
+import net.hatemachine.mortybot.util.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the current weather from wttr.in and caches it.<br/>
+ * <br/>
+ * Locations are normalized, and the first time a location is looked up the area it resolves to is remembered, so
+ * "Austin TX" and "austin  tx" share the same cache entry, as do any other names for the same area. Conditions are
+ * cached per area for weather.ttl seconds, and when they expire the area is refreshed by its coordinates. Only one
+ * request for an area is ever in flight at a time.<br/>
+ * <br/>
+ * Every weather.prefetch.interval seconds, the saved locations of bot users who have been active recently are
+ * refreshed in the background, so they rarely have to wait for wttr.in.
+ */
+public class WeatherService {
+
+    private static final String BASE_URL = "https://wttr.in/";
+    private static final String PARAMETERS = "?format=j1";
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherService.class);
+
+    private static WeatherService service;
+
+    private final WebClient webClient = new WebClient("wttr");
+    private final Map<String, String> areas;
+    private final Map<String, Weather> conditions;
+    private final Map<String, CompletableFuture<Optional<Weather>>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("weather-prefetch").daemon().factory());
+    private final Duration ttl;
+
+    private WeatherService(Duration ttl, int cacheSize) {
+        this.ttl = ttl;
+        this.areas = Collections.synchronizedMap(lruMap(cacheSize));
+        this.conditions = Collections.synchronizedMap(lruMap(cacheSize));
+    }
+
+    /**
+     * Retrieves a singleton instance of our weather service, starting the background prefetch the first time.
+     *
+     * @return the weather service
+     */
+    public static synchronized WeatherService getService() {
+        if (service == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            int ttl = props.getIntProperty("weather.ttl", BotDefaults.WEATHER_TTL);
+            int cacheSize = props.getIntProperty("weather.cache.size", BotDefaults.WEATHER_CACHE_SIZE);
+            int prefetchInterval = props.getIntProperty("weather.prefetch.interval", BotDefaults.WEATHER_PREFETCH_INTERVAL);
+
+            service = new WeatherService(Duration.ofSeconds(ttl), cacheSize);
+            if (prefetchInterval > 0) {
+                service.scheduler.scheduleWithFixedDelay(() -> service.prefetch(Duration.ofSeconds(prefetchInterval)),
+                        prefetchInterval, prefetchInterval, TimeUnit.SECONDS);
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Normalizes a location so that different spellings of the same query share a cache entry.
+     *
+     * @param location the location as given by a user
+     * @return the location in lower case with runs of whitespace collapsed
+     */
+    public static String normalizeLocation(String location) {
+        return location.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the current weather for a location.
+     *
+     * @param location the location, anything wttr.in understands
+     * @return a future containing the weather, or empty if the location could not be found
+     */
+    public CompletableFuture<Optional<Weather>> getWeather(String location) {
+        String normalized = normalizeLocation(location);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("location not provided");
+        }
+
+        String areaKey = areas.get(normalized);
+        if (areaKey != null) {
+            Weather cached = conditions.get(areaKey);
+            if (cached != null && cached.fetchedAt().plus(ttl).isAfter(Instant.now())) {
+                return CompletableFuture.completedFuture(Optional.of(cached));
+            }
+        }
+
+        return load(normalized);
+    }
+
+    /**
+     * Fetches the weather for a location whether it's cached or not, joining a request that's already in flight
+     * for the same area.
+     */
+    private CompletableFuture<Optional<Weather>> load(String normalized) {
+        String areaKey = areas.get(normalized);
+        String query = areaKey != null ? areaKey : normalized;
+
+        CompletableFuture<Optional<Weather>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<Weather>> existing = inFlight.putIfAbsent(query, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        Weather previous = areaKey != null ? conditions.get(areaKey) : null;
+        String url = BASE_URL + URLEncoder.encode(query, StandardCharsets.UTF_8) + PARAMETERS;
+        log.debug("Fetching weather for {}", query);
+
+        webClient.getJsonAsync(url, WttrResponse.class)
+                .thenApply(response -> response.flatMap(r -> Weather.from(r, Instant.now())))
+                .thenApply(weather -> weather.map(w -> {
+                    // refreshing by coordinates can come back with a slightly different name, keep the original
+                    Weather stored = previous != null ? w.withAreaOf(previous) : w;
+                    conditions.put(stored.areaKey(), stored);
+                    areas.put(normalized, stored.areaKey());
+                    return stored;
+                }))
+                .whenComplete((weather, e) -> {
+                    inFlight.remove(query, future);
+                    if (e != null) {
+                        future.completeExceptionally(e);
+                    } else {
+                        future.complete(weather);
+                    }
+                });
+
+        return future;
+    }
+
+    /**
+     * Refreshes the weather for the saved locations of recently active bot users that would otherwise expire
+     * before the next prefetch.
+     */
+    private void prefetch(Duration interval) {
+        try {
+            int max = BotProperties.getBotProperties().getIntProperty("weather.prefetch.max", BotDefaults.WEATHER_PREFETCH_MAX);
+            Instant horizon = Instant.now().plus(interval).minus(ttl);
+
+            List<String> locations = IdentityManager.getManager().getActiveBotUsers().stream()
+                    .map(BotUser::getLocation)
+                    .filter(location -> location != null && !location.isBlank())
+                    .map(WeatherService::normalizeLocation)
+                    .distinct()
+                    .filter(location -> {
+                        String areaKey = areas.get(location);
+                        Weather cached = areaKey == null ? null : conditions.get(areaKey);
+                        return cached == null || cached.fetchedAt().isBefore(horizon);
+                    })
+                    .limit(max)
+                    .toList();
+
+            if (!locations.isEmpty()) {
+                log.debug("Prefetching weather for {} locations", locations.size());
+                locations.forEach(this::load);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Weather prefetch failed", e);
+        }
+    }
+
+    private static <V> Map<String, V> lruMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.services.weather;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The parts of a wttr.in <code>format=j1</code> response that we use. Everything else, including the multi-day
+ * forecast that makes up most of the response, is skipped by the parser without being read into memory.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+record WttrResponse(@JsonProperty("current_condition") List<CurrentCondition> currentCondition,
+                    @JsonProperty("nearest_area") List<NearestArea> nearestArea) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record CurrentCondition(int humidity,
+                            @JsonProperty("temp_C") int tempC,
+                            @JsonProperty("temp_F") int tempF,
+                            List<Value> weatherDesc,
+                            String winddir16Point,
+                            int windspeedMiles) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record NearestArea(List<Value> areaName,
+                       List<Value> region,
+                       List<Value> country,
+                       String latitude,
+                       String longitude) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Value(String value) {}
+
+    /**
+     * Gets the first value from a list of values, as wttr.in wraps most strings in a list of objects.
+     */
+    static String first(List<Value> values) {
+        return values == null || values.isEmpty() ? null : values.get(0).value();
+    }
+}
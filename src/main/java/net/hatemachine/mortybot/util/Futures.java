@@ -0,0 +1,145 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for fanning work out concurrently and collecting the results.
+ */
+public class Futures {
+
+    private static final Logger log = LoggerFactory.getLogger(Futures.class);
+
+    private static final ThreadFactory THREAD_FACTORY = Thread.ofVirtual().name("future-", 0).factory();
+
+    private Futures() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Runs a task on a new virtual thread. Unlike {@link CompletableFuture#supplyAsync(Supplier)}, cancelling the
+     * returned future interrupts the thread, so blocking work such as an HTTP request is abandoned rather than
+     * left running in the background.
+     *
+     * @param supplier the task to run
+     * @return a future that completes with the task's result
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread thread = THREAD_FACTORY.newThread(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                thread.interrupt();
+            }
+        });
+        thread.start();
+        return future;
+    }
+
+    /**
+     * Waits for a list of futures to complete, up to an overall deadline, and returns their results in the same
+     * order as the futures. Futures that fail or are still running when the deadline passes are given the fallback
+     * value, and any that are still running are cancelled.
+     *
+     * @param futures the futures to wait for
+     * @param deadline the maximum amount of time to wait for all of them
+     * @param fallback the result to use for futures that fail or don't finish in time
+     * @return the results of the futures in order
+     */
+    public static <T> List<T> awaitAll(List<? extends CompletableFuture<? extends T>> futures, Duration deadline, T fallback) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(deadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Deadline of {}ms passed waiting for {} futures", deadline.toMillis(), futures.size());
+        } catch (ExecutionException | CancellationException e) {
+            // failures are handled individually below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<? extends T> future : futures) {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                results.add(future.join());
+            } else {
+                future.cancel(true);
+                results.add(fallback);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Hands the results of a list of futures to an action in the same order as the futures, without blocking.
+     * Each result is passed on as soon as it and every result before it are available, so a slow future only
+     * holds up the ones after it. Futures that fail or are still running when the deadline passes are skipped,
+     * and any that are still running are cancelled, which interrupts work started with {@link #supplyAsync(Supplier)}
+     * and aborts requests made with WebClient's async methods.
+     *
+     * @param futures the futures whose results to pass on
+     * @param deadline the maximum amount of time to wait for all of them
+     * @param action the action to perform on each result
+     * @return a future that completes once every result has been passed on or skipped
+     */
+    public static <T> CompletableFuture<Void> forEachInOrder(List<? extends CompletableFuture<? extends T>> futures,
+                                                             Duration deadline, Consumer<? super T> action) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+        for (CompletableFuture<? extends T> future : futures) {
+            // the deadline applies to all of them together, and they were all started before we got here. It's applied
+            // to a copy so the caller's future is only ever cancelled, never completed with our timeout
+            CompletableFuture<? extends T> timed = future.copy().orTimeout(deadline.toNanos(), TimeUnit.NANOSECONDS);
+            timed.whenComplete((result, e) -> {
+                if (e != null && !future.isDone()) {
+                    future.cancel(true);
+                }
+            });
+            chain = chain.thenCompose(v -> timed.handle((result, e) -> {
+                if (e == null) {
+                    try {
+                        action.accept(result);
+                    } catch (RuntimeException ex) {
+                        log.error("Error handling result", ex);
+                    }
+                } else if (e instanceof TimeoutException || e.getCause() instanceof TimeoutException) {
+                    log.debug("Deadline of {}ms passed, skipping result", deadline.toMillis());
+                } else {
+                    log.debug("Skipping failed result: {}", e.getMessage());
+                }
+                return null;
+            }));
+        }
+
+        return chain;
+    }
+}
@@ -21,6 +21,9 @@ import net.hatemachine.mortybot.config.BotDefaults;
 import net.hatemachine.mortybot.config.BotProperties;
 import net.hatemachine.mortybot.model.BotChannel;
 import net.hatemachine.mortybot.model.BotUser;
+import net.hatemachine.mortybot.model.LinkPreview;
+import net.hatemachine.mortybot.model.ScoreSubscription;
+import net.hatemachine.mortybot.model.StockWatch;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 
@@ -43,6 +46,9 @@ public class HibernateUtil {
                 .setProperty("hibernate.hbm2ddl.auto", "none")
                 .addAnnotatedClass(BotUser.class)
                 .addAnnotatedClass(BotChannel.class)
+                .addAnnotatedClass(LinkPreview.class)
+                .addAnnotatedClass(ScoreSubscription.class)
+                .addAnnotatedClass(StockWatch.class)
                 .buildSessionFactory();
     }
 
@@ -0,0 +1,617 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.util;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of HTTP GET responses, used by {@link WebClient}.<br/>
+ * <br/>
+ * Responses are stored according to their Cache-Control, Expires, ETag and Last-Modified headers. Fresh entries are
+ * served straight from disk, and stale entries with validators are revalidated with If-None-Match/If-Modified-Since
+ * so that an unchanged page costs a 304 instead of a full download.<br/>
+ * <br/>
+ * Each entry is a single file named after the SHA-256 of its URL, holding a small binary header followed by the
+ * decoded body bytes. Bodies are written to disk as the caller reads them from the network (see
+ * {@link #store(String, HttpHeaders, Charset, InputStream)}) and read back as streams, so large responses never need
+ * to be held in memory. The total size of the cache is bounded and the least recently used entries are evicted first.
+ * Entries are written to a temporary file and moved into place, so readers never see a partially written entry.
+ */
+public class HttpCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpCache.class);
+
+    private static final int MAGIC = 0x4d424843; // MBHC
+    private static final int FORMAT_VERSION = 2;
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private static HttpCache cache;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private HttpCache(boolean enabled, Path dir, long maxBytes) {
+        this.enabled = enabled;
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Retrieves a singleton instance of our HTTP cache, loading the index of existing entries the first time.
+     *
+     * @return the HTTP cache
+     */
+    public static synchronized HttpCache getCache() {
+        if (cache == null) {
+            BotProperties props = BotProperties.getBotProperties();
+            boolean enabled = props.getBooleanProperty("http.cache.enabled", BotDefaults.HTTP_CACHE_ENABLED);
+            Path dir = Paths.get(props.getStringProperty("http.cache.dir", BotDefaults.HTTP_CACHE_DIR));
+            long maxBytes = props.getIntProperty("http.cache.size", BotDefaults.HTTP_CACHE_SIZE) * 1024L * 1024L;
+            cache = new HttpCache(enabled, dir, maxBytes);
+            if (enabled) {
+                cache.load();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Looks up the cached response for a URL. The entry may be stale, in which case it should be revalidated
+     * before being used. Only the entry's metadata is read, use {@link #openBody(Entry)} to read the body.
+     *
+     * @param url the url that was requested
+     * @return the cached response if there is one
+     */
+    public Optional<Entry> get(String url) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        String key = key(url);
+        synchronized (index) {
+            if (!index.containsKey(key)) {
+                misses.increment();
+                return Optional.empty();
+            }
+        }
+
+        Path path = dir.resolve(key + ENTRY_SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 512))) {
+            Entry entry = readHeader(in);
+            if (!entry.url().equals(url)) {
+                misses.increment();
+                return Optional.empty();
+            }
+            if (entry.isFresh()) {
+                hits.increment();
+            }
+            touch(path);
+            return Optional.of(entry);
+        } catch (IOException e) {
+            log.debug("Dropping unreadable cache entry for {}: {}", url, e.getMessage());
+            remove(key);
+            misses.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Opens the body of a cached response for reading.
+     *
+     * @param entry the cached entry
+     * @return a stream of the body bytes, in the entry's charset
+     * @throws IOException if the entry has been removed or replaced since it was looked up
+     */
+    public InputStream openBody(Entry entry) throws IOException {
+        Path path = dir.resolve(key(entry.url()) + ENTRY_SUFFIX);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        try {
+            Entry current = readHeader(in);
+            if (current.storedAt() != entry.storedAt() || !current.url().equals(entry.url())) {
+                throw new IOException("Cache entry has changed");
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stores a response as it's read, if its headers allow it to be cached. The returned stream copies everything
+     * read through it into the cache, and the entry is added once the whole body has been read. If the stream is
+     * closed early, the rest of the body is read first so that the entry is complete.
+     *
+     * @param url the url that was requested
+     * @param headers the response headers
+     * @param charset the charset of the body
+     * @param body the decoded response body
+     * @return the stream to read the body from
+     */
+    public InputStream store(String url, HttpHeaders headers, Charset charset, InputStream body) {
+        if (!enabled) {
+            return body;
+        }
+
+        long now = System.currentTimeMillis();
+        long expires = freshUntil(headers, now);
+        if (expires < 0) {
+            return body;
+        }
+
+        Entry entry = new Entry(url, now, expires,
+                headers.firstValue("ETag").orElse(""),
+                headers.firstValue("Last-Modified").orElse(""),
+                charset.name());
+
+        try {
+            return new CachingInputStream(body, entry);
+        } catch (IOException e) {
+            log.warn("Failed to start HTTP cache entry for {}: {}", url, e.getMessage());
+            return body;
+        }
+    }
+
+    /**
+     * Updates a stale entry after the server told us it hasn't changed (304 Not Modified).
+     *
+     * @param entry the cached entry
+     * @param headers the headers from the 304 response
+     * @return the updated entry
+     * @throws IOException if the entry could not be updated
+     */
+    public Entry revalidated(Entry entry, HttpHeaders headers) throws IOException {
+        revalidations.increment();
+
+        long now = System.currentTimeMillis();
+        long expires = freshUntil(headers, now);
+        Entry updated = new Entry(entry.url(), now, Math.max(expires, now),
+                headers.firstValue("ETag").orElse(entry.etag()),
+                headers.firstValue("Last-Modified").orElse(entry.lastModified()),
+                entry.charset());
+
+        try (InputStream body = openBody(entry);
+             InputStream copy = new CachingInputStream(body, updated)) {
+            copy.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return updated;
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() {
+        List<String> keys;
+        synchronized (index) {
+            keys = new ArrayList<>(index.keySet());
+        }
+        keys.forEach(this::remove);
+    }
+
+    /**
+     * Gets the number of entries in the cache.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    /**
+     * Gets the total size of the entries in the cache.
+     *
+     * @return the size of the cache in bytes
+     */
+    public long sizeInBytes() {
+        synchronized (index) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Gets counts of fresh hits, successful revalidations and misses since the bot started.
+     *
+     * @return the counts in the form {hits, revalidations, misses}
+     */
+    public long[] getStats() {
+        return new long[] { hits.sum(), revalidations.sum(), misses.sum() };
+    }
+
+    /**
+     * Works out how long a response can be used without revalidating it.
+     *
+     * @return the time in epoch millis the response is fresh until, or -1 if it shouldn't be stored at all
+     */
+    static long freshUntil(HttpHeaders headers, long now) {
+        if (headers.allValues("Vary").stream().anyMatch(v -> v.trim().equals("*"))) {
+            return -1;
+        }
+
+        long maxAge = -1;
+        boolean noCache = false;
+
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                String d = directive.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-store")) {
+                    return -1;
+                } else if (d.equals("no-cache")) {
+                    noCache = true;
+                } else if (d.startsWith("max-age=") || d.startsWith("s-maxage=")) {
+                    try {
+                        maxAge = Long.parseLong(d.substring(d.indexOf('=') + 1).replace("\"", ""));
+                    } catch (NumberFormatException e) {
+                        maxAge = 0;
+                    }
+                }
+            }
+        }
+
+        boolean hasValidators = headers.firstValue("ETag").isPresent() || headers.firstValue("Last-Modified").isPresent();
+
+        if (noCache) {
+            return hasValidators ? now : -1;
+        }
+
+        if (maxAge >= 0) {
+            long age = headers.firstValueAsLong("Age").orElse(0);
+            long until = now + Math.max(0, maxAge - age) * 1000;
+            return until > now || hasValidators ? until : -1;
+        }
+
+        Optional<String> expires = headers.firstValue("Expires");
+        if (expires.isPresent()) {
+            try {
+                long expiresAt = ZonedDateTime.parse(expires.get(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                if (expiresAt > now || hasValidators) {
+                    return Math.max(expiresAt, now);
+                }
+                return -1;
+            } catch (DateTimeParseException e) {
+                // an invalid Expires header means already expired
+            }
+        }
+
+        return hasValidators ? now : -1;
+    }
+
+    private void load() {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(dir)) {
+                files = stream.sorted(Comparator.comparing(HttpCache::lastModified)).toList();
+            }
+            for (Path file : files) {
+                // clean up entries that were still being written when the bot stopped
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            files = files.stream().filter(p -> p.getFileName().toString().endsWith(ENTRY_SUFFIX)).toList();
+            synchronized (index) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    long size = Files.size(file);
+                    index.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+                    totalBytes += size;
+                }
+            }
+            evict();
+            log.info("Loaded {} HTTP cache entries ({} KB) from {}", size(), sizeInBytes() / 1024, dir);
+        } catch (IOException e) {
+            log.error("Failed to load HTTP cache from {}", dir, e);
+        }
+    }
+
+    private Path startEntry(Entry entry) throws IOException {
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, key(entry.url()), ".tmp");
+    }
+
+    private void commitEntry(Entry entry, Path tmp) throws IOException {
+        String key = key(entry.url());
+        Path path = dir.resolve(key + ENTRY_SUFFIX);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long size = Files.size(path);
+        synchronized (index) {
+            Long previous = index.put(key, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+        }
+        evict();
+    }
+
+    private void evict() {
+        List<String> evicted = new ArrayList<>();
+        synchronized (index) {
+            Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                totalBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String key : evicted) {
+            deleteFile(key);
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (index) {
+            Long size = index.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        deleteFile(key);
+    }
+
+    private void deleteFile(String key) {
+        try {
+            Files.deleteIfExists(dir.resolve(key + ENTRY_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Failed to delete HTTP cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static void touch(Path path) {
+        // keeps the LRU order across restarts
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // not important
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, Entry entry) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(entry.url());
+        out.writeLong(entry.storedAt());
+        out.writeLong(entry.expiresAt());
+        out.writeUTF(entry.etag());
+        out.writeUTF(entry.lastModified());
+        out.writeUTF(entry.charset());
+    }
+
+    private static Entry readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+            throw new IOException("Not a cache entry");
+        }
+        return new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readUTF());
+    }
+
+    private static String key(String url) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A cached response.
+     *
+     * @param url the url that was requested
+     * @param storedAt when the response was stored or last revalidated, in epoch millis
+     * @param expiresAt when the response stops being fresh, in epoch millis
+     * @param etag the ETag of the response, or an empty string
+     * @param lastModified the Last-Modified date of the response, or an empty string
+     * @param charset the name of the charset of the body
+     */
+    public record Entry(String url, long storedAt, long expiresAt, String etag, String lastModified, String charset) {
+
+        /**
+         * @return true if the entry can be used without revalidating it
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        /**
+         * Adds conditional headers to a request so that the server can reply with a 304 if the entry is still good.
+         *
+         * @param builder the request being built
+         */
+        public void addValidators(HttpRequest.Builder builder) {
+            if (!etag.isEmpty()) {
+                builder.header("If-None-Match", etag);
+            }
+            if (!lastModified.isEmpty()) {
+                builder.header("If-Modified-Since", lastModified);
+            }
+        }
+
+        /**
+         * @return the charset of the body, falling back to UTF-8 if it isn't supported
+         */
+        public Charset getCharset() {
+            try {
+                return Charset.forName(charset);
+            } catch (IllegalArgumentException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+    }
+
+    /**
+     * Copies a body into a new cache entry as it is read.
+     */
+    private class CachingInputStream extends FilterInputStream {
+        private final Entry entry;
+        private final Path tmp;
+        private DataOutputStream out;
+
+        CachingInputStream(InputStream in, Entry entry) throws IOException {
+            super(in);
+            this.entry = entry;
+            this.tmp = startEntry(entry);
+            try {
+                this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)));
+                writeHeader(out, entry);
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                commit();
+            } else if (out != null) {
+                try {
+                    out.write(b);
+                } catch (IOException e) {
+                    abort();
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+            if (n == -1) {
+                commit();
+            } else if (out != null) {
+                try {
+                    out.write(b, off, n);
+                } catch (IOException e) {
+                    abort();
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // read rather than skip so the skipped bytes still end up in the cache
+            byte[] buf = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+                if (r == -1) {
+                    break;
+                }
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (out != null) {
+                    // finish reading the body so the entry is complete, e.g. a JSON parser stopping at the last brace
+                    try {
+                        byte[] buf = new byte[8192];
+                        while (read(buf, 0, buf.length) != -1) {
+                            // keep reading
+                        }
+                    } catch (IOException e) {
+                        abort();
+                    }
+                }
+            } finally {
+                super.close();
+            }
+        }
+
+        private void commit() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+                out = null;
+                commitEntry(entry, tmp);
+            } catch (IOException e) {
+                log.warn("Failed to write HTTP cache entry for {}: {}", entry.url(), e.getMessage());
+                abort();
+            }
+        }
+
+        private void abort() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore, we're throwing it away
+                }
+                out = null;
+            }
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.debug("Failed to delete {}: {}", tmp, e.getMessage());
+            }
+        }
+    }
+}
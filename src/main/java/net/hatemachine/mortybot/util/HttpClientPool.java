@@ -0,0 +1,235 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.util;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide HTTP client shared by all the bot's services so that connections (and HTTP/2 sessions) are kept
+ * open and reused between requests instead of paying for a new TCP and TLS handshake every time.<br/>
+ * <br/>
+ * Requests are tagged with the name of the service making them. This is used to look up per-service timeouts
+ * (<code>http.timeout.&lt;service&gt;</code>) and to keep per-service statistics. HttpClient doesn't tell us whether
+ * a request actually went out on an existing connection, so requests made to a host that answered us within the
+ * keep-alive window are counted as warm, which is where reuse is possible.
+ */
+public class HttpClientPool {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpClientPool.class);
+
+    private static HttpClientPool pool;
+
+    private final HttpClient client;
+    private final long keepAliveNanos;
+    private final Map<String, Long> lastResponse = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentSkipListMap<>();
+
+    private HttpClientPool() {
+        BotProperties props = BotProperties.getBotProperties();
+        int keepAlive = props.getIntProperty("http.keepalive.timeout", BotDefaults.HTTP_KEEPALIVE_TIMEOUT);
+        int connectTimeout = props.getIntProperty("http.connect.timeout", BotDefaults.HTTP_CONNECT_TIMEOUT);
+
+        // HttpClient's own idle timeout is set from the same property at startup (see Main), or with -D
+        this.keepAliveNanos = TimeUnit.SECONDS.toNanos(Long.getLong("jdk.httpclient.keepalive.timeout", keepAlive));
+
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Retrieves a singleton instance of our HTTP client pool.
+     *
+     * @return the HTTP client pool
+     */
+    public static synchronized HttpClientPool getPool() {
+        if (pool == null) {
+            pool = new HttpClientPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Gets the shared client. Prefer {@link #send(String, HttpRequest, HttpResponse.BodyHandler)} so that the
+     * request is included in the statistics.
+     *
+     * @return the shared HttpClient
+     */
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Gets the request timeout for a service, allowing it to be overridden with the http.timeout.&lt;service&gt;
+     * property (in milliseconds).
+     *
+     * @param service the name of the service
+     * @param defaultTimeout the timeout to use if the property isn't set
+     * @return the request timeout for the service
+     */
+    public Duration getTimeout(String service, Duration defaultTimeout) {
+        int timeout = BotProperties.getBotProperties().getIntProperty("http.timeout." + service, -1);
+        return timeout > 0 ? Duration.ofMillis(timeout) : defaultTimeout;
+    }
+
+    /**
+     * Gets the maximum size of a response body for a service, allowing it to be overridden with the
+     * http.max.bytes.&lt;service&gt; property.
+     *
+     * @param service the name of the service
+     * @return the maximum number of bytes to read from a response body
+     */
+    public long getMaxBytes(String service) {
+        BotProperties props = BotProperties.getBotProperties();
+        int maxBytes = props.getIntProperty("http.max.bytes." + service, -1);
+        return maxBytes > 0 ? maxBytes : props.getIntProperty("http.max.bytes", BotDefaults.HTTP_MAX_BYTES);
+    }
+
+    /**
+     * Sends a request using the shared client.
+     *
+     * @param service the name of the service making the request
+     * @param request the request to send
+     * @param handler the response body handler
+     * @return the response
+     * @throws IOException if an I/O error occurs when sending or receiving
+     * @throws InterruptedException if the operation is interrupted
+     */
+    public <T> HttpResponse<T> send(String service, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        Stats serviceStats = recordRequest(service, request);
+
+        try {
+            HttpResponse<T> response = client.send(request, handler);
+            recordResponse(serviceStats, response);
+            return response;
+        } catch (IOException e) {
+            recordFailure(serviceStats, request, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request asynchronously using the shared client. Cancelling the returned future aborts the request.
+     *
+     * @param service the name of the service making the request
+     * @param request the request to send
+     * @param handler the response body handler
+     * @return a future that completes with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(String service, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        Stats serviceStats = recordRequest(service, request);
+        CompletableFuture<HttpResponse<T>> future = client.sendAsync(request, handler);
+
+        future.whenComplete((response, e) -> {
+            if (e == null) {
+                recordResponse(serviceStats, response);
+            } else {
+                recordFailure(serviceStats, request, e);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Gets the request statistics for each service.
+     *
+     * @return a map of service names to their requests, warm requests, HTTP/2 responses and failures
+     */
+    public Map<String, long[]> getStats() {
+        Map<String, long[]> result = new TreeMap<>();
+        stats.forEach((service, s) -> result.put(service, new long[] {
+                s.requests.sum(),
+                s.warm.sum(),
+                s.http2.sum(),
+                s.failures.sum()
+        }));
+        return result;
+    }
+
+    /**
+     * Gets the number of hosts we have talked to within the keep-alive window, which is an upper bound on the
+     * number of connections the client is keeping open.
+     *
+     * @return the number of recently used hosts
+     */
+    public int getActiveHosts() {
+        long now = System.nanoTime();
+        lastResponse.values().removeIf(last -> now - last >= keepAliveNanos);
+        return lastResponse.size();
+    }
+
+    private Stats recordRequest(String service, HttpRequest request) {
+        Stats serviceStats = stats.computeIfAbsent(service, k -> new Stats());
+        serviceStats.requests.increment();
+
+        Long last = lastResponse.get(getOrigin(request.uri()));
+        if (last != null && System.nanoTime() - last < keepAliveNanos) {
+            serviceStats.warm.increment();
+        }
+
+        return serviceStats;
+    }
+
+    private void recordResponse(Stats serviceStats, HttpResponse<?> response) {
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            serviceStats.http2.increment();
+        }
+        lastResponse.put(getOrigin(response.request().uri()), System.nanoTime());
+    }
+
+    private void recordFailure(Stats serviceStats, HttpRequest request, Throwable e) {
+        String origin = getOrigin(request.uri());
+        serviceStats.failures.increment();
+        lastResponse.remove(origin);
+        log.debug("Request to {} failed: {}", origin, e.getMessage());
+    }
+
+    private static String getOrigin(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    private static class Stats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder warm = new LongAdder();
+        private final LongAdder http2 = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+    }
+}
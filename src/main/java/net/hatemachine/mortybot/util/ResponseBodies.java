@@ -0,0 +1,190 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.util;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Helpers for reading HTTP response bodies as streams: undoing the content encoding, capping how much we're willing
+ * to read, and working out what charset the body is in.
+ */
+public class ResponseBodies {
+
+    /** Value for the Accept-Encoding header, listing the encodings {@link #decode} understands */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int SNIFF_LENGTH = 1024;
+    private static final Pattern CONTENT_TYPE_CHARSET = Pattern.compile("charset\\s*=\\s*\"?([^\\s;\"]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DOCUMENT_CHARSET = Pattern.compile("(?:charset|encoding)\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private ResponseBodies() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Wraps a response body so that it's decompressed according to its Content-Encoding header, and so that reading
+     * more than the given number of (decompressed) bytes fails with an IOException.
+     *
+     * @param headers the response headers
+     * @param body the raw response body
+     * @param maxBytes the maximum number of bytes to read
+     * @return the decoded body stream
+     * @throws IOException if the encoding isn't supported or the body is corrupt
+     */
+    public static InputStream decode(HttpHeaders headers, InputStream body, long maxBytes) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase(Locale.ROOT);
+
+        InputStream decoded = switch (encoding) {
+            case "", "identity" -> body;
+            case "gzip", "x-gzip" -> new GZIPInputStream(body, 8192);
+            case "deflate" -> inflate(body);
+            default -> throw new IOException("Unsupported content encoding: " + encoding);
+        };
+
+        return new LimitedInputStream(decoded, maxBytes);
+    }
+
+    /**
+     * Works out the charset of a response body. The charset parameter of the Content-Type header wins, followed by a
+     * byte order mark, followed by a charset declared near the top of an HTML or XML document. Anything else is
+     * assumed to be UTF-8. A UTF-8 byte order mark is skipped.
+     *
+     * @param headers the response headers
+     * @param body the response body, which must support mark/reset
+     * @return the charset of the body
+     * @throws IOException if the body can't be read
+     */
+    public static Charset detectCharset(HttpHeaders headers, BufferedInputStream body) throws IOException {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        Optional<Charset> declared = lookup(CONTENT_TYPE_CHARSET.matcher(contentType));
+
+        body.mark(SNIFF_LENGTH);
+        byte[] head = body.readNBytes(SNIFF_LENGTH);
+        body.reset();
+
+        if (head.length >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf) {
+            body.skipNBytes(3);
+            return declared.orElse(StandardCharsets.UTF_8);
+        }
+
+        if (declared.isPresent()) {
+            return declared.get();
+        }
+
+        if (head.length >= 2 && (head[0] & 0xff) == 0xfe && (head[1] & 0xff) == 0xff) {
+            return StandardCharsets.UTF_16BE;
+        } else if (head.length >= 2 && (head[0] & 0xff) == 0xff && (head[1] & 0xff) == 0xfe) {
+            return StandardCharsets.UTF_16LE;
+        }
+
+        if (contentType.contains("html") || contentType.contains("xml")) {
+            String prefix = new String(head, StandardCharsets.ISO_8859_1);
+            return lookup(DOCUMENT_CHARSET.matcher(prefix)).orElse(StandardCharsets.UTF_8);
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Optional<Charset> lookup(Matcher matcher) {
+        if (matcher.find()) {
+            try {
+                return Optional.of(Charset.forName(matcher.group(1)));
+            } catch (IllegalArgumentException e) {
+                // unknown or invalid charset name
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Servers disagree about whether "deflate" means zlib wrapped or raw deflate data, so check for a zlib header.
+     */
+    private static InputStream inflate(InputStream body) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(body);
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+
+        boolean zlib = b0 != -1 && b1 != -1 && (b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0;
+        return new InflaterInputStream(in, new Inflater(!zlib), 8192);
+    }
+
+    /**
+     * Input stream that fails once more than a given number of bytes have been read from it.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long count = 0;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > maxBytes) {
+                throw new IOException("Response body exceeded " + maxBytes + " bytes");
+            }
+        }
+    }
+}
@@ -17,6 +17,10 @@
  */
 package net.hatemachine.mortybot.util;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,4 +53,150 @@ public class StringUtils {
         m.appendTail(sb);
         return sb.toString();
     }
+
+    /**
+     * Matches a string against a pattern containing wildcard characters (*, ?) without building a regex.
+     * Matching is case-insensitive and does not allocate, which makes it suitable for checking a user's
+     * hostmask against a large number of stored masks.
+     *
+     * @param pattern String containing wildcards such as * and ?
+     * @param str the string to match against the pattern
+     * @return true if the entire string matches the pattern
+     */
+    public static boolean wildcardMatches(String pattern, String str) {
+        int p = 0;
+        int s = 0;
+        int starIdx = -1;
+        int starMatch = 0;
+        int patternLen = pattern.length();
+        int strLen = str.length();
+
+        while (s < strLen) {
+            if (p < patternLen) {
+                char pc = pattern.charAt(p);
+                if (pc == '*') {
+                    starIdx = p++;
+                    starMatch = s;
+                    continue;
+                }
+                if (pc == '?' || Character.toLowerCase(pc) == Character.toLowerCase(str.charAt(s))) {
+                    p++;
+                    s++;
+                    continue;
+                }
+            }
+            if (starIdx == -1) {
+                return false;
+            }
+            // backtrack and let the last * swallow one more character
+            p = starIdx + 1;
+            s = ++starMatch;
+        }
+
+        while (p < patternLen && pattern.charAt(p) == '*') {
+            p++;
+        }
+
+        return p == patternLen;
+    }
+
+    /**
+     * Splits a string into whitespace separated tokens. A token starting with a double quote runs until the next
+     * double quote that is followed by whitespace or the end of the string, so quoted arguments can contain spaces
+     * (e.g. <code>.imdb -l "the thing"</code>). A quote with no closing quote is treated as a normal character.<br/>
+     * <br/>
+     * Only the token boundaries are recorded while scanning, and each token is copied out of the string the first
+     * time it is asked for, so tokens that are never looked at are never allocated.
+     *
+     * @param str the string to tokenize
+     * @return an unmodifiable list of tokens
+     */
+    public static List<String> tokenize(String str) {
+        return tokenize(str, true);
+    }
+
+    /**
+     * Splits a string into whitespace separated tokens, optionally treating double-quoted runs as single tokens.
+     * When quotes are not honored they are left in the tokens as ordinary characters.
+     *
+     * @param str the string to tokenize
+     * @param quotes true to group double-quoted arguments, see {@link #tokenize(String)}
+     * @return an unmodifiable list of tokens
+     */
+    public static List<String> tokenize(String str, boolean quotes) {
+        int[] bounds = new int[16];
+        int count = 0;
+        int len = str.length();
+        int i = 0;
+
+        while (i < len) {
+            while (i < len && Character.isWhitespace(str.charAt(i))) {
+                i++;
+            }
+            if (i == len) {
+                break;
+            }
+
+            int start = i;
+            int end = -1;
+
+            if (quotes && str.charAt(i) == '"') {
+                for (int j = i + 1; j < len; j++) {
+                    if (str.charAt(j) == '"' && (j + 1 == len || Character.isWhitespace(str.charAt(j + 1)))) {
+                        start = i + 1;
+                        end = j;
+                        i = j + 1;
+                        break;
+                    }
+                }
+            }
+
+            if (end == -1) {
+                while (i < len && !Character.isWhitespace(str.charAt(i))) {
+                    i++;
+                }
+                end = i;
+            }
+
+            if (count * 2 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[count * 2] = start;
+            bounds[count * 2 + 1] = end;
+            count++;
+        }
+
+        return new TokenList(str, bounds, count);
+    }
+
+    /**
+     * List of tokens backed by the original string and the offsets of each token within it.
+     */
+    private static final class TokenList extends AbstractList<String> implements RandomAccess {
+        private final String str;
+        private final int[] bounds;
+        private final String[] tokens;
+
+        private TokenList(String str, int[] bounds, int count) {
+            this.str = str;
+            this.bounds = bounds;
+            this.tokens = new String[count];
+        }
+
+        @Override
+        public String get(int index) {
+            String token = tokens[index];
+            if (token == null) {
+                // racing threads may both copy the token, but they'll copy the same thing
+                token = str.substring(bounds[index * 2], bounds[index * 2 + 1]);
+                tokens[index] = token;
+            }
+            return token;
+        }
+
+        @Override
+        public int size() {
+            return tokens.length;
+        }
+    }
 }
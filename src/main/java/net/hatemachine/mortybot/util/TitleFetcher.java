@@ -0,0 +1,230 @@
+/*
+ * MortyBot - An IRC bot built on the PircBotX framework.
+ * Copyright © 2022 Brian Weiss (brian@hatemachine.net)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.hatemachine.mortybot.util;
+
+import net.hatemachine.mortybot.config.BotDefaults;
+import net.hatemachine.mortybot.config.BotProperties;
+import org.jsoup.parser.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the title of a web page while reading as little of it as possible. Responses that aren't HTML are
+ * rejected from their headers without reading the body. Otherwise, the body is streamed until the closing title
+ * tag is found, or until the end of the head section shows that there isn't one, and the rest of the response is
+ * abandoned.<br/>
+ * <br/>
+ * Each fetch is limited to links.title.max.bytes bytes of decoded body and links.title.timeout milliseconds from
+ * sending the request to finding the title, whichever runs out first. Titles are not stored in the HTTP cache.
+ */
+public class TitleFetcher {
+
+    private static final String SERVICE = "links";
+
+    private static final Set<String> HTML_TYPES = Set.of("text/html", "application/xhtml+xml");
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final Logger log = LoggerFactory.getLogger(TitleFetcher.class);
+
+    private TitleFetcher() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Fetches the title of a web page.
+     *
+     * @param link the link to the page
+     * @return an optional containing the page's title
+     */
+    public static Optional<String> fetch(String link) {
+        BotProperties props = BotProperties.getBotProperties();
+        int maxBytes = props.getIntProperty("links.title.max.bytes", BotDefaults.LINKS_TITLE_MAX_BYTES);
+        int timeout = props.getIntProperty("links.title.timeout", BotDefaults.LINKS_TITLE_TIMEOUT);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(link))
+                    .timeout(HttpClientPool.getPool().getTimeout(SERVICE, Duration.ofMillis(timeout)))
+                    .headers(WebClient.BROWSER_HEADERS)
+                    .header("Accept-Encoding", ResponseBodies.ACCEPT_ENCODING)
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Not fetching title for invalid link {}: {}", link, e.getMessage());
+            return Optional.empty();
+        }
+
+        try {
+            HttpResponse<InputStream> response = HttpClientPool.getPool()
+                    .send(SERVICE, request, HttpResponse.BodyHandlers.ofInputStream());
+
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200) {
+                    log.debug("Not reading title from {}, status code {}", link, response.statusCode());
+                    return Optional.empty();
+                }
+
+                String contentType = response.headers().firstValue("Content-Type").orElse("");
+                if (!isHtml(contentType)) {
+                    log.debug("Not reading title from {}, content type {}", link, contentType);
+                    return Optional.empty();
+                }
+
+                // reads block until data arrives, so close the body if the server stalls past the deadline
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                CompletableFuture<Void> watchdog = CompletableFuture.runAsync(() -> closeQuietly(body),
+                        CompletableFuture.delayedExecutor(remaining, TimeUnit.NANOSECONDS));
+
+                try {
+                    BufferedInputStream decoded = new BufferedInputStream(
+                            ResponseBodies.decode(response.headers(), body, maxBytes));
+                    Charset charset = ResponseBodies.detectCharset(response.headers(), decoded);
+                    return readTitle(new InputStreamReader(decoded, charset), deadline);
+                } finally {
+                    watchdog.cancel(false);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed to read title from {}: {}", link, e.getMessage());
+        } catch (InterruptedException e) {
+            log.warn("Thread interrupted: {}", Thread.currentThread().getName(), e);
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Reads from a page until its title has been found, there's no longer any chance of finding one, or the
+     * deadline passes.
+     *
+     * @param reader the page being read
+     * @param deadline the value of {@link System#nanoTime()} to give up at
+     * @return an optional containing the title
+     * @throws IOException if the page can't be read
+     */
+    private static Optional<String> readTitle(Reader reader, long deadline) throws IOException {
+        StringBuilder page = new StringBuilder();
+        char[] chunk = new char[CHUNK_SIZE];
+        int titleStart = -1;
+        int pos = 0;
+        int n;
+
+        while ((n = reader.read(chunk)) != -1) {
+            page.append(chunk, 0, n);
+
+            if (titleStart == -1) {
+                int tag = indexOfIgnoreCase(page, "<title", pos);
+                int end = firstOf(indexOfIgnoreCase(page, "</head", pos), indexOfIgnoreCase(page, "<body", pos));
+
+                if (end != -1 && (tag == -1 || end < tag)) {
+                    return Optional.empty();
+                } else if (tag == -1) {
+                    // keep enough of the tail to catch a tag split across chunks
+                    pos = Math.max(0, page.length() - 6);
+                } else {
+                    int gt = page.indexOf(">", tag);
+                    if (gt == -1) {
+                        pos = tag;
+                    } else {
+                        titleStart = gt + 1;
+                        pos = titleStart;
+                    }
+                }
+            }
+
+            if (titleStart != -1) {
+                int close = indexOfIgnoreCase(page, "</title", pos);
+                if (close != -1) {
+                    return clean(page.substring(titleStart, close));
+                }
+                pos = Math.max(titleStart, page.length() - 7);
+            }
+
+            if (System.nanoTime() - deadline > 0) {
+                throw new IOException("Timed out reading title");
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static Optional<String> clean(String title) {
+        String text = Parser.unescapeEntities(title, false).replaceAll("\\s+", " ").strip();
+        return text.isEmpty() ? Optional.empty() : Optional.of(text);
+    }
+
+    private static boolean isHtml(String contentType) {
+        if (contentType.isBlank()) {
+            return true; // nothing to go on, so let the body speak for itself
+        }
+        int semi = contentType.indexOf(';');
+        String mediaType = (semi == -1 ? contentType : contentType.substring(0, semi)).strip().toLowerCase(Locale.ROOT);
+        return HTML_TYPES.contains(mediaType);
+    }
+
+    private static int indexOfIgnoreCase(CharSequence str, String target, int from) {
+        int last = str.length() - target.length();
+        for (int i = Math.max(0, from); i <= last; i++) {
+            int j = 0;
+            while (j < target.length() && Character.toLowerCase(str.charAt(i + j)) == target.charAt(j)) {
+                j++;
+            }
+            if (j == target.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int firstOf(int a, int b) {
+        if (a == -1) {
+            return b;
+        } else if (b == -1) {
+            return a;
+        } else {
+            return Math.min(a, b);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Error closing stream: {}", e.getMessage());
+        }
+    }
+}
@@ -17,19 +17,36 @@
  */
 package net.hatemachine.mortybot.util;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jsoup.Jsoup;
+import org.jsoup.helper.HttpConnection;
+import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Convenience class for making simple web requests.
+ * Convenience class for making simple web requests. Requests go through the shared {@link HttpClientPool}, so
+ * creating a WebClient is cheap and connections are reused between instances. GET responses are cached on disk
+ * by {@link HttpCache} when their headers allow it.<br/>
+ * <br/>
+ * Response bodies are read as streams. Compressed responses are decoded, bodies larger than the service's limit
+ * (http.max.bytes or http.max.bytes.&lt;service&gt;) are abandoned, and the charset is worked out from the headers
+ * or the document itself. Callers that can work with a stream, such as {@link #getJson(String, JsonReader)}, never
+ * need the whole body in memory as a string.
  */
 public class WebClient {
 
@@ -38,15 +55,26 @@ public class WebClient {
         POST
     }
 
+    private static final String DEFAULT_SERVICE = "default";
     private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
     private static final String[] DEFAULT_HEADERS = {
             "User-Agent", "Java HttpClient Bot"
     };
 
+    /** Headers for fetching web pages meant for browsers, matching what Jsoup sends by default */
+    public static final String[] BROWSER_HEADERS = {
+            "User-Agent", HttpConnection.DEFAULT_UA,
+            "Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"
+    };
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().findAndRegisterModules();
+
     private static final Logger log = LoggerFactory.getLogger(WebClient.class);
 
+    private final String service;
     private Duration timeout;
     private String[] headers;
+    private boolean cacheable = true;
 
     /**
      * A simple web client that wraps HttpClient requests for convenience purposes.
@@ -84,6 +112,29 @@ public class WebClient {
      * @param headers list of strings representing the key value pairs of headers to use
      */
     public WebClient(Duration timeout, String[] headers) {
+        this(DEFAULT_SERVICE, timeout, headers);
+    }
+
+    /**
+     * A simple web client that wraps HttpClient requests for convenience purposes.
+     * For more complex requests, use HttpClient directly.
+     *
+     * @param service name of the service using the client, used for per-service timeouts and statistics
+     */
+    public WebClient(String service) {
+        this(service, DEFAULT_TIMEOUT, DEFAULT_HEADERS);
+    }
+
+    /**
+     * A simple web client that wraps HttpClient requests for convenience purposes.
+     * For more complex requests, use HttpClient directly.
+     *
+     * @param service name of the service using the client, used for per-service timeouts and statistics
+     * @param timeout request timeout, can be overridden with the http.timeout.&lt;service&gt; property
+     * @param headers list of strings representing the key value pairs of headers to use
+     */
+    public WebClient(String service, Duration timeout, String[] headers) {
+        this.service = service;
         this.timeout = timeout;
         this.headers = headers;
     }
@@ -95,7 +146,52 @@ public class WebClient {
      * @return an optional response body
      */
     public Optional<String> get(String url) {
-        return doRequest(RequestType.GET, url, null);
+        return get(url, WebClient::readString);
+    }
+
+    /**
+     * Performs a GET request, handing the response body to a reader as a stream. The stream has already been
+     * decompressed and is capped at the service's maximum body size, and it is closed once the reader returns.
+     *
+     * @param url the url to request
+     * @param reader reads the response body
+     * @return an optional containing whatever the reader returned
+     */
+    public <T> Optional<T> get(String url, BodyReader<T> reader) {
+        return doRequest(RequestType.GET, url, null, reader);
+    }
+
+    /**
+     * Performs a GET request and parses the response as JSON with a streaming parser, without building the body
+     * as a string first.
+     *
+     * @param url the url to request
+     * @param reader reads the response from the parser
+     * @return an optional containing whatever the reader returned
+     */
+    public <T> Optional<T> getJson(String url, JsonReader<T> reader) {
+        return get(url, jsonBodyReader(reader));
+    }
+
+    /**
+     * Performs a GET request and maps the JSON response to an object.
+     *
+     * @param url the url to request
+     * @param type the type to map the response to
+     * @return an optional containing the mapped response
+     */
+    public <T> Optional<T> getJson(String url, Class<T> type) {
+        return getJson(url, parser -> parser.readValueAs(type));
+    }
+
+    /**
+     * Performs a GET request and parses the response as an HTML document.
+     *
+     * @param url the url to request
+     * @return an optional document
+     */
+    public Optional<Document> getDocument(String url) {
+        return get(url, (in, charset) -> Jsoup.parse(in, charset.name(), url));
     }
 
     /**
@@ -106,36 +202,69 @@ public class WebClient {
      * @return an optional response body
      */
     public Optional<String> post(String url, String body) {
-        return doRequest(RequestType.POST, url, body);
+        return doRequest(RequestType.POST, url, body, WebClient::readString);
     }
 
-    private Optional<String> doRequest(RequestType type, String url, String body) {
-        Validate.notNullOrBlank(url, "url cannot be null or blank");
+    /**
+     * Performs a GET request asynchronously. Cancelling the returned future aborts the request.
+     *
+     * @param url the url to request
+     * @return a future that completes with an optional response body
+     */
+    public CompletableFuture<Optional<String>> getAsync(String url) {
+        return getAsync(url, WebClient::readString);
+    }
 
-        try (HttpClient client = HttpClient.newBuilder().connectTimeout(timeout).build()) {
-            HttpRequest request;
-
-            if (type == RequestType.GET) {
-                request = HttpRequest.newBuilder(URI.create(url))
-                        .headers(headers)
-                        .GET()
-                        .build();
-            } else if (type == RequestType.POST) {
-                request = HttpRequest.newBuilder(URI.create(url))
-                        .headers(headers)
-                        .POST(HttpRequest.BodyPublishers.ofString(body))
-                        .build();
-            } else {
-                throw new IllegalArgumentException("Invalid request type");
-            }
+    /**
+     * Performs a GET request asynchronously, handing the response body to a reader as a stream.
+     * Cancelling the returned future aborts the request.
+     *
+     * @param url the url to request
+     * @param reader reads the response body
+     * @return a future that completes with an optional containing whatever the reader returned
+     */
+    public <T> CompletableFuture<Optional<T>> getAsync(String url, BodyReader<T> reader) {
+        return doRequestAsync(RequestType.GET, url, null, reader);
+    }
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Performs a GET request asynchronously and maps the JSON response to an object.
+     * Cancelling the returned future aborts the request.
+     *
+     * @param url the url to request
+     * @param type the type to map the response to
+     * @return a future that completes with an optional containing the mapped response
+     */
+    public <T> CompletableFuture<Optional<T>> getJsonAsync(String url, Class<T> type) {
+        return getAsync(url, jsonBodyReader(parser -> parser.readValueAs(type)));
+    }
+
+    /**
+     * Performs a POST request asynchronously. Cancelling the returned future aborts the request.
+     *
+     * @param url the url to request
+     * @param body string representing the body of the post request
+     * @return a future that completes with an optional response body
+     */
+    public CompletableFuture<Optional<String>> postAsync(String url, String body) {
+        return doRequestAsync(RequestType.POST, url, body, WebClient::readString);
+    }
 
-            log.debug("HTTP response status code: {}", response.statusCode());
+    private <T> Optional<T> doRequest(RequestType type, String url, String body, BodyReader<T> reader) {
+        Optional<HttpCache.Entry> cached = lookupCache(type, url);
 
-            if (response.statusCode() == 200) {
-                return Optional.of(response.body());
+        if (cached.isPresent() && cached.get().isFresh()) {
+            try {
+                return readCached(cached.get(), reader);
+            } catch (IOException e) {
+                log.debug("Failed to read cached response for {}: {}", url, e.getMessage());
             }
+        }
+
+        try {
+            HttpResponse<InputStream> response = HttpClientPool.getPool()
+                    .send(service, buildRequest(type, url, body, cached), HttpResponse.BodyHandlers.ofInputStream());
+            return handleResponse(type, url, response, cached, reader);
         } catch (IOException e) {
             log.error("Error fetching body", e);
         } catch (InterruptedException e) {
@@ -146,6 +275,122 @@ public class WebClient {
         return Optional.empty();
     }
 
+    private <T> CompletableFuture<Optional<T>> doRequestAsync(RequestType type, String url, String body, BodyReader<T> reader) {
+        Optional<HttpCache.Entry> cached = lookupCache(type, url);
+
+        if (cached.isPresent() && cached.get().isFresh()) {
+            try {
+                return CompletableFuture.completedFuture(readCached(cached.get(), reader));
+            } catch (IOException e) {
+                log.debug("Failed to read cached response for {}: {}", url, e.getMessage());
+            }
+        }
+
+        CompletableFuture<HttpResponse<InputStream>> response = HttpClientPool.getPool()
+                .sendAsync(service, buildRequest(type, url, body, cached), HttpResponse.BodyHandlers.ofInputStream());
+
+        // the future completes once the headers arrive, the body is then read on the client's virtual threads
+        CompletableFuture<Optional<T>> result = response.handle((r, e) -> {
+            if (e != null) {
+                if (!(e instanceof CancellationException)) {
+                    log.error("Error fetching body", e);
+                }
+                return Optional.empty();
+            }
+            try {
+                return handleResponse(type, url, r, cached, reader);
+            } catch (IOException ex) {
+                log.error("Error fetching body", ex);
+                return Optional.empty();
+            }
+        });
+
+        // pass cancellation back to the request so that it's aborted rather than left to finish in the background
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    private Optional<HttpCache.Entry> lookupCache(RequestType type, String url) {
+        return type == RequestType.GET && cacheable ? HttpCache.getCache().get(url) : Optional.empty();
+    }
+
+    private HttpRequest buildRequest(RequestType type, String url, String body, Optional<HttpCache.Entry> cached) {
+        Validate.notNullOrBlank(url, "url cannot be null or blank");
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(HttpClientPool.getPool().getTimeout(service, timeout))
+                .headers(headers)
+                .header("Accept-Encoding", ResponseBodies.ACCEPT_ENCODING);
+
+        // ask the server to tell us if our cached copy is still good rather than sending it again
+        cached.ifPresent(entry -> entry.addValidators(builder));
+
+        if (type == RequestType.GET) {
+            return builder.GET().build();
+        } else if (type == RequestType.POST) {
+            return builder.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        } else {
+            throw new IllegalArgumentException("Invalid request type");
+        }
+    }
+
+    private <T> Optional<T> handleResponse(RequestType type, String url, HttpResponse<InputStream> response,
+                                           Optional<HttpCache.Entry> cached, BodyReader<T> reader) throws IOException {
+        log.debug("HTTP response status code: {}", response.statusCode());
+
+        try (InputStream raw = response.body()) {
+            if (response.statusCode() == 304 && cached.isPresent()) {
+                return readCached(HttpCache.getCache().revalidated(cached.get(), response.headers()), reader);
+            }
+
+            if (response.statusCode() != 200) {
+                return Optional.empty();
+            }
+
+            long maxBytes = HttpClientPool.getPool().getMaxBytes(service);
+            BufferedInputStream decoded = new BufferedInputStream(ResponseBodies.decode(response.headers(), raw, maxBytes));
+            Charset charset = ResponseBodies.detectCharset(response.headers(), decoded);
+            InputStream in = type == RequestType.GET && cacheable
+                    ? HttpCache.getCache().store(url, response.headers(), charset, decoded)
+                    : decoded;
+
+            try (in) {
+                return Optional.ofNullable(reader.read(in, charset));
+            }
+        }
+    }
+
+    private static <T> Optional<T> readCached(HttpCache.Entry entry, BodyReader<T> reader) throws IOException {
+        try (InputStream in = HttpCache.getCache().openBody(entry)) {
+            return Optional.ofNullable(reader.read(in, entry.getCharset()));
+        }
+    }
+
+    private static String readString(InputStream in, Charset charset) throws IOException {
+        return new String(in.readAllBytes(), charset);
+    }
+
+    private static <T> BodyReader<T> jsonBodyReader(JsonReader<T> reader) {
+        return (in, charset) -> {
+            // Jackson detects the UTF encodings itself, anything else has to be decoded for it
+            JsonParser parser = charset.name().startsWith("UTF")
+                    ? JSON_MAPPER.createParser(in)
+                    : JSON_MAPPER.createParser(new InputStreamReader(in, charset));
+            try (parser) {
+                return reader.read(parser);
+            }
+        };
+    }
+
+    public String getService() {
+        return service;
+    }
+
     public Duration getTimeout() {
         return timeout;
     }
@@ -161,4 +406,34 @@ public class WebClient {
     public void setHeaders(String[] headers) {
         this.headers = headers;
     }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * Sets whether GET responses go through the HTTP cache. Clients that put secrets such as API keys in their
+     * urls should turn this off, since cache entries are written to disk along with the url they came from.
+     *
+     * @param cacheable false to always go to the server and never store responses
+     */
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Reads a response body from a stream.
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream in, Charset charset) throws IOException;
+    }
+
+    /**
+     * Reads a JSON response body from a streaming parser.
+     */
+    @FunctionalInterface
+    public interface JsonReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
 }
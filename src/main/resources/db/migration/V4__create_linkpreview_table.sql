@@ -0,0 +1,20 @@
+create table LinkPreview
+(
+    id                 integer      not null    primary key,
+    url                text         not null,
+    title              text,
+    titleStatus        text,
+    titleExpiresAt     integer      not null,
+    shortLink          text,
+    shortLinkStatus    text,
+    shortLinkExpiresAt integer      not null
+);
+
+create unique index idx_LinkPreview_url on LinkPreview (url);
+
+create table LinkPreview_SEQ
+(
+    next_val integer
+);
+
+insert into LinkPreview_SEQ (next_val) values (1);
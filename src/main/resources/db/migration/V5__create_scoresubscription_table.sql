@@ -0,0 +1,16 @@
+create table ScoreSubscription
+(
+    id      integer             not null    primary key,
+    channel text collate NOCASE not null,
+    league  text                not null,
+    team    text collate NOCASE
+);
+
+create index idx_ScoreSubscription_channel on ScoreSubscription (channel);
+
+create table ScoreSubscription_SEQ
+(
+    next_val integer
+);
+
+insert into ScoreSubscription_SEQ (next_val) values (1);
@@ -0,0 +1,16 @@
+create table StockWatch
+(
+    id        integer             not null    primary key,
+    channel   text collate NOCASE not null,
+    symbol    text collate NOCASE not null,
+    threshold real
+);
+
+create index idx_StockWatch_channel on StockWatch (channel);
+
+create table StockWatch_SEQ
+(
+    next_val integer
+);
+
+insert into StockWatch_SEQ (next_val) values (1);